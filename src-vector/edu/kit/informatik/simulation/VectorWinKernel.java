@@ -0,0 +1,45 @@
+package edu.kit.informatik.simulation;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class checks one line on all boards of a {@link BatchWinEvaluator} with
+ * the Vector API, as many boards at once as fit into the widest vector
+ * register. The boards left over are checked one by one.
+ *
+ * This class needs the module jdk.incubator.vector, so it is not part of the
+ * normal build (see {@link BatchWinEvaluator}).
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+final class VectorWinKernel implements WinKernel {
+
+    /**
+     * the widest vectors of longs the processor supports
+     */
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public void accumulateWins(long pLine, long[] pOccupied, long[][] pOnes, long[] pWins, int pCapacity) {
+        int bound = SPECIES.loopBound(pCapacity);
+        for (long[] column : pOnes) {
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                LongVector set = LongVector.fromArray(SPECIES, column, i).and(pLine);
+                LongVector full = LongVector.fromArray(SPECIES, pOccupied, i).and(pLine);
+                // the line is full and its tokens all have the bit set or all have it not set
+                VectorMask<Long> won = full.eq(pLine).and(set.eq(pLine).or(set.eq(0)));
+                LongVector.fromArray(SPECIES, pWins, i).lanewise(VectorOperators.OR, 1, won).intoArray(pWins, i);
+            }
+            for (; i < pCapacity; i++) {
+                long set = column[i] & pLine;
+                long full = pOccupied[i] & pLine;
+                pWins[i] |= (full == pLine && (set == pLine || set == 0)) ? 1 : 0;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package edu.kit.informatik;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintWriter;
 
 /**
  * This class provides some simple methods for input/output from and to a terminal.
@@ -21,6 +22,18 @@ public final class Terminal {
      */
     private static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
 
+    /**
+     * the input of the session bound to the current thread, null if the thread
+     * uses the standard input
+     */
+    private static final ThreadLocal<BufferedReader> SESSION_IN = new ThreadLocal<BufferedReader>();
+
+    /**
+     * the output of the session bound to the current thread, null if the thread
+     * uses the standard output
+     */
+    private static final ThreadLocal<PrintWriter> SESSION_OUT = new ThreadLocal<PrintWriter>();
+
     /**
      * Private constructor to avoid object generation.
      */
@@ -36,7 +49,34 @@ public final class Terminal {
      *            The string to be printed.
      */
     public static void printLine(String out) {
-        System.out.println(out);
+        PrintWriter sessionOut = SESSION_OUT.get();
+        if (sessionOut != null) {
+            sessionOut.println(out);
+        } else {
+            System.out.println(out);
+        }
+    }
+
+    /**
+     * Binds the current thread to its own input and output instead of the standard input and output, so that several
+     * sessions can run in one program at the same time (each in its own thread).
+     * 
+     * @param sessionIn
+     *            The input the current thread reads from.
+     * @param sessionOut
+     *            The output the current thread prints to.
+     */
+    public static void bindSession(BufferedReader sessionIn, PrintWriter sessionOut) {
+        SESSION_IN.set(sessionIn);
+        SESSION_OUT.set(sessionOut);
+    }
+
+    /**
+     * Binds the current thread to the standard input and output again.
+     */
+    public static void unbindSession() {
+        SESSION_IN.remove();
+        SESSION_OUT.remove();
     }
 
     /**
@@ -49,7 +89,11 @@ public final class Terminal {
      * @return The next line from the standard input or null.
      */
     public static String readLine() {
+        BufferedReader sessionIn = SESSION_IN.get();
         try {
+            if (sessionIn != null) {
+                return sessionIn.readLine();
+            }
             return in.readLine();
         } catch (IOException e) {
             /*
@@ -0,0 +1,359 @@
+package edu.kit.informatik.analysis;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.GamePool;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class represents a player controlled by the computer. It chooses its
+ * moves by searching (see {@link Search}) for a fixed time.
+ *
+ * While the opponent is thinking, the computer thinks as well (pondering): it
+ * assumes the opponent plays the moves of the principal variation of its last
+ * search and searches the position it expects on a background thread. If the
+ * opponent plays these moves, this search is continued for the usual time, so
+ * the computer has thought for the usual time plus the time of the opponent.
+ * Otherwise, the background search is stopped and a new search is started.
+ *
+ * All methods have to be invoked by the thread playing the game.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class ComputerPlayer {
+
+    /**
+     * the time in milliseconds the background search may take at most
+     */
+    private static final long PONDER_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * the number of the player controlled by the computer
+     */
+    private final int playerNumber;
+
+    /**
+     * the time in milliseconds the computer thinks about a move
+     */
+    private final long timeBudget;
+
+    /**
+     * the thread the background search runs on
+     */
+    private final ExecutorService ponderThread;
+
+    /**
+     * the result of the last search for a move, null if there is none
+     */
+    private SearchResult lastResult;
+
+    /**
+     * the number of single moves made before the last search
+     */
+    private int lastResultPly;
+
+    /**
+     * the copy of the game the background search works on, null before the
+     * first background search
+     */
+    private Game ponderGame;
+
+    /**
+     * the running background search
+     */
+    private Search ponderSearch;
+
+    /**
+     * the result of the running background search, null if none is running
+     */
+    private Future<SearchResult> ponderResult;
+
+    /**
+     * the hashes of the positions expected until the computer has to move
+     * again, the last one is the position the background search works on
+     */
+    private long[] expectedHashes;
+
+    /**
+     * the number of expected positions
+     */
+    private int expectedCount;
+
+    /**
+     * the number of moves expected to have been made when the computer has to
+     * move again
+     */
+    private int expectedNumberOfMoves;
+
+    /**
+     * the number of moves the background search has been used for
+     */
+    private int ponderHits;
+
+    /**
+     * the number of background searches that have been stopped because the
+     * opponent played another move
+     */
+    private int ponderMisses;
+
+    /**
+     * This method creates a new computer player.
+     *
+     * @param pPlayerNumber
+     *            the number of the player controlled by the computer (1 or 2)
+     * @param pTimeBudgetMillis
+     *            the time in milliseconds the computer thinks about a move
+     * @throws IllegalInputException
+     *             if the number of the player is not 1 or 2 or the time is
+     *             smaller than one millisecond
+     */
+    public ComputerPlayer(int pPlayerNumber, long pTimeBudgetMillis) throws IllegalInputException {
+        if (pPlayerNumber != 1 && pPlayerNumber != 2) {
+            throw new IllegalInputException("Error, the computer can only be player 1 or 2.");
+        }
+        if (pTimeBudgetMillis < 1) {
+            throw new IllegalInputException("Error, the time has to be at least one millisecond.");
+        }
+        playerNumber = pPlayerNumber;
+        timeBudget = pTimeBudgetMillis;
+        ponderThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable pRunnable) {
+                Thread thread = new Thread(pRunnable, "ponder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * This method returns the number of the player controlled by the computer.
+     *
+     * @return the number of the player
+     */
+    public int getPlayerNumber() {
+        return playerNumber;
+    }
+
+    /**
+     * This method checks whether it is the computer's turn.
+     *
+     * @param pGame
+     *            the game
+     * @return true if the game is not over and the computer has to move
+     */
+    public boolean isToMove(Game pGame) {
+        return !pGame.getGameWon() && !pGame.getGameDraw() && pGame.getPlayerToMove() == playerNumber;
+    }
+
+    /**
+     * This method chooses the next move of the computer. The game is not
+     * changed.
+     *
+     * @param pGame
+     *            the game, the computer has to be to move
+     * @return the result of the search for the move
+     * @throws IllegalInputException
+     *             if it is not the computer's turn
+     */
+    public SearchResult chooseMove(Game pGame) throws IllegalInputException {
+        if (!isToMove(pGame)) {
+            throw new IllegalInputException("Error, it is not the computer's turn.");
+        }
+        SearchResult result = null;
+        if (ponderResult != null && isExpected(pGame, expectedCount - 1)
+                && pGame.getNumberOfMoves() == expectedNumberOfMoves) {
+            // the opponent played the expected moves: the background search goes on for the usual time
+            result = finishPondering(true);
+            ponderHits++;
+        } else if (ponderResult != null) {
+            finishPondering(false);
+            ponderMisses++;
+        }
+        if (result == null) {
+            Game copy = GamePool.acquireCopy(pGame);
+            try {
+                result = new Search(copy).search(timeBudget);
+            } finally {
+                GamePool.release(copy);
+            }
+        }
+        lastResult = result;
+        lastResultPly = getPly(pGame);
+        return result;
+    }
+
+    /**
+     * This method informs the computer that the game has changed. Right after
+     * the computer has made its move, it starts thinking about the position it
+     * expects when it has to move again; if the opponent has played a move that
+     * is not expected, the background search is stopped.
+     *
+     * @param pGame
+     *            the game
+     */
+    public void moveMade(Game pGame) {
+        if (ponderResult != null) {
+            for (int i = 0; i < expectedCount; i++) {
+                if (isExpected(pGame, i)) {
+                    // still on the expected course of the game
+                    return;
+                }
+            }
+            finishPondering(false);
+            ponderMisses++;
+        }
+        if (lastResult != null && getPly(pGame) == lastResultPly + 1 && !isToMove(pGame)
+                && !pGame.getGameWon() && !pGame.getGameDraw()) {
+            startPondering(pGame);
+        }
+    }
+
+    /**
+     * This method stops the background search and its thread. The computer
+     * player cannot be used afterwards.
+     */
+    public void stop() {
+        if (ponderResult != null) {
+            finishPondering(false);
+        }
+        ponderThread.shutdownNow();
+    }
+
+    /**
+     * This method returns the number of moves the background search has been
+     * used for.
+     *
+     * @return the number of successful background searches
+     */
+    public int getPonderHits() {
+        return ponderHits;
+    }
+
+    /**
+     * This method returns the number of background searches that have been in
+     * vain.
+     *
+     * @return the number of stopped background searches
+     */
+    public int getPonderMisses() {
+        return ponderMisses;
+    }
+
+    /**
+     * This method checks whether the game is in one of the expected positions.
+     *
+     * @param pGame
+     *            the game
+     * @param pIndex
+     *            the index of the expected position
+     * @return true if the game is in this position
+     */
+    private boolean isExpected(Game pGame, int pIndex) {
+        return expectedHashes[pIndex] == pGame.getPositionHash();
+    }
+
+    /**
+     * This method starts the background search: the moves of the last principal
+     * variation are made on a copy of the game until the computer is to move,
+     * and this position is searched.
+     *
+     * @param pGame
+     *            the game, the opponent is to move
+     */
+    private void startPondering(Game pGame) {
+        try {
+            if (ponderGame == null || !ponderGame.isCompatible(pGame)) {
+                ponderGame = pGame.createEmptyCopy();
+                expectedHashes = new long[2 * pGame.getMaximumNumberOfPlacements() + 2];
+            }
+            ponderGame.copyFrom(pGame);
+            int columnNumber = pGame.getBoard().getColumnNumber();
+            int[] variation = lastResult.getPrincipalVariation();
+            expectedCount = 0;
+            expectedHashes[expectedCount++] = ponderGame.getPositionHash();
+            // the first move of the principal variation has just been made by the computer
+            for (int i = 1; i < variation.length && !isToMove(ponderGame); i++) {
+                if (ponderGame.isTokenSelected()) {
+                    ponderGame.place(variation[i] / columnNumber, variation[i] % columnNumber);
+                } else {
+                    ponderGame.select(variation[i]);
+                }
+                expectedHashes[expectedCount++] = ponderGame.getPositionHash();
+            }
+            if (!isToMove(ponderGame)) {
+                // the principal variation is too short or the game ends
+                return;
+            }
+            expectedNumberOfMoves = ponderGame.getNumberOfMoves();
+        } catch (IllegalInputException | ObjectNotFoundException e) {
+            // this should not happen, the principal variation consists of legal moves
+            return;
+        }
+        // a stopped search stays stopped, so every background search needs its own
+        final Search search = new Search(ponderGame);
+        ponderSearch = search;
+        ponderResult = ponderThread.submit(new Callable<SearchResult>() {
+            @Override
+            public SearchResult call() throws IllegalInputException {
+                return search.search(PONDER_MILLIS);
+            }
+        });
+    }
+
+    /**
+     * This method returns the number of single moves (selections and
+     * placements) made in a game.
+     *
+     * @param pGame
+     *            the game
+     * @return the number of single moves
+     */
+    private static int getPly(Game pGame) {
+        return 2 * pGame.getNumberOfMoves() + (pGame.isTokenSelected() ? 1 : 0);
+    }
+
+    /**
+     * This method ends the background search.
+     *
+     * @param pUse
+     *            true if the result is needed: the search goes on for the
+     *            usual time (unless it ends earlier), false if it is stopped
+     *            at once
+     * @return the result of the background search, null if it is not needed or
+     *         has failed
+     */
+    private SearchResult finishPondering(boolean pUse) {
+        Future<SearchResult> running = ponderResult;
+        ponderResult = null;
+        try {
+            if (pUse) {
+                try {
+                    return running.get(timeBudget, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // the usual time is over
+                }
+            }
+            ponderSearch.stop();
+            SearchResult result = running.get();
+            return pUse ? result : null;
+        } catch (ExecutionException e) {
+            // this should not happen, the pondered position is not over
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ponderSearch.stop();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,672 @@
+package edu.kit.informatik.analysis;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.CommandJournal;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class searches a position of the 6x6 board with 16 tokens with several
+ * worker processes, so that a big search is not limited by the memory and the
+ * garbage collector of one Java virtual machine. The game tree is split at a
+ * small depth: every position at this depth is a work unit, which is searched
+ * by one of the workers (see {@link Search}) for a fixed time. The results of
+ * the work units are combined like in the search (negamax), which gives the
+ * best move of the position.
+ *
+ * The workers are started as separate Java virtual machines on the same
+ * computer and receive their work units through their standard input, one line
+ * each ("unit ID MOVES", the moves leading to the position of the unit from the
+ * start of the game). They answer through their standard output ("result ID
+ * SCORE DEPTH NODES").
+ *
+ * Every result is written to a checkpoint file (see {@link CommandJournal}).
+ * If the program is stopped, it can be started again with the same arguments
+ * and only searches the work units that have not been finished yet.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class DistributedSolver {
+
+    /**
+     * the moves are encoded like in {@link SearchResult}: a selection by the
+     * number of the token, a placement by row * columns + column
+     */
+    private static final String MOVE_SEPARATOR = ",";
+
+    /**
+     * written instead of the moves if there are none
+     */
+    private static final String NO_MOVES = "-";
+
+    /**
+     * true for the torus, false for the standard board
+     */
+    private final boolean torus;
+
+    /**
+     * the depth (number of single moves) the game tree is split at
+     */
+    private final int splitDepth;
+
+    /**
+     * the time in milliseconds a worker searches one work unit
+     */
+    private final long unitMillis;
+
+    /**
+     * the moves leading to the position to solve from the start of the game
+     */
+    private final int[] rootMoves;
+
+    /**
+     * the game the work units are created and combined on
+     */
+    private final Game game;
+
+    /**
+     * the moves leading to the position of every work unit from the start of
+     * the game
+     */
+    private final List<int[]> units = new ArrayList<int[]>();
+
+    /**
+     * the score of every work unit from the point of view of the player to move
+     * in its position
+     */
+    private int[] scores;
+
+    /**
+     * the completed depth of every work unit
+     */
+    private int[] depths;
+
+    /**
+     * the number of positions visited for every work unit
+     */
+    private long[] nodes;
+
+    /**
+     * saves for every work unit whether its result is known
+     */
+    private boolean[] solved;
+
+    /**
+     * the number of work units whose results are known
+     */
+    private int solvedCount;
+
+    /**
+     * the number of the next work unit while combining the results
+     */
+    private int nextUnit;
+
+    /**
+     * This method creates a new solver and splits the game tree into work
+     * units.
+     *
+     * @param pTorus
+     *            true for the torus, false for the standard board
+     * @param pSplitDepth
+     *            the depth the game tree is split at
+     * @param pUnitMillis
+     *            the time in milliseconds a worker searches one work unit
+     * @param pRootMoves
+     *            the moves leading to the position to solve
+     * @throws IllegalInputException
+     *             if the moves are illegal, the game is over after them, the
+     *             split depth is smaller than one or the time is smaller than
+     *             one millisecond
+     */
+    public DistributedSolver(boolean pTorus, int pSplitDepth, long pUnitMillis, int[] pRootMoves)
+            throws IllegalInputException {
+        if (pSplitDepth < 1) {
+            throw new IllegalInputException("Error, the split depth has to be at least one.");
+        }
+        if (pUnitMillis < 1) {
+            throw new IllegalInputException("Error, the time has to be at least one millisecond.");
+        }
+        torus = pTorus;
+        splitDepth = pSplitDepth;
+        unitMillis = pUnitMillis;
+        rootMoves = pRootMoves.clone();
+        game = createGame(pTorus);
+        applyMoves(game, rootMoves, rootMoves.length);
+        if (game.getGameWon() || game.getGameDraw()) {
+            throw new IllegalInputException("Error, the game is already over.");
+        }
+        int[] path = new int[rootMoves.length + splitDepth];
+        System.arraycopy(rootMoves, 0, path, 0, rootMoves.length);
+        walk(0, path, false);
+        scores = new int[units.size()];
+        depths = new int[units.size()];
+        nodes = new long[units.size()];
+        solved = new boolean[units.size()];
+    }
+
+    /**
+     * This method solves a position with several workers or runs a worker.
+     * Usage: DistributedSolver standard|torus workers splitDepth unitMillis
+     * checkpoint [moves], or DistributedSolver worker standard|torus unitMillis
+     *
+     * @param args
+     *            the kind of board (6x6 with 16 tokens), the number of worker
+     *            processes, the depth the game tree is split at, the time a
+     *            worker searches one work unit, the checkpoint file and the
+     *            moves leading to the position to solve (encoded like in
+     *            {@link SearchResult}, separated by commas, default: the start
+     *            of the game)
+     */
+    public static void main(String[] args) {
+        if (args.length == 3 && args[0].equals("worker") && isKind(args[1])) {
+            runWorker(args[1].equals("torus"), Long.parseLong(args[2]));
+            return;
+        }
+        int workers = 0;
+        int splitDepth = 0;
+        long unitMillis = 0;
+        int[] moves = new int[0];
+        try {
+            if (args.length < 5 || args.length > 6 || !isKind(args[0])) {
+                throw new NumberFormatException();
+            }
+            workers = Integer.parseInt(args[1]);
+            splitDepth = Integer.parseInt(args[2]);
+            unitMillis = Long.parseLong(args[3]);
+            if (args.length > 5) {
+                moves = parseMoves(args[5]);
+            }
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, usage: standard|torus workers splitDepth unitMillis checkpoint [moves]");
+            System.exit(1);
+        }
+        if (workers < 1) {
+            Terminal.printLine("Error, the number of workers has to be greater than zero.");
+            System.exit(1);
+        }
+        CommandJournal checkpoint = null;
+        try {
+            long start = System.nanoTime();
+            DistributedSolver solver = new DistributedSolver(args[0].equals("torus"), splitDepth, unitMillis, moves);
+            checkpoint = new CommandJournal(new File(args[4]));
+            int resumed = solver.resume(checkpoint);
+            solver.dispatch(workers, checkpoint);
+            if (solver.solvedCount < solver.units.size()) {
+                Terminal.printLine("Error, " + (solver.units.size() - solver.solvedCount)
+                        + " work units have not been solved, run the same command again to continue.");
+                return;
+            }
+            SearchResult result = solver.combine(System.nanoTime() - start);
+            Terminal.printLine(result.formatMove());
+            Terminal.printLine("evaluation " + result.formatScore() + ", depth " + result.getDepth() + ", nodes "
+                    + result.getNodes());
+            Terminal.printLine("units " + solver.units.size() + " (" + resumed + " from checkpoint), workers "
+                    + workers + ", " + result.getMillis() + " ms");
+        } catch (IllegalInputException e) {
+            Terminal.printLine(e.getMessage());
+        } catch (IOException e) {
+            Terminal.printLine("Error, the checkpoint cannot be used: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (checkpoint != null) {
+                try {
+                    checkpoint.close();
+                } catch (IOException e) {
+                    Terminal.printLine("Error, the checkpoint cannot be written: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * This method returns the number of work units.
+     *
+     * @return the number of work units
+     */
+    public int getNumberOfUnits() {
+        return units.size();
+    }
+
+    /**
+     * This method reads the results saved in a checkpoint. A new checkpoint is
+     * started with a line describing the solve, so that the checkpoint of
+     * another solve is not used by mistake.
+     *
+     * @param pCheckpoint
+     *            the checkpoint
+     * @return the number of results read
+     * @throws IOException
+     *             if the checkpoint cannot be read or belongs to another solve
+     */
+    private int resume(CommandJournal pCheckpoint) throws IOException {
+        String header = "solve " + (torus ? "torus" : "standard") + " " + splitDepth + " " + unitMillis + " "
+                + formatMoves(rootMoves, rootMoves.length);
+        if (pCheckpoint.getRecoveredCommands() == 0) {
+            pCheckpoint.append(header);
+            return 0;
+        }
+        int read = 0;
+        BufferedReader reader = pCheckpoint.readCommands();
+        try {
+            if (!header.equals(reader.readLine())) {
+                throw new IOException("it belongs to another solve");
+            }
+            String line = reader.readLine();
+            while (line != null) {
+                String[] parts = line.split(" ");
+                try {
+                    if (parts.length != 5 || !parts[0].equals("result")) {
+                        throw new NumberFormatException();
+                    }
+                    int unit = Integer.parseInt(parts[1]);
+                    if (unit < 0 || unit >= units.size()) {
+                        throw new NumberFormatException();
+                    }
+                    if (!solved[unit]) {
+                        read++;
+                    }
+                    record(unit, Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Long.parseLong(parts[4]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("illegal line \"" + line + "\"");
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+        return read;
+    }
+
+    /**
+     * This method searches all work units without result with the workers and
+     * waits until they have finished. A work unit whose worker fails is given
+     * to another worker.
+     *
+     * @param pWorkers
+     *            the number of worker processes
+     * @param pCheckpoint
+     *            the checkpoint the results are written to
+     * @throws InterruptedException
+     *             if the thread has been interrupted while waiting
+     */
+    private void dispatch(int pWorkers, final CommandJournal pCheckpoint) throws InterruptedException {
+        final ConcurrentLinkedQueue<Integer> open = new ConcurrentLinkedQueue<Integer>();
+        for (int i = 0; i < units.size(); i++) {
+            if (!solved[i]) {
+                open.add(i);
+            }
+        }
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < Math.min(pWorkers, open.size()); i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serveWorker(open, pCheckpoint);
+                }
+            }, "worker-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * This method starts one worker process and gives it work units until
+     * there are none left.
+     *
+     * @param pOpen
+     *            the work units without result
+     * @param pCheckpoint
+     *            the checkpoint the results are written to
+     */
+    private void serveWorker(ConcurrentLinkedQueue<Integer> pOpen, CommandJournal pCheckpoint) {
+        Process process = null;
+        Integer unit = null;
+        try {
+            ProcessBuilder builder = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java")
+                    .getPath(), "-cp", System.getProperty("java.class.path"), DistributedSolver.class.getName(),
+                    "worker", torus ? "torus" : "standard", Long.toString(unitMillis));
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            process = builder.start();
+            Writer out = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(),
+                    StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                    StandardCharsets.UTF_8));
+            unit = pOpen.poll();
+            while (unit != null) {
+                int[] moves = units.get(unit);
+                out.write("unit " + unit + " " + formatMoves(moves, moves.length) + "\n");
+                out.flush();
+                String line = in.readLine();
+                String[] parts = line == null ? new String[0] : line.split(" ");
+                if (parts.length != 5 || !parts[0].equals("result") || !parts[1].equals(unit.toString())) {
+                    throw new IOException("the worker has answered \"" + line + "\"");
+                }
+                synchronized (this) {
+                    record(unit, Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Long.parseLong(parts[4]));
+                }
+                pCheckpoint.append(line);
+                unit = pOpen.poll();
+            }
+            out.write("quit\n");
+            out.flush();
+        } catch (IOException | NumberFormatException e) {
+            if (unit != null) {
+                // another worker takes over
+                pOpen.add(unit);
+            }
+            Terminal.printLine("Error, a worker has failed: " + e.getMessage());
+        } finally {
+            if (process != null) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * This method saves the result of a work unit.
+     *
+     * @param pUnit
+     *            the number of the work unit
+     * @param pScore
+     *            the score from the point of view of the player to move
+     * @param pDepth
+     *            the completed depth
+     * @param pNodes
+     *            the number of positions visited
+     */
+    private void record(int pUnit, int pScore, int pDepth, long pNodes) {
+        if (!solved[pUnit]) {
+            solved[pUnit] = true;
+            solvedCount++;
+        }
+        scores[pUnit] = pScore;
+        depths[pUnit] = pDepth;
+        nodes[pUnit] = pNodes;
+    }
+
+    /**
+     * This method combines the results of all work units.
+     *
+     * @param pNanos
+     *            the time the solve has taken in nanoseconds
+     * @return the best move of the position to solve
+     */
+    private synchronized SearchResult combine(long pNanos) {
+        int[] path = new int[rootMoves.length + splitDepth + 1];
+        nextUnit = 0;
+        int score = walk(0, path, true);
+        int minimumDepth = Integer.MAX_VALUE;
+        long allNodes = 0;
+        for (int i = 0; i < units.size(); i++) {
+            minimumDepth = Math.min(minimumDepth, depths[i]);
+            allNodes += nodes[i];
+        }
+        int depth = splitDepth + (units.isEmpty() ? 0 : minimumDepth);
+        return new SearchResult(game.isTokenSelected(), game.getBoard().getColumnNumber(), score, depth, allNodes,
+                pNanos, new int[] {path[path.length - 1]});
+    }
+
+    /**
+     * This method walks through the game tree up to the split depth in a
+     * fixed order. It either creates the work units or combines their results
+     * (negamax like {@link Search}, but with the results of the work units at
+     * the split depth); the unsafe tokens are left out like in the search.
+     *
+     * @param pPly
+     *            the distance to the position to solve
+     * @param pPath
+     *            the moves from the start of the game to the current position,
+     *            while combining the last element is set to the best move of
+     *            the position to solve
+     * @param pCombine
+     *            false for creating the work units, true for combining them
+     * @return the score of the current position from the point of view of the
+     *         player to move when combining, otherwise 0
+     */
+    private int walk(int pPly, int[] pPath, boolean pCombine) {
+        int length = rootMoves.length + pPly;
+        if (pPly == splitDepth) {
+            if (!pCombine) {
+                units.add(Arrays.copyOf(pPath, length));
+                return 0;
+            }
+            int score = scores[nextUnit++];
+            // the distance to a proven win or loss is counted from the position to solve
+            if (score > SearchResult.WIN_BOUND) {
+                return score - pPly;
+            } else if (score < -SearchResult.WIN_BOUND) {
+                return score + pPly;
+            }
+            return score;
+        }
+        int columnNumber = game.getBoard().getColumnNumber();
+        int best = Integer.MIN_VALUE;
+        if (game.isTokenSelected()) {
+            int[] rows = new int[game.getMaximumNumberOfPlacements()];
+            int[] columns = new int[rows.length];
+            int count = game.generatePlacements(rows, columns);
+            for (int i = 0; i < count; i++) {
+                int score;
+                try {
+                    game.place(rows[i], columns[i]);
+                } catch (IllegalInputException e) {
+                    // this should not happen, only legal placements are generated
+                    continue;
+                }
+                pPath[length] = rows[i] * columnNumber + columns[i];
+                if (game.getGameWon()) {
+                    score = SearchResult.WIN - (pPly + 1);
+                } else if (game.getGameDraw()) {
+                    score = 0;
+                } else {
+                    score = walk(pPly + 1, pPath, pCombine);
+                }
+                try {
+                    game.undoPlace(rows[i], columns[i]);
+                } catch (IllegalInputException e) {
+                    // this should not happen, the token has just been placed there
+                }
+                if (score > best) {
+                    best = score;
+                    if (pPly == 0 && pCombine) {
+                        pPath[pPath.length - 1] = rows[i] * columnNumber + columns[i];
+                    }
+                }
+            }
+            return count == 0 ? 0 : best;
+        }
+        int[] tokens = new int[game.getMaximumNumberOfSelections() + 1];
+        int count = game.generateSelections(tokens);
+        int safeCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (game.isSafeSelection(tokens[i])) {
+                tokens[safeCount++] = tokens[i];
+            }
+        }
+        if (safeCount == 0 && count > 0) {
+            if (pPly == 0 && pCombine) {
+                pPath[pPath.length - 1] = tokens[0];
+            }
+            return -(SearchResult.WIN - (pPly + 2));
+        }
+        for (int i = 0; i < safeCount; i++) {
+            try {
+                game.select(tokens[i]);
+            } catch (IllegalInputException | ObjectNotFoundException e) {
+                // this should not happen, only available tokens are generated
+                continue;
+            }
+            pPath[length] = tokens[i];
+            int score = -walk(pPly + 1, pPath, pCombine);
+            try {
+                game.undoSelect();
+            } catch (IllegalInputException e) {
+                // this should not happen, the token has just been selected
+            }
+            if (score > best) {
+                best = score;
+                if (pPly == 0 && pCombine) {
+                    pPath[pPath.length - 1] = tokens[i];
+                }
+            }
+        }
+        return safeCount == 0 ? 0 : best;
+    }
+
+    /**
+     * This method searches the work units read from the standard input and
+     * writes their results to the standard output until "quit" is read or the
+     * input ends.
+     *
+     * @param pTorus
+     *            true for the torus, false for the standard board
+     * @param pUnitMillis
+     *            the time in milliseconds a work unit is searched
+     */
+    private static void runWorker(boolean pTorus, long pUnitMillis) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            Game game = createGame(pTorus);
+            String line = in.readLine();
+            while (line != null && !line.equals("quit")) {
+                String[] parts = line.split(" ");
+                if (parts.length != 3 || !parts[0].equals("unit")) {
+                    throw new IllegalInputException("Error, illegal work unit \"" + line + "\".");
+                }
+                game.reset();
+                int[] moves = parseMoves(parts[2]);
+                applyMoves(game, moves, moves.length);
+                SearchResult result = new Search(game).search(pUnitMillis);
+                out.write("result " + parts[1] + " " + result.getScore() + " " + result.getDepth() + " "
+                        + result.getNodes() + "\n");
+                out.flush();
+                line = in.readLine();
+            }
+        } catch (IOException | IllegalInputException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * This method creates a game on the 6x6 board with 16 tokens.
+     *
+     * @param pTorus
+     *            true for the torus, false for the standard board
+     * @return the game
+     * @throws IllegalInputException
+     *             if the game cannot be created (this should not happen)
+     */
+    private static Game createGame(boolean pTorus) throws IllegalInputException {
+        Board board = pTorus ? new Torus(16, 4, 6, 6) : new Standard(16, 4, 6, 6);
+        return new Game(2, board);
+    }
+
+    /**
+     * This method makes moves on a game.
+     *
+     * @param pGame
+     *            the game
+     * @param pMoves
+     *            the encoded moves
+     * @param pLength
+     *            the number of moves to make
+     * @throws IllegalInputException
+     *             if a move is illegal
+     */
+    private static void applyMoves(Game pGame, int[] pMoves, int pLength) throws IllegalInputException {
+        int columnNumber = pGame.getBoard().getColumnNumber();
+        for (int i = 0; i < pLength; i++) {
+            if (pGame.getGameWon() || pGame.getGameDraw()) {
+                throw new IllegalInputException("Error, the game is over before move " + (i + 1) + ".");
+            }
+            if (pGame.isTokenSelected()) {
+                pGame.place(pMoves[i] / columnNumber, pMoves[i] % columnNumber);
+            } else {
+                try {
+                    pGame.select(pMoves[i]);
+                } catch (ObjectNotFoundException e) {
+                    throw new IllegalInputException("Error, token " + pMoves[i] + " is not available.");
+                }
+            }
+        }
+    }
+
+    /**
+     * This method reads encoded moves.
+     *
+     * @param pMoves
+     *            the moves separated by commas, "-" for none
+     * @return the moves
+     * @throws NumberFormatException
+     *             if a move is not a number
+     */
+    private static int[] parseMoves(String pMoves) {
+        if (pMoves.equals(NO_MOVES)) {
+            return new int[0];
+        }
+        String[] parts = pMoves.split(MOVE_SEPARATOR, -1);
+        int[] moves = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            moves[i] = Integer.parseInt(parts[i]);
+        }
+        return moves;
+    }
+
+    /**
+     * This method writes encoded moves.
+     *
+     * @param pMoves
+     *            the moves
+     * @param pLength
+     *            the number of moves to write
+     * @return the moves separated by commas, "-" for none
+     */
+    private static String formatMoves(int[] pMoves, int pLength) {
+        if (pLength == 0) {
+            return NO_MOVES;
+        }
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < pLength; i++) {
+            if (i > 0) {
+                output.append(MOVE_SEPARATOR);
+            }
+            output.append(pMoves[i]);
+        }
+        return output.toString();
+    }
+
+    /**
+     * This method checks whether an argument names a kind of board.
+     *
+     * @param pArgument
+     *            the argument
+     * @return true if it is "standard" or "torus"
+     */
+    private static boolean isKind(String pArgument) {
+        return pArgument.equals("standard") || pArgument.equals("torus");
+    }
+}
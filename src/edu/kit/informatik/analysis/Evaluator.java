@@ -0,0 +1,172 @@
+package edu.kit.informatik.analysis;
+
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class estimates the score of a position that is not over from the point
+ * of view of the player to move, who is also the next player to select a
+ * token. The score is the sum of some features of the position, each
+ * multiplied by a weight. The weights can be chosen freely, the default
+ * weights have been found by {@link WeightTuner}. Evaluators are immutable, so
+ * one evaluator can be used by many searches at the same time.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class Evaluator {
+
+    /**
+     * feature: the number of tokens in the bag that can be selected without
+     * letting the opponent win immediately
+     */
+    public static final int SAFE_TOKENS = 0;
+
+    /**
+     * feature: 1 if the number of safe tokens is odd, -1 if it is even and not
+     * zero, 0 if there is no safe token
+     */
+    public static final int SAFE_PARITY = 1;
+
+    /**
+     * feature: the number of lines with 3 tokens sharing a property (see
+     * {@link Board#countThreatLines()})
+     */
+    public static final int THREAT_LINES = 2;
+
+    /**
+     * feature: the properties lines with one or two tokens can still be
+     * completed with (see {@link Board#countLiveProperties()})
+     */
+    public static final int LIVE_PROPERTIES = 3;
+
+    /**
+     * feature: 1 if the number of empty fields is odd, -1 if it is even
+     */
+    public static final int MOVE_PARITY = 4;
+
+    /**
+     * feature: 1 if the player to move has to place a token that completes a
+     * line, i.e. can win with the next move
+     */
+    public static final int WINNING_PLACEMENT = 5;
+
+    /**
+     * feature: 1 if the player to move has to place a token, 0 if a token has to
+     * be selected
+     */
+    public static final int PLACING = 6;
+
+    /**
+     * the number of features
+     */
+    public static final int NUMBER_OF_FEATURES = 7;
+
+    /**
+     * the greatest score an evaluation can have, it must not be confused with
+     * a won position
+     */
+    public static final int MAXIMUM_SCORE = SearchResult.WIN_BOUND - 1;
+
+    /**
+     * the weights found by {@link WeightTuner} for the standard 6x6 board with
+     * 16 tokens
+     */
+    private static final int[] DEFAULT_WEIGHTS = {0, 144, -263, 1, -3, 12990, -84};
+
+    /**
+     * the evaluator with the default weights
+     */
+    private static final Evaluator DEFAULT = new Evaluator();
+
+    /**
+     * the weight of every feature
+     */
+    private final int[] weights;
+
+    /**
+     * This method creates an evaluator with the default weights.
+     */
+    private Evaluator() {
+        weights = DEFAULT_WEIGHTS.clone();
+    }
+
+    /**
+     * This method creates an evaluator with the given weights.
+     *
+     * @param pWeights
+     *            the weight of every feature (indexed by the constants of this
+     *            class)
+     * @throws IllegalInputException
+     *             if there is not exactly one weight for every feature
+     */
+    public Evaluator(int[] pWeights) throws IllegalInputException {
+        if (pWeights == null || pWeights.length != NUMBER_OF_FEATURES) {
+            throw new IllegalInputException("Error, exactly " + NUMBER_OF_FEATURES + " weights are needed.");
+        }
+        weights = pWeights.clone();
+    }
+
+    /**
+     * This method returns the evaluator with the default weights.
+     *
+     * @return the default evaluator
+     */
+    public static Evaluator getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * This method returns the weights of this evaluator.
+     *
+     * @return a copy of the weights
+     */
+    public int[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * This method computes the features of a position.
+     *
+     * @param pGame
+     *            the game, it must not be over
+     * @param pFeatures
+     *            the array the features are written to (indexed by the
+     *            constants of this class)
+     */
+    public static void computeFeatures(Game pGame, int[] pFeatures) {
+        Board board = pGame.getBoard();
+        int safe = Long.bitCount(pGame.getSafeTokens());
+        int fields = board.getRowNumber() * board.getColumnNumber();
+        int placed = board.getTokenCount() - board.getTokens().size() - (pGame.isTokenSelected() ? 1 : 0);
+        boolean placing = pGame.isTokenSelected();
+        pFeatures[SAFE_TOKENS] = safe;
+        pFeatures[SAFE_PARITY] = safe == 0 ? 0 : (safe % 2 == 1 ? 1 : -1);
+        pFeatures[THREAT_LINES] = board.countThreatLines();
+        pFeatures[LIVE_PROPERTIES] = board.countLiveProperties();
+        pFeatures[MOVE_PARITY] = (fields - placed) % 2 == 1 ? 1 : -1;
+        pFeatures[WINNING_PLACEMENT] = pGame.isWinningPlacementPossible() ? 1 : 0;
+        pFeatures[PLACING] = placing ? 1 : 0;
+    }
+
+    /**
+     * This method evaluates a position.
+     *
+     * @param pGame
+     *            the game, it must not be over
+     * @param pFeatures
+     *            an array for the features, so that evaluating does not create
+     *            any objects
+     * @return the score from the point of view of the player to move, between
+     *         -{@link #MAXIMUM_SCORE} and {@link #MAXIMUM_SCORE}
+     */
+    public int evaluate(Game pGame, int[] pFeatures) {
+        computeFeatures(pGame, pFeatures);
+        long score = 0;
+        for (int i = 0; i < NUMBER_OF_FEATURES; i++) {
+            score += (long) weights[i] * pFeatures[i];
+        }
+        return (int) Math.max(-MAXIMUM_SCORE, Math.min(MAXIMUM_SCORE, score));
+    }
+}
@@ -0,0 +1,534 @@
+package edu.kit.informatik.analysis;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class plays a match between two engines on the 6x6 board with 16
+ * tokens in order to find out whether engine A is stronger than engine B. An
+ * engine is a {@link Search} with a time per move, a maximum depth and the
+ * weights of its {@link Evaluator}, written as millis[:depth[:weights]] (the
+ * weights separated by commas).
+ *
+ * The games are played in pairs starting with the same random opening: in the
+ * first game engine A is player 1, who selects the first token, in the second
+ * game engine B is. So neither the opening nor the advantage of selecting
+ * first favours one engine. The pairs are played by several threads at the
+ * same time.
+ *
+ * The match stops as soon as a sequential probability ratio test decides
+ * between the hypothesis that A is stronger than B by elo0 Elo points (H0)
+ * and the hypothesis that it is stronger by elo1 points (H1), with the error
+ * probabilities alpha and beta. The log-likelihood ratio is approximated from
+ * the mean and variance of the scores of the pairs (0, 1/4, ..., 1 points for
+ * A per pair, counted separately), which takes into account that the two
+ * games of a pair are not independent. Every score of a pair starts with half
+ * a pair, so the test cannot decide on the first few pairs alone.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class MatchRunner {
+
+    /**
+     * the number of random plies (selections and placements) of an opening
+     */
+    private static final int OPENING_PLIES = 4;
+
+    /**
+     * the number of pairs every score of a pair is counted in addition, so that
+     * the variance is not underestimated after a few pairs
+     */
+    private static final double PRIOR_PAIRS = 0.5;
+
+    /**
+     * the number of possible scores of a pair (0, 1/4, 1/2, 3/4 and 1 points)
+     */
+    private static final int PAIR_SCORES = 5;
+
+    /**
+     * the kind of board
+     */
+    private final boolean torus;
+
+    /**
+     * engine A (index 0) and engine B (index 1)
+     */
+    private final Engine[] engines;
+
+    /**
+     * the greatest number of pairs played
+     */
+    private final int maxPairs;
+
+    /**
+     * the seed of the openings
+     */
+    private final long seed;
+
+    /**
+     * the expected score of A per game under H0
+     */
+    private final double score0;
+
+    /**
+     * the expected score of A per game under H1
+     */
+    private final double score1;
+
+    /**
+     * H0 is accepted when the log-likelihood ratio falls to this bound
+     */
+    private final double lowerBound;
+
+    /**
+     * H1 is accepted when the log-likelihood ratio rises to this bound
+     */
+    private final double upperBound;
+
+    /**
+     * the number of the next pair to play
+     */
+    private final AtomicInteger nextPair = new AtomicInteger();
+
+    /**
+     * the number of pairs with 0, 1/4, 1/2, 3/4 and 1 points for A
+     */
+    private final int[] pairCounts = new int[PAIR_SCORES];
+
+    /**
+     * the number of won, lost and drawn games of A
+     */
+    private final int[] gameCounts = new int[3];
+
+    /**
+     * the decision of the test, null as long as it is open
+     */
+    private volatile String decision;
+
+    /**
+     * This method creates a new match.
+     *
+     * @param pTorus
+     *            true for a torus, false for a standard board
+     * @param pEngineA
+     *            engine A
+     * @param pEngineB
+     *            engine B
+     * @param pMaxPairs
+     *            the greatest number of pairs played
+     * @param pSeed
+     *            the seed of the openings
+     * @param pElo0
+     *            the Elo difference of H0
+     * @param pElo1
+     *            the Elo difference of H1, greater than pElo0
+     * @param pAlpha
+     *            the probability of accepting H1 although H0 is true
+     * @param pBeta
+     *            the probability of accepting H0 although H1 is true
+     */
+    public MatchRunner(boolean pTorus, Engine pEngineA, Engine pEngineB, int pMaxPairs, long pSeed, double pElo0,
+            double pElo1, double pAlpha, double pBeta) {
+        torus = pTorus;
+        engines = new Engine[] {pEngineA, pEngineB};
+        maxPairs = pMaxPairs;
+        seed = pSeed;
+        score0 = expectedScore(pElo0);
+        score1 = expectedScore(pElo1);
+        lowerBound = Math.log(pBeta / (1 - pAlpha));
+        upperBound = Math.log((1 - pBeta) / pAlpha);
+    }
+
+    /**
+     * This method plays a match and prints its progress and result. Usage:
+     * MatchRunner standard|torus engineA engineB [maxPairs [threads [elo0 elo1
+     * [alpha beta [seed]]]]]
+     *
+     * @param args
+     *            the kind of board, the two engines (millis[:depth[:weights]]),
+     *            the greatest number of pairs (default 10000), the number of
+     *            threads (default: one per processor), the Elo differences of
+     *            H0 and H1 (default 0 and 10), the error probabilities (default
+     *            0.05 each) and the seed of the openings (default 42)
+     */
+    public static void main(String[] args) {
+        int maxPairs = 10000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double[] test = {0, 10, 0.05, 0.05};
+        long seed = 42;
+        try {
+            if (args.length < 3 || args.length > 10 || args.length == 6 || args.length == 8
+                    || !args[0].equals("standard") && !args[0].equals("torus")) {
+                throw new NumberFormatException();
+            }
+            if (args.length > 3) {
+                maxPairs = Integer.parseInt(args[3]);
+            }
+            if (args.length > 4) {
+                threads = Integer.parseInt(args[4]);
+            }
+            for (int i = 5; i < Math.min(args.length, 9); i++) {
+                test[i - 5] = Double.parseDouble(args[i]);
+            }
+            if (args.length > 9) {
+                seed = Long.parseLong(args[9]);
+            }
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, usage: standard|torus engineA engineB [maxPairs [threads [elo0 elo1 "
+                    + "[alpha beta [seed]]]]]");
+            System.exit(1);
+        }
+        if (maxPairs < 1 || threads < 1 || !(test[0] < test[1]) || !(test[2] > 0 && test[2] < 0.5)
+                || !(test[3] > 0 && test[3] < 0.5)) {
+            Terminal.printLine("Error, the number of pairs and threads have to be greater than zero, elo0 has to "
+                    + "be smaller than elo1 and alpha and beta have to be between 0 and 0.5.");
+            System.exit(1);
+        }
+        try {
+            MatchRunner match = new MatchRunner(args[0].equals("torus"), Engine.parse(args[1]),
+                    Engine.parse(args[2]), maxPairs, seed, test[0], test[1], test[2], test[3]);
+            long start = System.nanoTime();
+            match.run(threads);
+            Terminal.printLine(match.getDecision() + ", " + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IllegalInputException e) {
+            Terminal.printLine(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * This method plays the match with the given number of threads and returns
+     * when the test has decided or all pairs have been played.
+     *
+     * @param pThreads
+     *            the number of threads
+     */
+    public void run(int pThreads) {
+        ExecutorService executor = Executors.newFixedThreadPool(pThreads);
+        for (int i = 0; i < pThreads; i++) {
+            executor.execute(new Worker());
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method returns the decision of the test.
+     *
+     * @return "H1 accepted", "H0 accepted" or "no decision" if the test has not
+     *         decided within the greatest number of pairs
+     */
+    public String getDecision() {
+        String result = decision;
+        return result == null ? "no decision" : result;
+    }
+
+    /**
+     * This method counts the result of a pair, prints the state of the match
+     * and checks whether the test has decided. Pairs finished after the
+     * decision are not counted.
+     *
+     * @param pFirstScore
+     *            the points of A in the game in which A selects first
+     * @param pSecondScore
+     *            the points of A in the game in which B selects first
+     */
+    private synchronized void record(double pFirstScore, double pSecondScore) {
+        if (decision != null) {
+            return;
+        }
+        pairCounts[(int) Math.round(2 * (pFirstScore + pSecondScore))]++;
+        countGame(pFirstScore);
+        countGame(pSecondScore);
+        int pairs = 0;
+        double weight = 0;
+        double sum = 0;
+        for (int i = 0; i < pairCounts.length; i++) {
+            pairs += pairCounts[i];
+            weight += pairCounts[i] + PRIOR_PAIRS;
+            sum += (pairCounts[i] + PRIOR_PAIRS) * i / 4.0;
+        }
+        double mean = sum / weight;
+        double variance = 0;
+        for (int i = 0; i < pairCounts.length; i++) {
+            variance += (pairCounts[i] + PRIOR_PAIRS) * (i / 4.0 - mean) * (i / 4.0 - mean);
+        }
+        variance /= weight;
+        double llr = weight * (score1 - score0) * (2 * mean - score0 - score1) / (2 * variance);
+        StringBuilder line = new StringBuilder("pairs ").append(pairs).append(", A won ").append(gameCounts[0])
+                .append(", lost ").append(gameCounts[1]).append(", draw ").append(gameCounts[2]).append(", pairs");
+        for (int i = 0; i < pairCounts.length; i++) {
+            line.append(i == 0 ? " " : "/").append(pairCounts[i]);
+        }
+        line.append(", Elo ").append(String.format("%.1f", elo(mean))).append(", LLR ")
+                .append(String.format("%.2f", llr)).append(" (").append(String.format("%.2f", lowerBound))
+                .append(", ").append(String.format("%.2f", upperBound)).append(')');
+        Terminal.printLine(line.toString());
+        if (llr >= upperBound) {
+            decision = "H1 accepted";
+        } else if (llr <= lowerBound) {
+            decision = "H0 accepted";
+        }
+    }
+
+    /**
+     * This method counts the result of a game.
+     *
+     * @param pScore
+     *            the points of A
+     */
+    private void countGame(double pScore) {
+        gameCounts[pScore == 1 ? 0 : pScore == 0 ? 1 : 2]++;
+    }
+
+    /**
+     * This method returns the expected score of a player per game.
+     *
+     * @param pElo
+     *            the difference of the Elo ratings of the player and the
+     *            opponent
+     * @return the expected points per game
+     */
+    private static double expectedScore(double pElo) {
+        return 1 / (1 + Math.pow(10, -pElo / 400));
+    }
+
+    /**
+     * This method returns the Elo difference belonging to a score.
+     *
+     * @param pScore
+     *            the points per game
+     * @return the difference of the Elo ratings
+     */
+    private static double elo(double pScore) {
+        double score = Math.min(Math.max(pScore, 1e-3), 1 - 1e-3);
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * This class represents the settings of an engine.
+     */
+    public static final class Engine {
+
+        /**
+         * the time per move in milliseconds
+         */
+        private final long millis;
+
+        /**
+         * the maximum depth of the search
+         */
+        private final int depth;
+
+        /**
+         * the evaluator of the search
+         */
+        private final Evaluator evaluator;
+
+        /**
+         * This method creates new settings of an engine.
+         *
+         * @param pMillis
+         *            the time per move in milliseconds
+         * @param pDepth
+         *            the maximum depth of the search
+         * @param pEvaluator
+         *            the evaluator of the search
+         */
+        public Engine(long pMillis, int pDepth, Evaluator pEvaluator) {
+            millis = pMillis;
+            depth = pDepth;
+            evaluator = pEvaluator;
+        }
+
+        /**
+         * This method reads the settings of an engine.
+         *
+         * @param pText
+         *            the settings in the format millis[:depth[:weights]], the
+         *            weights separated by commas (by default no depth limit and
+         *            the default weights)
+         * @return the settings
+         * @throws IllegalInputException
+         *             if the text does not contain valid settings
+         */
+        public static Engine parse(String pText) throws IllegalInputException {
+            String[] parts = pText.split(":");
+            if (parts.length > 3) {
+                throw new IllegalInputException("Error, an engine is given as millis[:depth[:weights]].");
+            }
+            try {
+                long millis = Long.parseLong(parts[0]);
+                int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : Integer.MAX_VALUE;
+                if (millis <= 0 || depth < 1) {
+                    throw new IllegalInputException("Error, the time and the depth of an engine have to be greater "
+                            + "than zero.");
+                }
+                Evaluator evaluator = Evaluator.getDefault();
+                if (parts.length > 2) {
+                    String[] weightTexts = parts[2].split(",");
+                    int[] weights = new int[weightTexts.length];
+                    for (int i = 0; i < weights.length; i++) {
+                        weights[i] = Integer.parseInt(weightTexts[i].trim());
+                    }
+                    evaluator = new Evaluator(weights);
+                }
+                return new Engine(millis, depth, evaluator);
+            } catch (NumberFormatException e) {
+                throw new IllegalInputException("Error, " + pText + " does not consist of valid integers.");
+            }
+        }
+    }
+
+    /**
+     * This class represents one thread playing pairs of games until the test
+     * has decided or all pairs have been played.
+     */
+    private final class Worker implements Runnable {
+
+        /**
+         * the game that is played
+         */
+        private Game game;
+
+        /**
+         * the searches of engine A and B on the game
+         */
+        private final Search[] searches = new Search[2];
+
+        /**
+         * the selectable tokens of the opening
+         */
+        private int[] tokens;
+
+        /**
+         * the rows of the free fields of the opening
+         */
+        private int[] rows;
+
+        /**
+         * the columns of the free fields of the opening
+         */
+        private int[] columns;
+
+        @Override
+        public void run() {
+            try {
+                Board board = torus ? new Torus(16, 4, 6, 6) : new Standard(16, 4, 6, 6);
+                game = new Game(2, board);
+                for (int i = 0; i < searches.length; i++) {
+                    searches[i] = new Search(game);
+                    searches[i].setEvaluator(engines[i].evaluator);
+                }
+                tokens = new int[game.getMaximumNumberOfSelections() + 1];
+                rows = new int[game.getMaximumNumberOfPlacements()];
+                columns = new int[rows.length];
+                int pair = nextPair.getAndIncrement();
+                while (pair < maxPairs && decision == null) {
+                    double first = play(pair, 0);
+                    double second = play(pair, 1);
+                    record(first, second);
+                    pair = nextPair.getAndIncrement();
+                }
+            } catch (IllegalInputException e) {
+                // this should not happen, the engines only make legal moves
+                Terminal.printLine(e.getMessage());
+            }
+        }
+
+        /**
+         * This method plays one game of a pair.
+         *
+         * @param pPair
+         *            the number of the pair, which determines the opening
+         * @param pFirstEngine
+         *            the engine that is player 1 and selects first (0 for A, 1
+         *            for B)
+         * @return the points of A
+         * @throws IllegalInputException
+         *             if a move cannot be made
+         */
+        private double play(int pPair, int pFirstEngine) throws IllegalInputException {
+            playOpening(new Random(seed + pPair));
+            int columnNumber = game.getBoard().getColumnNumber();
+            while (!game.getGameWon() && !game.getGameDraw()) {
+                int engine = game.getPlayerToMove() == 1 ? pFirstEngine : 1 - pFirstEngine;
+                SearchResult result = searches[engine].search(engines[engine].millis, engines[engine].depth);
+                if (result.isPlacement()) {
+                    game.place(result.getMove() / columnNumber, result.getMove() % columnNumber);
+                } else {
+                    select(result.getMove());
+                }
+            }
+            if (game.getGameDraw()) {
+                return 0.5;
+            }
+            int winningEngine = game.getWinningPlayerNumber() == 1 ? pFirstEngine : 1 - pFirstEngine;
+            return winningEngine == 0 ? 1 : 0;
+        }
+
+        /**
+         * This method starts a new game and makes the random moves of an
+         * opening, selecting only safe tokens. The same random numbers give the
+         * same opening.
+         *
+         * @param pRandom
+         *            the random numbers of the opening
+         * @throws IllegalInputException
+         *             if a move cannot be made
+         */
+        private void playOpening(Random pRandom) throws IllegalInputException {
+            game.reset();
+            for (int ply = 0; ply < OPENING_PLIES && !game.getGameWon() && !game.getGameDraw(); ply++) {
+                if (game.isTokenSelected()) {
+                    int placement = pRandom.nextInt(game.generatePlacements(rows, columns));
+                    game.place(rows[placement], columns[placement]);
+                } else {
+                    int tokenCount = game.generateSelections(tokens);
+                    int safeCount = 0;
+                    for (int i = 0; i < tokenCount; i++) {
+                        if (game.isSafeSelection(tokens[i])) {
+                            tokens[safeCount++] = tokens[i];
+                        }
+                    }
+                    // without safe tokens, nothing has been moved and every token can be chosen
+                    select(tokens[pRandom.nextInt(safeCount > 0 ? safeCount : tokenCount)]);
+                }
+            }
+        }
+
+        /**
+         * This method selects a token.
+         *
+         * @param pToken
+         *            the number of the token
+         * @throws IllegalInputException
+         *             if the token cannot be selected
+         */
+        private void select(int pToken) throws IllegalInputException {
+            try {
+                game.select(pToken);
+            } catch (ObjectNotFoundException e) {
+                // this should not happen, only available tokens are selected
+                throw new IllegalInputException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package edu.kit.informatik.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.GamePool;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class counts all courses of a game from a position up to a given depth
+ * (perft = performance test): every sequence of exactly depth selections and
+ * placements is counted, sequences ending the game earlier are counted as wins
+ * or draws instead. The counts check the move generation and the detection of
+ * wins and draws, the time shows the speed of the game logic.
+ *
+ * Optionally, the counts of positions that have already been counted are
+ * remembered in a hash table (positions reached by different sequences have the
+ * same counts), and the moves of the position are distributed among several
+ * threads.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class Perft {
+
+    /**
+     * the maximum number of threads counting at the same time
+     */
+    public static final int MAXIMUM_THREADS = 64;
+
+    /**
+     * the maximum size of the hash tables of all threads together in megabytes
+     */
+    public static final int MAXIMUM_HASH_MEGABYTES = 1024;
+
+    /**
+     * the bytes one entry of the hash table takes
+     */
+    private static final int BYTES_PER_ENTRY = 32;
+
+    /**
+     * the game the sequences are counted on
+     */
+    private final Game game;
+
+    /**
+     * the keys of the hash table entries (hash of position and depth), 0 if empty
+     */
+    private final long[] tableKeys;
+
+    /**
+     * the counted sequences of the hash table entries
+     */
+    private final long[] tableNodes;
+
+    /**
+     * the counted wins of the hash table entries
+     */
+    private final long[] tableWins;
+
+    /**
+     * the counted draws of the hash table entries
+     */
+    private final long[] tableDraws;
+
+    /**
+     * a random key for every depth, combined with the hash of the position
+     */
+    private final long[] depthKeys;
+
+    /**
+     * the row numbers of the generated placements, one array for each ply
+     */
+    private final int[][] moveRows;
+
+    /**
+     * the column numbers of the generated placements, one array for each ply
+     */
+    private final int[][] moveColumns;
+
+    /**
+     * the numbers of the generated selections, one array for each ply
+     */
+    private final int[][] moveTokens;
+
+    /**
+     * the number of games won within the depth
+     */
+    private long wins;
+
+    /**
+     * the number of games ended by draw within the depth
+     */
+    private long draws;
+
+    /**
+     * This method creates a new counter for a game. The game is changed while
+     * counting, afterwards it is in its former state again.
+     *
+     * @param pGame
+     *            the game to count the sequences of
+     * @param pHashMegabytes
+     *            the size of the hash table in megabytes, 0 for no hash table
+     */
+    public Perft(Game pGame, int pHashMegabytes) {
+        game = pGame;
+        int entries = 0;
+        if (pHashMegabytes > 0) {
+            // the number of entries has to be a power of two
+            entries = Integer.highestOneBit((int) Math.min(1 << 30,
+                    (long) pHashMegabytes * 1024 * 1024 / BYTES_PER_ENTRY));
+        }
+        tableKeys = new long[entries];
+        tableNodes = new long[entries];
+        tableWins = new long[entries];
+        tableDraws = new long[entries];
+        int fields = pGame.getMaximumNumberOfPlacements();
+        int maxPly = 2 * fields + 2;
+        depthKeys = new long[maxPly + 1];
+        long state = 0x0DE9711E5L;
+        for (int i = 0; i < depthKeys.length; i++) {
+            state = state * 6364136223846793005L + 1442695040888963407L;
+            depthKeys[i] = state ^ (state >>> 29);
+        }
+        moveRows = new int[maxPly][fields];
+        moveColumns = new int[maxPly][fields];
+        moveTokens = new int[maxPly][pGame.getMaximumNumberOfSelections() + 1];
+    }
+
+    /**
+     * This method counts all sequences of exactly the given number of moves
+     * from the current position.
+     *
+     * @param pDepth
+     *            the number of moves (selections and placements)
+     * @return the number of sequences
+     * @throws IllegalInputException
+     *             if the depth is negative or too large for this board
+     */
+    public long count(int pDepth) throws IllegalInputException {
+        if (pDepth < 0 || pDepth >= depthKeys.length) {
+            throw new IllegalInputException("Error, the depth has to be between 0 and " + (depthKeys.length - 1)
+                    + ".");
+        }
+        return countMoves(pDepth, 0);
+    }
+
+    /**
+     * This method returns the number of games won within the depth by all
+     * counts of this counter so far.
+     *
+     * @return the number of wins
+     */
+    public long getWins() {
+        return wins;
+    }
+
+    /**
+     * This method returns the number of games ended by draw within the depth by
+     * all counts of this counter so far.
+     *
+     * @return the number of draws
+     */
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * This method counts the sequences from the current position.
+     *
+     * @param pDepth
+     *            the remaining number of moves
+     * @param pPly
+     *            the distance to the starting position
+     * @return the number of sequences
+     */
+    private long countMoves(int pDepth, int pPly) {
+        if (pDepth == 0) {
+            return 1;
+        }
+        int index = 0;
+        long key = 0;
+        // leaves are cheaper to count than to look up
+        if (tableKeys.length > 0 && pDepth > 1) {
+            key = game.getPositionHash() ^ depthKeys[pDepth];
+            index = (int) (key ^ (key >>> 32)) & (tableKeys.length - 1);
+            if (tableKeys[index] == key) {
+                wins += tableWins[index];
+                draws += tableDraws[index];
+                return tableNodes[index];
+            }
+        }
+        long winsBefore = wins;
+        long drawsBefore = draws;
+        long nodes = 0;
+        if (game.isTokenSelected()) {
+            int[] rows = moveRows[pPly];
+            int[] columns = moveColumns[pPly];
+            int count = game.generatePlacements(rows, columns);
+            for (int i = 0; i < count; i++) {
+                try {
+                    game.place(rows[i], columns[i]);
+                    if (game.getGameWon()) {
+                        wins++;
+                    } else if (game.getGameDraw()) {
+                        draws++;
+                    } else {
+                        nodes += countMoves(pDepth - 1, pPly + 1);
+                    }
+                    game.undoPlace(rows[i], columns[i]);
+                } catch (IllegalInputException e) {
+                    // this should not happen, only legal placements are generated
+                }
+            }
+        } else {
+            int[] tokens = moveTokens[pPly];
+            int count = game.generateSelections(tokens);
+            for (int i = 0; i < count; i++) {
+                try {
+                    game.select(tokens[i]);
+                    nodes += countMoves(pDepth - 1, pPly + 1);
+                    game.undoSelect();
+                } catch (IllegalInputException | ObjectNotFoundException e) {
+                    // this should not happen, only available tokens are generated
+                }
+            }
+        }
+        if (key != 0) {
+            // always replacing the old entry
+            tableKeys[index] = key;
+            tableNodes[index] = nodes;
+            tableWins[index] = wins - winsBefore;
+            tableDraws[index] = draws - drawsBefore;
+        }
+        return nodes;
+    }
+
+    /**
+     * This method checks the number of threads and the size of their hash
+     * tables before counting, so that the hash tables (one for every thread)
+     * fit into memory.
+     *
+     * @param pThreads
+     *            the number of threads, between 1 and {@link #MAXIMUM_THREADS}
+     * @param pHashMegabytes
+     *            the size of the hash table of every thread in megabytes, at
+     *            least 0 and at most {@link #MAXIMUM_HASH_MEGABYTES} for all
+     *            threads together
+     * @throws IllegalInputException
+     *             if one of the numbers is out of its range
+     */
+    public static void checkParameters(int pThreads, int pHashMegabytes) throws IllegalInputException {
+        if (pThreads < 1 || pThreads > MAXIMUM_THREADS) {
+            throw new IllegalInputException("Error, the number of threads has to be between 1 and "
+                    + MAXIMUM_THREADS + ".");
+        }
+        if (pHashMegabytes < 0 || (long) pHashMegabytes * pThreads > MAXIMUM_HASH_MEGABYTES) {
+            throw new IllegalInputException("Error, the size of the hash table must not be negative and the hash "
+                    + "tables of all threads together must not be larger than " + MAXIMUM_HASH_MEGABYTES + " MB.");
+        }
+    }
+
+    /**
+     * This method counts all sequences of exactly the given number of moves
+     * from the position of the given game, distributing the first moves among
+     * several threads. Every thread works on its own copy of the game and has
+     * its own hash table. The game is not changed.
+     *
+     * @param pGame
+     *            the game to count the sequences of
+     * @param pDepth
+     *            the number of moves (selections and placements), at least 1
+     * @param pThreads
+     *            the number of threads
+     * @param pHashMegabytes
+     *            the size of the hash table of every thread in megabytes, 0 for
+     *            no hash table
+     * @return the number of sequences, the number of wins and the number of
+     *         draws (in this order)
+     * @throws IllegalInputException
+     *             if the depth is smaller than one, the number of threads or
+     *             the size of the hash tables is out of range (see
+     *             {@link #checkParameters(int, int)}), the game is already over
+     *             or a thread has failed (e.g. because the memory has run out)
+     */
+    public static long[] countParallel(final Game pGame, final int pDepth, int pThreads, final int pHashMegabytes)
+            throws IllegalInputException {
+        if (pDepth < 1) {
+            throw new IllegalInputException("Error, the depth has to be at least one.");
+        }
+        checkParameters(pThreads, pHashMegabytes);
+        if (pGame.getGameWon() || pGame.getGameDraw()) {
+            throw new IllegalInputException("Error, the game is already over.");
+        }
+        final int columnNumber = pGame.getBoard().getColumnNumber();
+        final boolean placement = pGame.isTokenSelected();
+        final int[] moves = new int[Math.max(pGame.getMaximumNumberOfPlacements(),
+                pGame.getMaximumNumberOfSelections())];
+        final int moveCount;
+        if (placement) {
+            int[] rows = new int[moves.length];
+            int[] columns = new int[moves.length];
+            moveCount = pGame.generatePlacements(rows, columns);
+            for (int i = 0; i < moveCount; i++) {
+                moves[i] = rows[i] * columnNumber + columns[i];
+            }
+        } else {
+            moveCount = pGame.generateSelections(moves);
+        }
+        final AtomicInteger nextMove = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(pThreads);
+        List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+        for (int thread = 0; thread < pThreads; thread++) {
+            results.add(executor.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() throws IllegalInputException {
+                    Game game = GamePool.acquireCopy(pGame);
+                    try {
+                        Perft perft = new Perft(game, pHashMegabytes);
+                        long nodes = 0;
+                        // taking the next first move until all have been counted
+                        for (int i = nextMove.getAndIncrement(); i < moveCount; i = nextMove.getAndIncrement()) {
+                            nodes += perft.countAfter(moves[i], placement, columnNumber, pDepth);
+                        }
+                        return new long[] {nodes, perft.getWins(), perft.getDraws()};
+                    } finally {
+                        GamePool.release(game);
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+        long[] totals = new long[3];
+        try {
+            for (Future<long[]> result : results) {
+                long[] counts = result.get();
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += counts[i];
+                }
+            }
+        } catch (ExecutionException e) {
+            // the other threads stop after their current move
+            nextMove.set(moveCount);
+            executor.shutdownNow();
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalInputException) {
+                throw (IllegalInputException) cause;
+            } else if (cause instanceof OutOfMemoryError) {
+                throw new IllegalInputException("Error, there is not enough memory for the hash tables.");
+            }
+            throw new IllegalInputException("Error, the count has failed: " + cause);
+        } catch (InterruptedException e) {
+            nextMove.set(moveCount);
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IllegalInputException("Error, the count has been interrupted.");
+        }
+        return totals;
+    }
+
+    /**
+     * This method makes one move and counts the sequences following it.
+     *
+     * @param pMove
+     *            the encoded move
+     * @param pPlacement
+     *            whether the move is a placement
+     * @param pColumnNumber
+     *            the number of columns of the board
+     * @param pDepth
+     *            the number of moves including this move
+     * @return the number of sequences starting with this move
+     */
+    private long countAfter(int pMove, boolean pPlacement, int pColumnNumber, int pDepth) {
+        long nodes = 0;
+        try {
+            if (pPlacement) {
+                game.place(pMove / pColumnNumber, pMove % pColumnNumber);
+                if (game.getGameWon()) {
+                    wins++;
+                } else if (game.getGameDraw()) {
+                    draws++;
+                } else {
+                    nodes = countMoves(pDepth - 1, 1);
+                }
+                game.undoPlace(pMove / pColumnNumber, pMove % pColumnNumber);
+            } else {
+                game.select(pMove);
+                nodes = countMoves(pDepth - 1, 1);
+                game.undoSelect();
+            }
+        } catch (IllegalInputException | ObjectNotFoundException e) {
+            // this should not happen, only legal moves are counted
+        }
+        return nodes;
+    }
+
+    /**
+     * This method counts the sequences from the starting position of a new game
+     * and prints the counts and the speed. Usage: Perft standard|torus depth
+     * [threads [hash megabytes]]
+     *
+     * @param args
+     *            the kind of board, the depth and optionally the number of
+     *            threads and the size of the hash table
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 4) {
+            Terminal.printLine("Error, usage: standard|torus depth [threads [hash megabytes]]");
+            System.exit(1);
+        }
+        try {
+            Game game;
+            if (args[0].equals("standard")) {
+                game = new Game(2, new Standard(16, 4, 6, 6));
+            } else if (args[0].equals("torus")) {
+                game = new Game(2, new Torus(16, 4, 6, 6));
+            } else {
+                Terminal.printLine("Error, illegal board type has been entered. Please choose standard or torus.");
+                System.exit(1);
+                return;
+            }
+            int depth = Integer.parseInt(args[1]);
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+            int hash = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+            Terminal.printLine(run(game, depth, threads, hash));
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, the depth, the number of threads and the hash size have to be integers.");
+            System.exit(1);
+        } catch (IllegalInputException e) {
+            Terminal.printLine(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * This method counts the sequences from the position of a game and returns
+     * the counts and the speed as text.
+     *
+     * @param pGame
+     *            the game, it is not changed
+     * @param pDepth
+     *            the number of moves (selections and placements), at least 1
+     * @param pThreads
+     *            the number of threads
+     * @param pHashMegabytes
+     *            the size of the hash table of every thread in megabytes, 0 for
+     *            no hash table
+     * @return the counts and the speed in the format: nodes N, wins W, draws D,
+     *         time T ms, nodes/sec S
+     * @throws IllegalInputException
+     *             if the depth is smaller than one, the number of threads or
+     *             the size of the hash tables is out of range, the game is
+     *             already over or a thread has failed
+     */
+    public static String run(Game pGame, int pDepth, int pThreads, int pHashMegabytes)
+            throws IllegalInputException {
+        long start = System.nanoTime();
+        long[] counts = countParallel(pGame, pDepth, pThreads, pHashMegabytes);
+        long nanos = Math.max(1, System.nanoTime() - start);
+        return "nodes " + counts[0] + ", wins " + counts[1] + ", draws " + counts[2] + ", time "
+                + (nanos / 1000000) + " ms, nodes/sec " + (long) (counts[0] * 1e9 / nanos);
+    }
+}
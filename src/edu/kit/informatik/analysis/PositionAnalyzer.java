@@ -0,0 +1,310 @@
+package edu.kit.informatik.analysis;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.GamePool;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class evaluates every legal move of a position in parallel: one task is
+ * started for every move, it makes the move on its own copy of the game and
+ * searches the resulting position. The tasks run on fewer threads than there
+ * are moves, so every task gets the same share of the time budget from the
+ * moment it starts; otherwise the moves started last would only be searched
+ * in the time left over and their shallow scores could not be compared to
+ * those of the others. For the same reason, the best move is chosen among the
+ * results of the deepest search every move has completed. Every task reports the result of each
+ * completed search iteration, so first results are available after a few
+ * milliseconds and are refined while the analysis goes on.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class PositionAnalyzer {
+
+    /**
+     * This interface is implemented by classes that want to receive the results
+     * of an analysis while it is running.
+     */
+    public interface Listener {
+
+        /**
+         * This method is invoked (by the thread that started the analysis)
+         * every time the evaluation of a move has been completed or refined.
+         *
+         * @param pResult
+         *            the evaluation of one move, from the point of view of the
+         *            player to move in the analyzed position; its principal
+         *            variation starts with the move
+         */
+        void moveAnalyzed(SearchResult pResult);
+    }
+
+    /**
+     * the number of threads searching at the same time
+     */
+    private final int threads;
+
+    /**
+     * This method creates a new analyzer.
+     *
+     * @param pThreads
+     *            the number of threads searching at the same time
+     * @throws IllegalInputException
+     *             if the number of threads is smaller than one
+     */
+    public PositionAnalyzer(int pThreads) throws IllegalInputException {
+        if (pThreads < 1) {
+            throw new IllegalInputException("Error, at least one thread is needed.");
+        }
+        threads = pThreads;
+    }
+
+    /**
+     * This method evaluates every legal move of the given game. The game is not
+     * changed, but it must not be changed by another thread during the
+     * analysis. The results are given to the listener as soon as they are known.
+     *
+     * @param pGame
+     *            the game to analyze
+     * @param pTimeBudgetMillis
+     *            the time the whole analysis may take in milliseconds, it is
+     *            divided equally among the moves (every move is searched to
+     *            depth 1 at least, even if this takes longer)
+     * @param pListener
+     *            the listener receiving the results
+     * @return the final evaluation of the best move
+     * @throws IllegalInputException
+     *             if the game is already over
+     */
+    public SearchResult analyze(Game pGame, long pTimeBudgetMillis, Listener pListener)
+            throws IllegalInputException {
+        if (pGame.getGameWon() || pGame.getGameDraw()) {
+            throw new IllegalInputException("Error, the game is already over.");
+        }
+        final LinkedBlockingQueue<SearchResult> updates = new LinkedBlockingQueue<SearchResult>();
+        int[] moves = generateMoves(pGame);
+        int poolSize = Math.min(threads, Math.max(moves.length, 1));
+        // every thread analyzes moves.length / poolSize moves one after the other
+        long timeSliceMillis = Math.max(1, pTimeBudgetMillis * poolSize / Math.max(moves.length, 1));
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        for (int move : moves) {
+            executor.execute(new MoveTask(pGame, move, timeSliceMillis, updates));
+        }
+        executor.shutdown();
+        // the results of every move by depth, a move ending the game only has a result of depth 1
+        SearchResult[][] results = new SearchResult[moves.length][];
+        try {
+            // handing the updates to the listener until all tasks are done
+            while (!executor.isTerminated() || !updates.isEmpty()) {
+                SearchResult update = updates.poll(5, TimeUnit.MILLISECONDS);
+                if (update != null) {
+                    for (int i = 0; i < moves.length; i++) {
+                        if (moves[i] == update.getMove()) {
+                            results[i] = store(results[i], update);
+                        }
+                    }
+                    pListener.moveAnalyzed(update);
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return chooseBest(results);
+    }
+
+    /**
+     * This method stores a result of a move at the index of its depth.
+     *
+     * @param pResults
+     *            the results of the move so far, null if there are none
+     * @param pResult
+     *            the new result
+     * @return the results of the move
+     */
+    private static SearchResult[] store(SearchResult[] pResults, SearchResult pResult) {
+        SearchResult[] results = pResults;
+        if (results == null || results.length <= pResult.getDepth()) {
+            results = new SearchResult[pResult.getDepth() + 1];
+            if (pResults != null) {
+                System.arraycopy(pResults, 0, results, 0, pResults.length);
+            }
+        }
+        results[pResult.getDepth()] = pResult;
+        return results;
+    }
+
+    /**
+     * This method chooses the best move among the results of the deepest
+     * search every move has completed, so that the scores are comparable. A
+     * move ending the game is exact and compared with its only result.
+     *
+     * @param pResults
+     *            the results of every move by depth
+     * @return the result of the best move, null if no move has a result
+     */
+    private static SearchResult chooseBest(SearchResult[][] pResults) {
+        int depth = Integer.MAX_VALUE;
+        for (SearchResult[] results : pResults) {
+            // the results of searched moves start at depth 2, a move ending the game only has depth 1
+            if (results != null && results.length > 2) {
+                depth = Math.min(depth, results.length - 1);
+            }
+        }
+        SearchResult best = null;
+        for (SearchResult[] results : pResults) {
+            SearchResult result = null;
+            for (int i = results == null ? -1 : Math.min(depth, results.length - 1); i >= 0 && result == null; i--) {
+                result = results[i];
+            }
+            if (result != null && (best == null || result.getScore() > best.getScore())) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * This method returns all legal moves of a game in their encoded form.
+     *
+     * @param pGame
+     *            the game
+     * @return the encoded moves
+     */
+    private static int[] generateMoves(Game pGame) {
+        int columnNumber = pGame.getBoard().getColumnNumber();
+        if (pGame.isTokenSelected()) {
+            int[] rows = new int[pGame.getMaximumNumberOfPlacements()];
+            int[] columns = new int[rows.length];
+            int count = pGame.generatePlacements(rows, columns);
+            int[] moves = new int[count];
+            for (int i = 0; i < count; i++) {
+                moves[i] = rows[i] * columnNumber + columns[i];
+            }
+            return moves;
+        } else {
+            int[] tokens = new int[pGame.getMaximumNumberOfSelections()];
+            int count = pGame.generateSelections(tokens);
+            int[] moves = new int[count];
+            System.arraycopy(tokens, 0, moves, 0, count);
+            return moves;
+        }
+    }
+
+    /**
+     * This class represents the analysis of one move: the move is made on a
+     * copy of the game and the resulting position is searched.
+     */
+    private static final class MoveTask implements Runnable, Search.IterationListener {
+
+        /**
+         * the game to analyze, it is only read
+         */
+        private final Game original;
+
+        /**
+         * the encoded move
+         */
+        private final int move;
+
+        /**
+         * the time the analysis of the move may take in milliseconds
+         */
+        private final long timeMillis;
+
+        /**
+         * the queue the results are put into
+         */
+        private final LinkedBlockingQueue<SearchResult> updates;
+
+        /**
+         * whether the move is a placement
+         */
+        private final boolean placement;
+
+        /**
+         * the number of columns of the board
+         */
+        private final int columnNumber;
+
+        /**
+         * This method creates a new task.
+         *
+         * @param pOriginal
+         *            the game to analyze
+         * @param pMove
+         *            the encoded move
+         * @param pTimeMillis
+         *            the time the analysis of the move may take in
+         *            milliseconds, counted from the start of the task
+         * @param pUpdates
+         *            the queue the results are put into
+         */
+        MoveTask(Game pOriginal, int pMove, long pTimeMillis, LinkedBlockingQueue<SearchResult> pUpdates) {
+            original = pOriginal;
+            move = pMove;
+            timeMillis = pTimeMillis;
+            updates = pUpdates;
+            placement = pOriginal.isTokenSelected();
+            columnNumber = pOriginal.getBoard().getColumnNumber();
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.nanoTime() + timeMillis * 1000000L;
+            Game game;
+            try {
+                game = GamePool.acquireCopy(original);
+            } catch (IllegalInputException e) {
+                // this should not happen, the game is not null
+                return;
+            }
+            try {
+                long start = System.nanoTime();
+                if (placement) {
+                    game.place(move / columnNumber, move % columnNumber);
+                    if (game.getGameWon() || game.getGameDraw()) {
+                        // the move ends the game, nothing to search
+                        int score = game.getGameWon() ? SearchResult.WIN - 1 : 0;
+                        updates.add(new SearchResult(true, columnNumber, score, 1, 1, System.nanoTime() - start,
+                                new int[] {move}));
+                        return;
+                    }
+                } else {
+                    game.select(move);
+                }
+                Search search = new Search(game);
+                search.setIterationListener(this);
+                search.search(Math.max(1, (deadline - System.nanoTime()) / 1000000L));
+            } catch (IllegalInputException | ObjectNotFoundException e) {
+                // this should not happen, only legal moves are analyzed
+            } finally {
+                GamePool.release(game);
+            }
+        }
+
+        @Override
+        public void iterationCompleted(SearchResult pResult) {
+            int[] childVariation = pResult.getPrincipalVariation();
+            int[] variation = new int[childVariation.length + 1];
+            variation[0] = move;
+            System.arraycopy(childVariation, 0, variation, 1, childVariation.length);
+            // after a selection the opponent is to move
+            int score = placement ? pResult.getScore() : -pResult.getScore();
+            // the score is one move further away from the analyzed position
+            if (score > SearchResult.WIN_BOUND) {
+                score--;
+            } else if (score < -SearchResult.WIN_BOUND) {
+                score++;
+            }
+            updates.add(new SearchResult(placement, columnNumber, score, pResult.getDepth() + 1,
+                    pResult.getNodes(), pResult.getMillis() * 1000000L, variation));
+        }
+    }
+}
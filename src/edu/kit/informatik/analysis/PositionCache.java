@@ -0,0 +1,416 @@
+package edu.kit.informatik.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.Torus;
+
+/**
+ * This class stores the results of searches in a file, so that they can be
+ * used again by later runs of the program. The file is mapped into memory, so
+ * looking up a position takes about as long as looking it up in an array.
+ *
+ * Positions that only differ by a symmetry of the board (see
+ * {@link Board#getSymmetries()}) share one entry: the key of a position is the
+ * smallest of the hashes of all its symmetric positions (canonical hash), and
+ * a placement is stored as the placement in the symmetric position with this
+ * hash.
+ *
+ * The file has a fixed size. The entries are grouped into buckets of four; a
+ * new result replaces the result of the same position if it has been searched
+ * at least as deep, otherwise an empty entry or the entry of the bucket that
+ * has been searched least deep (shallow entries are evicted first).
+ *
+ * One process can write to the file while any number of processes read it:
+ * the writer locks the file, and the key of every entry is stored combined
+ * with its value (by xor), so that a reader recognizes an entry that is being
+ * written while it reads it.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class PositionCache {
+
+    /**
+     * the first bytes of every cache file
+     */
+    private static final long MAGIC = 0x514341434845L;
+
+    /**
+     * the number of bytes of the header: magic, layout of the game, number of
+     * buckets
+     */
+    private static final int HEADER_BYTES = 24;
+
+    /**
+     * the number of bytes of one entry: key xor value, value
+     */
+    private static final int ENTRY_BYTES = 16;
+
+    /**
+     * the number of entries of one bucket
+     */
+    private static final int BUCKET_ENTRIES = 4;
+
+    /**
+     * the greatest number of buckets, so that the file (1 gigabyte) can be
+     * mapped into memory at once
+     */
+    private static final int MAXIMUM_BUCKETS = 1 << 24;
+
+    /**
+     * the greatest time budget of a search in milliseconds that can be stored,
+     * longer searches are stored with this time
+     */
+    private static final long MAXIMUM_MILLIS = 0xFFFF;
+
+    /**
+     * the channel of the file
+     */
+    private final FileChannel channel;
+
+    /**
+     * the file mapped into memory
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * the lock of the writing process, null if the cache is read-only
+     */
+    private final FileLock lock;
+
+    /**
+     * the layout of the games the cache is used for
+     */
+    private final long layout;
+
+    /**
+     * the number of buckets, a power of two
+     */
+    private final int buckets;
+
+    /**
+     * This method opens a cache file, a new file is created with the given
+     * size. If another process is already writing to the file, it is opened
+     * read-only.
+     *
+     * @param pFile
+     *            the file
+     * @param pMegabytes
+     *            the size of a new file in megabytes (an existing file keeps
+     *            its size)
+     * @param pGame
+     *            a game of the kind the cache is used for
+     * @throws IOException
+     *             if the file cannot be opened or has been created for other
+     *             games
+     */
+    public PositionCache(File pFile, int pMegabytes, Game pGame) throws IOException {
+        layout = getLayout(pGame);
+        FileChannel opened;
+        FileLock acquired = null;
+        try {
+            opened = FileChannel.open(pFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                acquired = opened.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // this program already writes to the file
+            }
+            if (acquired == null) {
+                opened.close();
+                opened = FileChannel.open(pFile.toPath(), StandardOpenOption.READ);
+            }
+        } catch (IOException e) {
+            // the file may be readable only
+            opened = FileChannel.open(pFile.toPath(), StandardOpenOption.READ);
+        }
+        channel = opened;
+        lock = acquired;
+        try {
+            if (channel.size() == 0 && lock != null) {
+                long entries = Math.max(BUCKET_ENTRIES, (long) pMegabytes * 1024 * 1024 / ENTRY_BYTES);
+                buckets = Integer.highestOneBit((int) Math.min(MAXIMUM_BUCKETS, entries / BUCKET_ENTRIES));
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(buckets));
+                buffer.putLong(0, MAGIC);
+                buffer.putLong(8, layout);
+                buffer.putLong(16, buckets);
+            } else {
+                if (channel.size() < HEADER_BYTES) {
+                    throw new IOException("the file is not a cache");
+                }
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                long storedBuckets = header.getLong(16);
+                if (header.getLong(0) != MAGIC || Long.bitCount(storedBuckets) != 1 || storedBuckets > MAXIMUM_BUCKETS
+                        || channel.size() != size((int) storedBuckets)) {
+                    throw new IOException("the file is not a cache");
+                }
+                if (header.getLong(8) != layout) {
+                    throw new IOException("the cache has been created for other games");
+                }
+                buckets = (int) storedBuckets;
+                buffer = channel.map(lock == null ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                        0, size(buckets));
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * This method checks whether the results can only be read.
+     *
+     * @return true if another process writes to the file
+     */
+    public boolean isReadOnly() {
+        return lock == null;
+    }
+
+    /**
+     * This method returns the number of results the cache can hold.
+     *
+     * @return the number of entries
+     */
+    public long getCapacity() {
+        return (long) buckets * BUCKET_ENTRIES;
+    }
+
+    /**
+     * This method checks whether the cache can be used for a game.
+     *
+     * @param pGame
+     *            the game
+     * @return true if the game has the layout the cache has been created for
+     */
+    public boolean isCompatible(Game pGame) {
+        return getLayout(pGame) == layout;
+    }
+
+    /**
+     * This method looks up the result of a search of the current position of a
+     * game.
+     *
+     * @param pGame
+     *            the game
+     * @return the result (without nodes and principal variation beyond the best
+     *         move, its time is the time the search has been given), null if
+     *         the position has not been stored
+     */
+    public synchronized SearchResult probe(Game pGame) {
+        if (!isCompatible(pGame)) {
+            return null;
+        }
+        Board board = pGame.getBoard();
+        int[][] symmetries = board.getSymmetries();
+        int symmetry = getCanonicalSymmetry(board, symmetries);
+        long key = getKey(board, symmetries[symmetry]);
+        int bucket = (int) (key & (buckets - 1));
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            int offset = getOffset(bucket, i);
+            long value = buffer.getLong(offset + 8);
+            if ((buffer.getLong(offset) ^ value) == key) {
+                int move = (int) ((value >>> 32) & 0xFFFF) - 1;
+                if (pGame.isTokenSelected() && move >= 0) {
+                    // back from the canonical position
+                    move = find(symmetries[symmetry], move);
+                }
+                long millis = value >>> 48;
+                return new SearchResult(pGame.isTokenSelected(), board.getColumnNumber(), getScore(value),
+                        getDepth(value), 0, millis * 1000000L, move < 0 ? new int[0] : new int[] {move});
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method stores the result of a search of the current position of a
+     * game. It has no effect if the cache is read-only or cannot be used for
+     * the game.
+     *
+     * @param pGame
+     *            the game
+     * @param pResult
+     *            the result of the search of its current position
+     * @param pTimeBudgetMillis
+     *            the time the search has been given in milliseconds
+     * @return true if the result has been stored
+     */
+    public synchronized boolean store(Game pGame, SearchResult pResult, long pTimeBudgetMillis) {
+        if (lock == null || !isCompatible(pGame)) {
+            return false;
+        }
+        Board board = pGame.getBoard();
+        int[][] symmetries = board.getSymmetries();
+        int symmetry = getCanonicalSymmetry(board, symmetries);
+        long key = getKey(board, symmetries[symmetry]);
+        int move = pResult.getMove();
+        if (pGame.isTokenSelected() && move >= 0) {
+            move = symmetries[symmetry][move];
+        }
+        long value = (pResult.getScore() & 0xFFFFFFL) | (long) Math.min(pResult.getDepth(), 0xFF) << 24
+                | (long) (move + 1) << 32 | Math.min(pTimeBudgetMillis, MAXIMUM_MILLIS) << 48;
+        int bucket = (int) (key & (buckets - 1));
+        int target = -1;
+        int targetDepth = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            int offset = getOffset(bucket, i);
+            long storedValue = buffer.getLong(offset + 8);
+            long storedKey = buffer.getLong(offset) ^ storedValue;
+            if (storedKey == key) {
+                if (getDepth(storedValue) > pResult.getDepth()) {
+                    // the deeper result is kept
+                    return false;
+                }
+                target = i;
+                break;
+            }
+            int depth = storedKey == 0 && storedValue == 0 ? -1 : getDepth(storedValue);
+            if (depth < targetDepth) {
+                target = i;
+                targetDepth = depth;
+            }
+        }
+        int offset = getOffset(bucket, target);
+        buffer.putLong(offset + 8, value);
+        buffer.putLong(offset, key ^ value);
+        return true;
+    }
+
+    /**
+     * This method writes the results to the disk and closes the file.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public synchronized void close() throws IOException {
+        if (lock != null) {
+            buffer.force();
+            lock.release();
+        }
+        channel.close();
+    }
+
+    /**
+     * This method returns the size of a cache file.
+     *
+     * @param pBuckets
+     *            the number of buckets
+     * @return the size in bytes
+     */
+    private static long size(int pBuckets) {
+        return HEADER_BYTES + (long) pBuckets * BUCKET_ENTRIES * ENTRY_BYTES;
+    }
+
+    /**
+     * This method returns the position of an entry in the file.
+     *
+     * @param pBucket
+     *            the number of the bucket
+     * @param pEntry
+     *            the number of the entry within the bucket
+     * @return the offset in bytes
+     */
+    private static int getOffset(int pBucket, int pEntry) {
+        return (int) (HEADER_BYTES + ((long) pBucket * BUCKET_ENTRIES + pEntry) * ENTRY_BYTES);
+    }
+
+    /**
+     * This method describes the kind of a game: the size of the board, the
+     * tokens and whether the board is a torus.
+     *
+     * @param pGame
+     *            the game
+     * @return the layout as number
+     */
+    private static long getLayout(Game pGame) {
+        Board board = pGame.getBoard();
+        return board.getRowNumber() | (long) board.getColumnNumber() << 12 | (long) board.getTokenCount() << 24
+                | (long) board.getNumberOfTokenProperties() << 36 | (board instanceof Torus ? 1L << 48 : 0);
+    }
+
+    /**
+     * This method finds the symmetry giving the smallest hash.
+     *
+     * @param pBoard
+     *            the board
+     * @param pSymmetries
+     *            the symmetries of the board
+     * @return the index of the symmetry
+     */
+    private static int getCanonicalSymmetry(Board pBoard, int[][] pSymmetries) {
+        int best = 0;
+        long bestHash = pBoard.getPositionHash();
+        for (int i = 1; i < pSymmetries.length; i++) {
+            long hash = pBoard.getPositionHash(pSymmetries[i]);
+            if (hash < bestHash) {
+                best = i;
+                bestHash = hash;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * This method returns the key of a position, it is never 0 (marking empty
+     * entries).
+     *
+     * @param pBoard
+     *            the board
+     * @param pSymmetry
+     *            the canonical symmetry of the position
+     * @return the key
+     */
+    private static long getKey(Board pBoard, int[] pSymmetry) {
+        long hash = pBoard.getPositionHash(pSymmetry);
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * This method returns the score stored in a value.
+     *
+     * @param pValue
+     *            the value
+     * @return the score
+     */
+    private static int getScore(long pValue) {
+        // the score takes the lowest 24 bits with sign
+        return (int) (pValue << 40 >> 40);
+    }
+
+    /**
+     * This method returns the depth stored in a value.
+     *
+     * @param pValue
+     *            the value
+     * @return the depth
+     */
+    private static int getDepth(long pValue) {
+        return (int) ((pValue >>> 24) & 0xFF);
+    }
+
+    /**
+     * This method finds the field that is moved to a given field.
+     *
+     * @param pPermutation
+     *            the field every field is moved to
+     * @param pField
+     *            the field
+     * @return the index of the field in the permutation
+     */
+    private static int find(int[] pPermutation, int pField) {
+        for (int i = 0; i < pPermutation.length; i++) {
+            if (pPermutation[i] == pField) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,366 @@
+package edu.kit.informatik.analysis;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Position;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class generates puzzles for the 6x6 board with 16 tokens: positions in
+ * which the player to move (who has to place the selected token) can force a
+ * win with the given number of own placements, but not with fewer. Every
+ * thread plays random games (selecting safe tokens whenever possible) and goes
+ * back from the end of every game over the last positions, which are verified
+ * by an exact search (see {@link Search}) up to the depth of the win. The first
+ * verified position of a game is a puzzle.
+ *
+ * Every puzzle is written as one line in the format of
+ * {@link Position#format()}, so it can be loaded with the "load" command. A
+ * puzzle is only written once, also if it is found again in a symmetric form.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class PuzzleGenerator {
+
+    /**
+     * the time the verification of a position may take in milliseconds,
+     * positions that take longer are skipped
+     */
+    private static final long VERIFICATION_MILLIS = 10000;
+
+    /**
+     * the kind of board
+     */
+    private final boolean torus;
+
+    /**
+     * the number of placements of the winning player, including the winning
+     * one
+     */
+    private final int moves;
+
+    /**
+     * the number of puzzles to generate
+     */
+    private final int count;
+
+    /**
+     * the output of the puzzles
+     */
+    private final PrintWriter output;
+
+    /**
+     * the symmetric position hashes of the puzzles found so far
+     */
+    private final Set<Long> found = ConcurrentHashMap.newKeySet();
+
+    /**
+     * the number of puzzles written
+     */
+    private final AtomicInteger puzzles = new AtomicInteger();
+
+    /**
+     * the number of games played
+     */
+    private final AtomicLong playouts = new AtomicLong();
+
+    /**
+     * the number of positions verified by a search
+     */
+    private final AtomicLong verifications = new AtomicLong();
+
+    /**
+     * This method creates a new generator.
+     *
+     * @param pTorus
+     *            true for a torus, false for a standard board
+     * @param pMoves
+     *            the number of placements of the winning player, including the
+     *            winning one
+     * @param pCount
+     *            the number of puzzles to generate
+     * @param pOutput
+     *            the output of the puzzles
+     */
+    public PuzzleGenerator(boolean pTorus, int pMoves, int pCount, PrintWriter pOutput) {
+        torus = pTorus;
+        moves = pMoves;
+        count = pCount;
+        output = pOutput;
+    }
+
+    /**
+     * This method generates puzzles. Usage: PuzzleGenerator standard|torus
+     * moves count [threads [seed [file]]]
+     *
+     * @param args
+     *            the kind of board, the number of placements of the winning
+     *            player (at least one), the number of puzzles, the number of
+     *            threads (default: one per processor), the seed of the random
+     *            games (default 42) and the file the puzzles are appended to
+     *            (default: standard output)
+     */
+    public static void main(String[] args) {
+        int moves = 0;
+        int count = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+        try {
+            if (args.length < 3 || args.length > 6 || !args[0].equals("standard") && !args[0].equals("torus")) {
+                throw new NumberFormatException();
+            }
+            moves = Integer.parseInt(args[1]);
+            count = Integer.parseInt(args[2]);
+            if (args.length > 3) {
+                threads = Integer.parseInt(args[3]);
+            }
+            if (args.length > 4) {
+                seed = Long.parseLong(args[4]);
+            }
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, usage: standard|torus moves count [threads [seed [file]]]");
+            System.exit(1);
+        }
+        if (moves < 1 || count < 1 || threads < 1) {
+            Terminal.printLine("Error, the number of moves, puzzles and threads have to be greater than zero.");
+            System.exit(1);
+        }
+        PrintWriter output;
+        try {
+            output = args.length > 5 ? new PrintWriter(new FileWriter(args[5], true)) : new PrintWriter(System.out);
+        } catch (IOException e) {
+            Terminal.printLine("Error, the file " + args[5] + " cannot be written.");
+            System.exit(1);
+            return;
+        }
+        PuzzleGenerator generator = new PuzzleGenerator(args[0].equals("torus"), moves, count, output);
+        long start = System.nanoTime();
+        try {
+            generator.generate(threads, seed);
+        } finally {
+            if (args.length > 5) {
+                output.close();
+            } else {
+                // the standard output stays open for the statistics
+                output.flush();
+            }
+        }
+        Terminal.printLine("puzzles " + generator.puzzles.get() + ", games " + generator.playouts.get()
+                + ", verified positions " + generator.verifications.get() + ", threads " + threads + ", "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * This method generates the puzzles with the given number of threads and
+     * returns when all of them have been written.
+     *
+     * @param pThreads
+     *            the number of threads
+     * @param pSeed
+     *            the seed of the random games, every thread uses its own
+     *            sequence
+     */
+    public void generate(int pThreads, long pSeed) {
+        ExecutorService executor = Executors.newFixedThreadPool(pThreads);
+        for (int i = 0; i < pThreads; i++) {
+            executor.execute(new Worker(pSeed + i));
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method writes a puzzle if it has not been found before and not
+     * enough puzzles have been written yet.
+     *
+     * @param pGame
+     *            the game in the position of the puzzle
+     * @throws IllegalInputException
+     *             if the position cannot be stored
+     */
+    private void offer(Game pGame) throws IllegalInputException {
+        Board board = pGame.getBoard();
+        long key = Long.MAX_VALUE;
+        for (int[] symmetry : board.getSymmetries()) {
+            key = Math.min(key, board.getPositionHash(symmetry));
+        }
+        if (found.add(key)) {
+            String line = Position.of(pGame).format();
+            synchronized (output) {
+                if (puzzles.get() < count) {
+                    output.println(line);
+                    output.flush();
+                    puzzles.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * This method creates an empty game.
+     *
+     * @return the game
+     * @throws IllegalInputException
+     *             if the board cannot be created
+     */
+    private Game createGame() throws IllegalInputException {
+        Board board = torus ? new Torus(16, 4, 6, 6) : new Standard(16, 4, 6, 6);
+        return new Game(2, board);
+    }
+
+    /**
+     * This class represents one thread playing random games and verifying
+     * their last positions.
+     */
+    private final class Worker implements Runnable {
+
+        /**
+         * the generator of the random moves
+         */
+        private final Random random;
+
+        /**
+         * the game that is played
+         */
+        private Game game;
+
+        /**
+         * the moves of the current game (token number or row * number of
+         * columns + column)
+         */
+        private int[] history;
+
+        /**
+         * This method creates a new worker.
+         *
+         * @param pSeed
+         *            the seed of the random moves
+         */
+        Worker(long pSeed) {
+            random = new Random(pSeed);
+        }
+
+        @Override
+        public void run() {
+            try {
+                game = createGame();
+                Search search = new Search(game);
+                int columnNumber = game.getBoard().getColumnNumber();
+                int[] tokens = new int[game.getMaximumNumberOfSelections() + 1];
+                int[] rows = new int[game.getMaximumNumberOfPlacements()];
+                int[] columns = new int[rows.length];
+                history = new int[2 * rows.length + 2];
+                // the search looks this many plies ahead: the winning player places every fourth ply
+                int depth = 4 * moves - 3;
+                int target = SearchResult.WIN - depth;
+                while (puzzles.get() < count && !Thread.currentThread().isInterrupted()) {
+                    int length = play(tokens, rows, columns, columnNumber);
+                    playouts.incrementAndGet();
+                    // going back from the end, the positions to verify become more expensive
+                    for (int back = 1; back <= Math.min(length, depth + 4) && puzzles.get() < count; back++) {
+                        undo(history[length - back], columnNumber);
+                        if (!game.isTokenSelected() || moves > 1 && game.isWinningPlacementPossible()) {
+                            continue;
+                        }
+                        verifications.incrementAndGet();
+                        SearchResult result = search.search(VERIFICATION_MILLIS, depth);
+                        if (result.getScore() == target) {
+                            offer(game);
+                            break;
+                        }
+                    }
+                }
+            } catch (IllegalInputException e) {
+                // this should not happen, only legal moves are made on a running game
+                Terminal.printLine(e.getMessage());
+            }
+        }
+
+        /**
+         * This method plays a random game from the start until it is over.
+         *
+         * @param pTokens
+         *            an array for the selectable tokens
+         * @param pRows
+         *            an array for the rows of the free fields
+         * @param pColumns
+         *            an array for the columns of the free fields
+         * @param pColumnNumber
+         *            the number of columns of the board
+         * @return the number of moves of the game, they are saved in
+         *         {@link #history}
+         * @throws IllegalInputException
+         *             if a move cannot be made
+         */
+        private int play(int[] pTokens, int[] pRows, int[] pColumns, int pColumnNumber)
+                throws IllegalInputException {
+            game.reset();
+            int length = 0;
+            while (!game.getGameWon() && !game.getGameDraw()) {
+                if (game.isTokenSelected()) {
+                    int placement = random.nextInt(game.generatePlacements(pRows, pColumns));
+                    game.place(pRows[placement], pColumns[placement]);
+                    history[length++] = pRows[placement] * pColumnNumber + pColumns[placement];
+                } else {
+                    int tokenCount = game.generateSelections(pTokens);
+                    int safeCount = 0;
+                    for (int i = 0; i < tokenCount; i++) {
+                        if (game.isSafeSelection(pTokens[i])) {
+                            pTokens[safeCount++] = pTokens[i];
+                        }
+                    }
+                    // without safe tokens, nothing has been moved and every token can be chosen
+                    int token = pTokens[random.nextInt(safeCount > 0 ? safeCount : tokenCount)];
+                    try {
+                        game.select(token);
+                    } catch (ObjectNotFoundException e) {
+                        // this should not happen, only available tokens are generated
+                        throw new IllegalInputException(e.getMessage());
+                    }
+                    history[length++] = token;
+                }
+            }
+            return length;
+        }
+
+        /**
+         * This method takes back the last move of the game.
+         *
+         * @param pMove
+         *            the move
+         * @param pColumnNumber
+         *            the number of columns of the board
+         * @throws IllegalInputException
+         *             if the move cannot be taken back
+         */
+        private void undo(int pMove, int pColumnNumber) throws IllegalInputException {
+            if (game.isTokenSelected()) {
+                game.undoSelect();
+            } else {
+                game.undoPlace(pMove / pColumnNumber, pMove % pColumnNumber);
+            }
+        }
+    }
+}
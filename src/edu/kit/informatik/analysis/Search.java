@@ -0,0 +1,506 @@
+package edu.kit.informatik.analysis;
+
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class searches for the best move of the player whose turn it is. It
+ * uses an alpha-beta search that is deepened step by step (iterative
+ * deepening), so that it can be stopped at any time (when the time budget is
+ * used up or when {@link #stop()} is invoked) and still returns the best move
+ * of the last completed depth.
+ *
+ * The search works directly on the given game by making and taking back moves,
+ * after the search the game is in its former state again. Selections and
+ * placements count as single moves (plies). Since the player who places a token
+ * also selects the next one, the point of view only changes after a selection.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class Search {
+
+    /**
+     * the time is checked every time this many (plus one) nodes have been
+     * visited
+     */
+    private static final int CHECK_INTERVAL = 1023;
+
+    /**
+     * a score that is greater than every possible score
+     */
+    private static final int INFINITY = SearchResult.WIN + 1;
+
+    /**
+     * This interface is implemented by classes that want to be informed about
+     * the result of every completed iteration of a search, e.g. for showing the
+     * progress of a long search.
+     */
+    public interface IterationListener {
+
+        /**
+         * This method is invoked (by the searching thread) every time an
+         * iteration has been completed.
+         *
+         * @param pResult
+         *            the result of the completed iteration
+         */
+        void iterationCompleted(SearchResult pResult);
+    }
+
+    /**
+     * the game that is being searched
+     */
+    private final Game game;
+
+    /**
+     * the number of columns of the board, needed for encoding placements
+     */
+    private final int columnNumber;
+
+    /**
+     * the row numbers of the generated placements, one array for each ply
+     */
+    private final int[][] moveRows;
+
+    /**
+     * the column numbers of the generated placements, one array for each ply
+     */
+    private final int[][] moveColumns;
+
+    /**
+     * the numbers of the generated selections, one array for each ply
+     */
+    private final int[][] moveTokens;
+
+    /**
+     * the principal variations found at each ply (triangular table)
+     */
+    private final int[][] principalVariations;
+
+    /**
+     * the length of the principal variations at each ply
+     */
+    private final int[] principalVariationLengths;
+
+    /**
+     * set by another thread in order to stop the search
+     */
+    private volatile boolean stopRequested;
+
+    /**
+     * the point of time (System.nanoTime) at which the search has to stop
+     */
+    private long deadline;
+
+    /**
+     * the number of nodes visited in the current search
+     */
+    private long nodes;
+
+    /**
+     * saves whether the current iteration has been aborted
+     */
+    private boolean aborted;
+
+    /**
+     * saves whether the current iteration may be aborted (the first one may not)
+     */
+    private boolean mayAbort;
+
+    /**
+     * saves whether the current iteration reached its depth limit anywhere;
+     * if not, the result is exact
+     */
+    private boolean horizonReached;
+
+    /**
+     * the best move of the last completed iteration, it is searched first
+     */
+    private int rootBestMove;
+
+    /**
+     * the listener informed about every completed iteration, may be null
+     */
+    private IterationListener iterationListener;
+
+    /**
+     * the evaluator of the positions at the end of the search depth
+     */
+    private Evaluator evaluator = Evaluator.getDefault();
+
+    /**
+     * buffer for the features of an evaluated position
+     */
+    private final int[] features = new int[Evaluator.NUMBER_OF_FEATURES];
+
+    /**
+     * This method creates a new search for a game.
+     *
+     * @param pGame
+     *            the game to search the best move for
+     */
+    public Search(Game pGame) {
+        game = pGame;
+        columnNumber = pGame.getBoard().getColumnNumber();
+        int fields = pGame.getMaximumNumberOfPlacements();
+        // the bag and the selected token together never exceed this
+        int tokens = pGame.getMaximumNumberOfSelections() + 1;
+        // every placement is preceded by a selection
+        int maxPly = 2 * fields + 2;
+        moveRows = new int[maxPly][fields];
+        moveColumns = new int[maxPly][fields];
+        moveTokens = new int[maxPly][tokens];
+        principalVariations = new int[maxPly + 1][maxPly + 1];
+        principalVariationLengths = new int[maxPly + 1];
+    }
+
+    /**
+     * This method searches for the best move within the given time. Depth 1 is
+     * always searched completely, even if this takes longer.
+     *
+     * @param pTimeBudgetMillis
+     *            the time the search may take in milliseconds
+     * @return the result of the deepest completed iteration
+     * @throws IllegalInputException
+     *             if the game is already over
+     */
+    public SearchResult search(long pTimeBudgetMillis) throws IllegalInputException {
+        return search(pTimeBudgetMillis, principalVariations.length - 1);
+    }
+
+    /**
+     * This method searches for the best move within the given time, but not
+     * deeper than the given depth. Depth 1 is always searched completely, even
+     * if this takes longer.
+     *
+     * @param pTimeBudgetMillis
+     *            the time the search may take in milliseconds
+     * @param pMaxDepth
+     *            the maximum depth (number of single moves) to search
+     * @return the result of the deepest completed iteration
+     * @throws IllegalInputException
+     *             if the game is already over or the depth is smaller than one
+     */
+    public SearchResult search(long pTimeBudgetMillis, int pMaxDepth) throws IllegalInputException {
+        if (game.getGameWon() || game.getGameDraw()) {
+            throw new IllegalInputException("Error, the game is already over.");
+        }
+        if (pMaxDepth < 1) {
+            throw new IllegalInputException("Error, the search depth has to be at least one.");
+        }
+        long start = System.nanoTime();
+        deadline = start + pTimeBudgetMillis * 1000000L;
+        nodes = 0;
+        rootBestMove = -1;
+        mayAbort = false;
+        boolean placement = game.isTokenSelected();
+        SearchResult result = null;
+        for (int depth = 1; depth <= Math.min(pMaxDepth, principalVariations.length - 1); depth++) {
+            aborted = false;
+            horizonReached = false;
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if (aborted) {
+                // the unfinished iteration is worthless
+                break;
+            }
+            int[] principalVariation = new int[principalVariationLengths[0]];
+            System.arraycopy(principalVariations[0], 0, principalVariation, 0, principalVariation.length);
+            result = new SearchResult(placement, columnNumber, score, depth, nodes, System.nanoTime() - start,
+                    principalVariation);
+            rootBestMove = result.getMove();
+            mayAbort = true;
+            if (iterationListener != null) {
+                iterationListener.iterationCompleted(result);
+            }
+            if (!horizonReached || Math.abs(score) > SearchResult.WIN_BOUND || isTimeUp()) {
+                // exact result, proven win or loss, or no time left
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method sets the listener that is informed about every completed
+     * iteration.
+     *
+     * @param pListener
+     *            the listener, null for none
+     */
+    public void setIterationListener(IterationListener pListener) {
+        iterationListener = pListener;
+    }
+
+    /**
+     * This method sets the evaluator of the positions at the end of the search
+     * depth.
+     *
+     * @param pEvaluator
+     *            the evaluator, null for the default evaluator
+     */
+    public void setEvaluator(Evaluator pEvaluator) {
+        evaluator = pEvaluator == null ? Evaluator.getDefault() : pEvaluator;
+    }
+
+    /**
+     * This method stops a running search, it can be invoked by any thread. The
+     * running search returns the result of its last completed iteration. If
+     * the search has not been started yet, it stops after its first iteration,
+     * so a search can be stopped safely before the thread running it has
+     * started. A stopped search stays stopped.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * This method checks whether the search has to stop.
+     *
+     * @return true if the search has been stopped or the time is up
+     */
+    private boolean isTimeUp() {
+        return stopRequested || System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * This method searches a position (alpha-beta search in negamax form).
+     *
+     * @param pDepth
+     *            the remaining depth
+     * @param pPly
+     *            the distance to the root position
+     * @param pAlpha
+     *            the score the player to move has already been guaranteed
+     * @param pBeta
+     *            the score the opponent has already been guaranteed (negated)
+     * @return the score of the position from the point of view of the player
+     *         to move
+     */
+    private int negamax(int pDepth, int pPly, int pAlpha, int pBeta) {
+        principalVariationLengths[pPly] = pPly;
+        nodes++;
+        if ((nodes & CHECK_INTERVAL) == 0 && mayAbort && isTimeUp()) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (pDepth == 0) {
+            horizonReached = true;
+            return evaluate();
+        }
+        if (game.isTokenSelected()) {
+            return searchPlacements(pDepth, pPly, pAlpha, pBeta);
+        } else {
+            return searchSelections(pDepth, pPly, pAlpha, pBeta);
+        }
+    }
+
+    /**
+     * This method searches all placements of a position. The player who places
+     * also selects the next token, so the point of view does not change.
+     *
+     * @param pDepth
+     *            the remaining depth
+     * @param pPly
+     *            the distance to the root position
+     * @param pAlpha
+     *            the score the player to move has already been guaranteed
+     * @param pBeta
+     *            the score the opponent has already been guaranteed (negated)
+     * @return the score of the position from the point of view of the player
+     *         to move
+     */
+    private int searchPlacements(int pDepth, int pPly, int pAlpha, int pBeta) {
+        int[] rows = moveRows[pPly];
+        int[] columns = moveColumns[pPly];
+        int count = game.generatePlacements(rows, columns);
+        if (pPly == 0) {
+            for (int i = 0; i < count; i++) {
+                if (rows[i] * columnNumber + columns[i] == rootBestMove) {
+                    swap(rows, 0, i);
+                    swap(columns, 0, i);
+                }
+            }
+        }
+        int alpha = pAlpha;
+        int best = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            int score;
+            try {
+                game.place(rows[i], columns[i]);
+            } catch (IllegalInputException e) {
+                // this should not happen, only legal placements are generated
+                continue;
+            }
+            if (game.getGameWon()) {
+                // the placing player is the player to move
+                principalVariationLengths[pPly + 1] = pPly + 1;
+                score = SearchResult.WIN - (pPly + 1);
+            } else if (game.getGameDraw()) {
+                principalVariationLengths[pPly + 1] = pPly + 1;
+                score = 0;
+            } else {
+                score = negamax(pDepth - 1, pPly + 1, alpha, pBeta);
+            }
+            undoPlace(rows[i], columns[i]);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                updatePrincipalVariation(pPly, rows[i] * columnNumber + columns[i]);
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= pBeta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return count == 0 ? 0 : best;
+    }
+
+    /**
+     * This method searches all selections of a position. The opponent places
+     * the selected token, so the point of view changes.
+     *
+     * @param pDepth
+     *            the remaining depth
+     * @param pPly
+     *            the distance to the root position
+     * @param pAlpha
+     *            the score the player to move has already been guaranteed
+     * @param pBeta
+     *            the score the opponent has already been guaranteed (negated)
+     * @return the score of the position from the point of view of the player
+     *         to move
+     */
+    private int searchSelections(int pDepth, int pPly, int pAlpha, int pBeta) {
+        int[] tokens = moveTokens[pPly];
+        int count = game.generateSelections(tokens);
+        /*
+         * an unsafe token lets the opponent win immediately, so unsafe tokens
+         * only have to be considered if there is no safe one
+         */
+        int safeCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (game.isSafeSelection(tokens[i])) {
+                swap(tokens, safeCount, i);
+                safeCount++;
+            }
+        }
+        if (safeCount == 0 && count > 0) {
+            principalVariationLengths[pPly + 1] = pPly + 1;
+            updatePrincipalVariation(pPly, tokens[0]);
+            return -(SearchResult.WIN - (pPly + 2));
+        }
+        count = safeCount;
+        if (pPly == 0) {
+            for (int i = 0; i < count; i++) {
+                if (tokens[i] == rootBestMove) {
+                    swap(tokens, 0, i);
+                }
+            }
+        }
+        int alpha = pAlpha;
+        int best = -INFINITY;
+        for (int i = 0; i < count; i++) {
+            try {
+                game.select(tokens[i]);
+            } catch (IllegalInputException | ObjectNotFoundException e) {
+                // this should not happen, only available tokens are generated
+                continue;
+            }
+            int score = -negamax(pDepth - 1, pPly + 1, -pBeta, -alpha);
+            undoSelect();
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                updatePrincipalVariation(pPly, tokens[i]);
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= pBeta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return count == 0 ? 0 : best;
+    }
+
+    /**
+     * This method evaluates a position at the end of the search depth (see
+     * {@link Evaluator}).
+     *
+     * @return the score of the position from the point of view of the player
+     *         to move
+     */
+    private int evaluate() {
+        return evaluator.evaluate(game, features);
+    }
+
+    /**
+     * This method takes back a placement made by the search.
+     *
+     * @param pRow
+     *            the row of the placement
+     * @param pColumn
+     *            the column of the placement
+     */
+    private void undoPlace(int pRow, int pColumn) {
+        try {
+            game.undoPlace(pRow, pColumn);
+        } catch (IllegalInputException e) {
+            // this should not happen, the token has just been placed there
+        }
+    }
+
+    /**
+     * This method takes back a selection made by the search.
+     */
+    private void undoSelect() {
+        try {
+            game.undoSelect();
+        } catch (IllegalInputException e) {
+            // this should not happen, the token has just been selected
+        }
+    }
+
+    /**
+     * This method stores a new best move at a ply together with the principal
+     * variation following it.
+     *
+     * @param pPly
+     *            the ply the move has been made at
+     * @param pMove
+     *            the encoded move
+     */
+    private void updatePrincipalVariation(int pPly, int pMove) {
+        int[] variation = principalVariations[pPly];
+        variation[pPly] = pMove;
+        int length = principalVariationLengths[pPly + 1];
+        System.arraycopy(principalVariations[pPly + 1], pPly + 1, variation, pPly + 1, length - (pPly + 1));
+        principalVariationLengths[pPly] = length;
+    }
+
+    /**
+     * This method swaps two elements of an array.
+     *
+     * @param pArray
+     *            the array
+     * @param pFirst
+     *            the index of the first element
+     * @param pSecond
+     *            the index of the second element
+     */
+    private static void swap(int[] pArray, int pFirst, int pSecond) {
+        int help = pArray[pFirst];
+        pArray[pFirst] = pArray[pSecond];
+        pArray[pSecond] = help;
+    }
+}
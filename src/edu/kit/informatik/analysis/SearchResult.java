@@ -0,0 +1,241 @@
+package edu.kit.informatik.analysis;
+
+/**
+ * This class represents the result of a search: the best move that has been
+ * found, its evaluation, the principal variation (the expected course of the
+ * game following the best move) and some statistics. Objects of this class
+ * cannot be changed after they have been created.
+ *
+ * A move is encoded as one integer: the number of the token for a selection,
+ * row * number of columns + column for a placement. Selections and placements
+ * alternate in the principal variation, the first move is a placement if
+ * {@link #isPlacement()} returns true.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class SearchResult {
+
+    /**
+     * the score of a won game; wins that take longer have smaller scores
+     */
+    public static final int WIN = 1000000;
+
+    /**
+     * scores above this bound (or below its negation) are proven wins (losses)
+     */
+    public static final int WIN_BOUND = WIN - 1000;
+
+    /**
+     * saves whether the first move is a placement (true) or a selection (false)
+     */
+    private final boolean placement;
+
+    /**
+     * the number of columns of the board, needed for decoding placements
+     */
+    private final int columnNumber;
+
+    /**
+     * the best move found, -1 if there is none
+     */
+    private final int move;
+
+    /**
+     * the evaluation of the best move from the point of view of the player to
+     * move
+     */
+    private final int score;
+
+    /**
+     * the depth (in single selections and placements) that has been completed
+     */
+    private final int depth;
+
+    /**
+     * the number of positions visited
+     */
+    private final long nodes;
+
+    /**
+     * the time the search took in nanoseconds
+     */
+    private final long nanos;
+
+    /**
+     * the principal variation, starting with the best move
+     */
+    private final int[] principalVariation;
+
+    /**
+     * This method creates a new search result.
+     *
+     * @param pPlacement
+     *            true if the first move is a placement, false if it is a selection
+     * @param pColumnNumber
+     *            the number of columns of the board
+     * @param pScore
+     *            the evaluation of the best move
+     * @param pDepth
+     *            the completed depth
+     * @param pNodes
+     *            the number of positions visited
+     * @param pNanos
+     *            the time the search took in nanoseconds
+     * @param pPrincipalVariation
+     *            the principal variation, starting with the best move (is
+     *            copied)
+     */
+    public SearchResult(boolean pPlacement, int pColumnNumber, int pScore, int pDepth, long pNodes, long pNanos,
+            int[] pPrincipalVariation) {
+        placement = pPlacement;
+        columnNumber = pColumnNumber;
+        score = pScore;
+        depth = pDepth;
+        nodes = pNodes;
+        nanos = pNanos;
+        principalVariation = pPrincipalVariation.clone();
+        move = principalVariation.length > 0 ? principalVariation[0] : -1;
+    }
+
+    /**
+     * This method returns whether the best move is a placement.
+     *
+     * @return true if the best move is a placement, false if it is a selection
+     */
+    public boolean isPlacement() {
+        return placement;
+    }
+
+    /**
+     * This method returns the best move in its encoded form.
+     *
+     * @return the best move, -1 if no move has been found
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * This method returns the evaluation of the best move.
+     *
+     * @return the score from the point of view of the player to move
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * This method returns the depth that has been searched completely.
+     *
+     * @return the completed depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * This method returns the number of positions visited.
+     *
+     * @return the number of nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * This method returns the time the search took.
+     *
+     * @return the time in milliseconds
+     */
+    public long getMillis() {
+        return nanos / 1000000;
+    }
+
+    /**
+     * This method returns the number of positions visited per second.
+     *
+     * @return the nodes per second
+     */
+    public long getNodesPerSecond() {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return (long) (nodes * 1e9 / nanos);
+    }
+
+    /**
+     * This method returns the principal variation.
+     *
+     * @return a copy of the principal variation
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    /**
+     * This method returns the best move in the format of the user commands,
+     * e.g. "select 5" or "place 2;3".
+     *
+     * @return the best move as command, "none" if there is no move
+     */
+    public String formatMove() {
+        if (move < 0) {
+            return "none";
+        }
+        return formatMove(move, placement);
+    }
+
+    /**
+     * This method returns the principal variation in the format of the user
+     * commands, separated by commas.
+     *
+     * @return the principal variation as commands
+     */
+    public String formatPrincipalVariation() {
+        StringBuilder output = new StringBuilder();
+        boolean isPlacement = placement;
+        for (int i = 0; i < principalVariation.length; i++) {
+            if (i > 0) {
+                output.append(", ");
+            }
+            output.append(formatMove(principalVariation[i], isPlacement));
+            // selections and placements alternate
+            isPlacement = !isPlacement;
+        }
+        return output.toString();
+    }
+
+    /**
+     * This method returns the evaluation in a readable format: proven wins and
+     * losses are shown with the number of remaining single moves.
+     *
+     * @return the evaluation as text
+     */
+    public String formatScore() {
+        if (score > WIN_BOUND) {
+            return "win in " + (WIN - score);
+        } else if (score < -WIN_BOUND) {
+            return "loss in " + (WIN + score);
+        } else {
+            return Integer.toString(score);
+        }
+    }
+
+    /**
+     * This method turns an encoded move into a command.
+     *
+     * @param pMove
+     *            the encoded move
+     * @param pPlacement
+     *            whether the move is a placement
+     * @return the move as command
+     */
+    private String formatMove(int pMove, boolean pPlacement) {
+        if (pPlacement) {
+            return "place " + (pMove / columnNumber) + ";" + (pMove % columnNumber);
+        } else {
+            return "select " + pMove;
+        }
+    }
+}
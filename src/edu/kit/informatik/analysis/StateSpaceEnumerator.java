@@ -0,0 +1,836 @@
+package edu.kit.informatik.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class counts the positions that can be reached in a game, ply by ply
+ * (a ply is a selection or a placement). Positions that only differ by a
+ * symmetry are counted once: by a symmetry of the board (see
+ * {@link Board#getSymmetries()}) and by renaming the properties of the tokens
+ * (exchanging properties or the two values of a property), as long as every
+ * token is renamed to a token of the game.
+ *
+ * The positions of a ply are kept in a file, so the memory needed does not
+ * depend on their number. The positions of the next ply are created from this
+ * file, collected in memory, sorted and written to a temporary file whenever
+ * the memory is full (external sorting); at the end all temporary files are
+ * merged, which removes the positions found more than once. The counts of
+ * every ply are printed and appended to the file "counts.txt" as soon as the
+ * ply is complete.
+ *
+ * Every position is stored as one byte per field (token number + 1, 0 for an
+ * empty field), one byte for the selected token (token number + 1, 0 for
+ * none) and one byte for the result (running, won or draw). Of all symmetric
+ * positions, the one with the smallest bytes is stored.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class StateSpaceEnumerator {
+
+    /**
+     * the greatest number of properties all exchanges of properties are tried
+     * for (6! = 720), with more properties only their values are exchanged
+     */
+    private static final int MAXIMUM_PERMUTED_PROPERTIES = 6;
+
+    /**
+     * the greatest number of temporary files merged at the same time, more
+     * files are merged in several passes so that the number of open files and
+     * their buffers stay bounded
+     */
+    private static final int MAXIMUM_MERGED_RUNS = 64;
+
+    /**
+     * the greatest number of tokens, a token is stored as its number + 1 in one
+     * byte
+     */
+    private static final int MAXIMUM_TOKENS = 64;
+
+    /**
+     * the result of a position in which the game goes on
+     */
+    private static final byte RUNNING = 0;
+
+    /**
+     * the result of a position in which the game has been won
+     */
+    private static final byte WON = 1;
+
+    /**
+     * the result of a position in which the game has ended by draw
+     */
+    private static final byte DRAW = 2;
+
+    /**
+     * the game the positions are created on
+     */
+    private final Game game;
+
+    /**
+     * the directory the files are written to
+     */
+    private final File directory;
+
+    /**
+     * the number of fields of the board
+     */
+    private final int fieldCount;
+
+    /**
+     * the number of bytes of a position
+     */
+    private final int recordLength;
+
+    /**
+     * the field every field is taken from, for every symmetry of the board
+     */
+    private final int[][] inverseSymmetries;
+
+    /**
+     * the token every token is renamed to, for every renaming of the
+     * properties
+     */
+    private final int[][] tokenMaps;
+
+    /**
+     * the positions collected in memory
+     */
+    private final byte[] chunk;
+
+    /**
+     * the number of positions that fit into the memory
+     */
+    private final int chunkCapacity;
+
+    /**
+     * the number of positions collected in memory
+     */
+    private int chunkSize;
+
+    /**
+     * the offsets of the collected positions, sorted before writing them
+     */
+    private final int[] order;
+
+    /**
+     * help array for sorting the offsets
+     */
+    private final int[] sortBuffer;
+
+    /**
+     * the temporary files of the current ply
+     */
+    private final List<File> runs = new ArrayList<File>();
+
+    /**
+     * the number of temporary files created so far, used for their names
+     */
+    private int runNumber;
+
+    /**
+     * the position being created
+     */
+    private final byte[] child;
+
+    /**
+     * the symmetric position being compared
+     */
+    private final byte[] candidate;
+
+    /**
+     * the smallest symmetric position found so far
+     */
+    private final byte[] best;
+
+    /**
+     * the tokens at the fields of the position being expanded
+     */
+    private final int[] fieldTokens;
+
+    /**
+     * the selectable tokens of the position being expanded
+     */
+    private final int[] tokens;
+
+    /**
+     * the rows of the free fields of the position being expanded
+     */
+    private final int[] rows;
+
+    /**
+     * the columns of the free fields of the position being expanded
+     */
+    private final int[] columns;
+
+    /**
+     * This method creates a new enumerator.
+     *
+     * @param pGame
+     *            a game of the kind to enumerate (two players, at most 64
+     *            tokens), it is changed
+     * @param pDirectory
+     *            the directory the files are written to
+     * @param pMegabytes
+     *            the memory for collecting positions in megabytes
+     * @throws IllegalInputException
+     *             if the game does not have two players or more than 64 tokens
+     *             or if the memory is not positive
+     */
+    public StateSpaceEnumerator(Game pGame, File pDirectory, int pMegabytes) throws IllegalInputException {
+        Board board = pGame.getBoard();
+        if (pGame.getNumberOfPlayers() != 2 || board.getTokenCount() > MAXIMUM_TOKENS) {
+            throw new IllegalInputException("Error, only games with two players and at most " + MAXIMUM_TOKENS
+                    + " tokens can be enumerated.");
+        }
+        if (pMegabytes < 1) {
+            throw new IllegalInputException("Error, the memory has to be at least one megabyte.");
+        }
+        game = pGame;
+        directory = pDirectory;
+        fieldCount = board.getRowNumber() * board.getColumnNumber();
+        recordLength = fieldCount + 2;
+        int[][] symmetries = board.getSymmetries();
+        inverseSymmetries = new int[symmetries.length][fieldCount];
+        for (int i = 0; i < symmetries.length; i++) {
+            for (int field = 0; field < fieldCount; field++) {
+                inverseSymmetries[i][symmetries[i][field]] = field;
+            }
+        }
+        tokenMaps = createTokenMaps(board.getTokenCount(), board.getNumberOfTokenProperties());
+        chunkCapacity = (int) Math.min(Integer.MAX_VALUE / recordLength,
+                (long) pMegabytes * 1024 * 1024 / (recordLength + 8));
+        chunk = new byte[chunkCapacity * recordLength];
+        order = new int[chunkCapacity];
+        sortBuffer = new int[chunkCapacity];
+        child = new byte[recordLength];
+        candidate = new byte[recordLength];
+        best = new byte[recordLength];
+        fieldTokens = new int[fieldCount];
+        tokens = new int[pGame.getMaximumNumberOfSelections() + 1];
+        rows = new int[pGame.getMaximumNumberOfPlacements()];
+        columns = new int[rows.length];
+    }
+
+    /**
+     * This method counts the positions of a game. Usage: StateSpaceEnumerator
+     * standard|torus rows columns tokens properties directory [maxPly
+     * [megabytes]]
+     *
+     * @param args
+     *            the kind and size of the board, the number of tokens and of
+     *            their properties, the directory for the files, the last ply
+     *            to count (default: until the game is over) and the memory for
+     *            collecting positions in megabytes (default 256)
+     */
+    public static void main(String[] args) {
+        int[] numbers = new int[4];
+        int maxPly = Integer.MAX_VALUE;
+        int megabytes = 256;
+        try {
+            if (args.length < 6 || args.length > 8 || !args[0].equals("standard") && !args[0].equals("torus")) {
+                throw new NumberFormatException();
+            }
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = Integer.parseInt(args[i + 1]);
+            }
+            if (args.length > 6) {
+                maxPly = Integer.parseInt(args[6]);
+            }
+            if (args.length > 7) {
+                megabytes = Integer.parseInt(args[7]);
+            }
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, usage: standard|torus rows columns tokens properties directory "
+                    + "[maxPly [megabytes]]");
+            System.exit(1);
+        }
+        File directory = new File(args[5]);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Terminal.printLine("Error, the directory " + directory + " cannot be created.");
+            System.exit(1);
+        }
+        try {
+            Board board = args[0].equals("torus") ? new Torus(numbers[2], numbers[3], numbers[0], numbers[1])
+                    : new Standard(numbers[2], numbers[3], numbers[0], numbers[1]);
+            StateSpaceEnumerator enumerator = new StateSpaceEnumerator(new Game(2, board), directory, megabytes);
+            long start = System.nanoTime();
+            long total = enumerator.enumerate(maxPly);
+            Terminal.printLine("positions " + total + ", symmetries " + enumerator.inverseSymmetries.length + " x "
+                    + enumerator.tokenMaps.length + ", " + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IllegalInputException e) {
+            Terminal.printLine(e.getMessage());
+        } catch (IOException e) {
+            Terminal.printLine("Error, the files cannot be written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method counts the positions ply by ply.
+     *
+     * @param pMaxPly
+     *            the last ply to count
+     * @return the number of positions of all plies
+     * @throws IOException
+     *             if the files cannot be written
+     */
+    public long enumerate(int pMaxPly) throws IOException {
+        File counts = new File(directory, "counts.txt");
+        PrintWriter countWriter = new PrintWriter(new FileWriter(counts, false));
+        try {
+            game.reset();
+            encode(RUNNING);
+            File current = new File(directory, "ply-0.bin");
+            DataOutputStream out = openOutput(current);
+            out.write(best);
+            out.close();
+            long running = 1;
+            long total = 1;
+            report(countWriter, 0, 1, 0, 0);
+            for (int ply = 1; ply <= pMaxPly && running > 0; ply++) {
+                expand(current);
+                File next = new File(directory, "ply-" + ply + ".bin");
+                long[] plyCounts = merge(next);
+                if (!current.delete()) {
+                    throw new IOException("the file " + current + " cannot be deleted");
+                }
+                current = next;
+                total += plyCounts[0];
+                running = plyCounts[0] - plyCounts[1] - plyCounts[2];
+                report(countWriter, ply, plyCounts[0], plyCounts[1], plyCounts[2]);
+            }
+            return total;
+        } finally {
+            countWriter.close();
+        }
+    }
+
+    /**
+     * This method prints the counts of a ply and appends them to the counts
+     * file.
+     *
+     * @param pWriter
+     *            the counts file
+     * @param pPly
+     *            the ply
+     * @param pPositions
+     *            the number of positions
+     * @param pWon
+     *            the number of won positions
+     * @param pDraw
+     *            the number of positions ended by draw
+     */
+    private static void report(PrintWriter pWriter, int pPly, long pPositions, long pWon, long pDraw) {
+        String line = "ply " + pPly + ": positions " + pPositions + ", won " + pWon + ", draw " + pDraw;
+        Terminal.printLine(line);
+        pWriter.println(line);
+        pWriter.flush();
+    }
+
+    /**
+     * This method creates all positions following the running positions of a
+     * file and writes them to sorted temporary files.
+     *
+     * @param pFile
+     *            the positions of the current ply
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    private void expand(File pFile) throws IOException {
+        byte[] record = new byte[recordLength];
+        DataInputStream in = openInput(pFile);
+        try {
+            int read = readRecord(in, record);
+            while (read == recordLength) {
+                if (record[fieldCount + 1] == RUNNING) {
+                    expandRecord(record);
+                }
+                read = readRecord(in, record);
+            }
+        } finally {
+            in.close();
+        }
+        writeRun();
+    }
+
+    /**
+     * This method creates all positions following a running position.
+     *
+     * @param pRecord
+     *            the position
+     * @throws IOException
+     *             if a temporary file cannot be written
+     */
+    private void expandRecord(byte[] pRecord) throws IOException {
+        for (int field = 0; field < fieldCount; field++) {
+            fieldTokens[field] = pRecord[field] - 1;
+        }
+        try {
+            game.setUp(fieldTokens, pRecord[fieldCount] - 1);
+            if (game.isTokenSelected()) {
+                int count = game.generatePlacements(rows, columns);
+                for (int i = 0; i < count; i++) {
+                    game.place(rows[i], columns[i]);
+                    encode(game.getGameWon() ? WON : game.getGameDraw() ? DRAW : RUNNING);
+                    add();
+                    game.undoPlace(rows[i], columns[i]);
+                }
+            } else {
+                int count = game.generateSelections(tokens);
+                for (int i = 0; i < count; i++) {
+                    game.select(tokens[i]);
+                    encode(RUNNING);
+                    add();
+                    game.undoSelect();
+                }
+            }
+        } catch (IllegalInputException | ObjectNotFoundException e) {
+            // this should not happen, the positions have been created by legal moves
+            throw new IOException("the position " + Arrays.toString(pRecord) + " is invalid");
+        }
+    }
+
+    /**
+     * This method writes the smallest of all positions symmetric to the
+     * position of the game to {@link #best}.
+     *
+     * @param pResult
+     *            the result of the position
+     */
+    private void encode(byte pResult) {
+        Board board = game.getBoard();
+        int columnNumber = board.getColumnNumber();
+        for (int field = 0; field < fieldCount; field++) {
+            child[field] = (byte) (board.getTokenNumberAt(field / columnNumber, field % columnNumber) + 1);
+        }
+        child[fieldCount] = (byte) (game.getSelectedTokenNumber() + 1);
+        boolean first = true;
+        for (int[] tokenMap : tokenMaps) {
+            for (int[] inverse : inverseSymmetries) {
+                // < 0: the candidate is smaller, 0: equal so far, > 0: greater
+                int comparison = first ? -1 : 0;
+                for (int i = 0; i <= fieldCount && comparison <= 0; i++) {
+                    int source = i < fieldCount ? child[inverse[i]] : child[fieldCount];
+                    int value = source == 0 ? 0 : tokenMap[source - 1] + 1;
+                    if (comparison == 0) {
+                        comparison = Integer.compare(value, best[i]);
+                    }
+                    candidate[i] = (byte) value;
+                }
+                if (comparison < 0) {
+                    System.arraycopy(candidate, 0, best, 0, fieldCount + 1);
+                }
+                first = false;
+            }
+        }
+        best[fieldCount + 1] = pResult;
+    }
+
+    /**
+     * This method adds the position in {@link #best} to the positions collected
+     * in memory, which are written to a temporary file if the memory is full.
+     *
+     * @throws IOException
+     *             if the temporary file cannot be written
+     */
+    private void add() throws IOException {
+        if (chunkSize == chunkCapacity) {
+            writeRun();
+        }
+        System.arraycopy(best, 0, chunk, chunkSize * recordLength, recordLength);
+        chunkSize++;
+    }
+
+    /**
+     * This method sorts the positions collected in memory and writes each of
+     * them once to a new temporary file.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private void writeRun() throws IOException {
+        if (chunkSize == 0) {
+            return;
+        }
+        for (int i = 0; i < chunkSize; i++) {
+            order[i] = i * recordLength;
+        }
+        sort(chunkSize);
+        File run = new File(directory, "run-" + runNumber++ + ".tmp");
+        DataOutputStream out = openOutput(run);
+        try {
+            for (int i = 0; i < chunkSize; i++) {
+                if (i == 0 || compare(chunk, order[i - 1], chunk, order[i]) != 0) {
+                    out.write(chunk, order[i], recordLength);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        runs.add(run);
+        chunkSize = 0;
+    }
+
+    /**
+     * This method merges the temporary files into one file, every position is
+     * written once. At most {@link #MAXIMUM_MERGED_RUNS} files are merged at
+     * the same time: as long as there are more, the oldest ones are merged into
+     * a new temporary file. The temporary files are deleted.
+     *
+     * @param pFile
+     *            the file for the positions of the next ply
+     * @return the number of positions, of won positions and of positions ended
+     *         by draw
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    private long[] merge(File pFile) throws IOException {
+        try {
+            while (runs.size() > MAXIMUM_MERGED_RUNS) {
+                List<File> group = new ArrayList<File>(runs.subList(0, MAXIMUM_MERGED_RUNS));
+                runs.subList(0, MAXIMUM_MERGED_RUNS).clear();
+                File run = new File(directory, "run-" + runNumber++ + ".tmp");
+                // the new file is deleted with the others if merging fails
+                runs.add(run);
+                mergeRuns(group, run);
+            }
+            return mergeRuns(runs, pFile);
+        } finally {
+            deleteRuns(runs);
+        }
+    }
+
+    /**
+     * This method merges some temporary files into one file, every position is
+     * written once. The merged files are deleted.
+     *
+     * @param pRuns
+     *            the temporary files
+     * @param pFile
+     *            the file for the merged positions
+     * @return the number of written positions, of won positions and of
+     *         positions ended by draw
+     * @throws IOException
+     *             if the files cannot be read or written
+     */
+    private long[] mergeRuns(List<File> pRuns, File pFile) throws IOException {
+        long[] counts = new long[3];
+        PriorityQueue<Run> queue = new PriorityQueue<Run>();
+        DataOutputStream out = openOutput(pFile);
+        byte[] last = null;
+        try {
+            for (File run : pRuns) {
+                Run reader = new Run(run);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                Run reader = queue.poll();
+                if (last == null || compare(last, 0, reader.record, 0) != 0) {
+                    out.write(reader.record);
+                    counts[0]++;
+                    if (reader.record[fieldCount + 1] == WON) {
+                        counts[1]++;
+                    } else if (reader.record[fieldCount + 1] == DRAW) {
+                        counts[2]++;
+                    }
+                    last = last == null ? new byte[recordLength] : last;
+                    System.arraycopy(reader.record, 0, last, 0, recordLength);
+                }
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            out.close();
+            for (Run reader : queue) {
+                reader.close();
+            }
+            deleteRuns(pRuns);
+        }
+        return counts;
+    }
+
+    /**
+     * This method deletes temporary files and removes them from the list.
+     *
+     * @param pRuns
+     *            the temporary files
+     */
+    private static void deleteRuns(List<File> pRuns) {
+        for (File run : pRuns) {
+            if (run.exists() && !run.delete()) {
+                Terminal.printLine("Error, the file " + run + " cannot be deleted.");
+            }
+        }
+        pRuns.clear();
+    }
+
+    /**
+     * This method sorts the first offsets of {@link #order} by the positions
+     * they point to (merge sort, so that no objects are created).
+     *
+     * @param pCount
+     *            the number of offsets
+     */
+    private void sort(int pCount) {
+        int[] source = order;
+        int[] target = sortBuffer;
+        for (int width = 1; width < pCount; width *= 2) {
+            for (int from = 0; from < pCount; from += 2 * width) {
+                int middle = Math.min(from + width, pCount);
+                int to = Math.min(from + 2 * width, pCount);
+                int left = from;
+                int right = middle;
+                for (int i = from; i < to; i++) {
+                    if (left < middle && (right >= to || compare(chunk, source[left], chunk, source[right]) <= 0)) {
+                        target[i] = source[left++];
+                    } else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+            int[] help = source;
+            source = target;
+            target = help;
+        }
+        if (source != order) {
+            System.arraycopy(source, 0, order, 0, pCount);
+        }
+    }
+
+    /**
+     * This method compares two positions byte by byte.
+     *
+     * @param pFirst
+     *            the array of the first position
+     * @param pFirstOffset
+     *            the offset of the first position
+     * @param pSecond
+     *            the array of the second position
+     * @param pSecondOffset
+     *            the offset of the second position
+     * @return a negative number, zero or a positive number if the first position
+     *         is smaller, equal or greater
+     */
+    private int compare(byte[] pFirst, int pFirstOffset, byte[] pSecond, int pSecondOffset) {
+        for (int i = 0; i < recordLength; i++) {
+            int difference = pFirst[pFirstOffset + i] - pSecond[pSecondOffset + i];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * This method reads the next position of a file.
+     *
+     * @param pIn
+     *            the file
+     * @param pRecord
+     *            the array for the position
+     * @return the number of bytes read, smaller than the length of a position
+     *         at the end of the file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private int readRecord(DataInputStream pIn, byte[] pRecord) throws IOException {
+        int read = 0;
+        while (read < pRecord.length) {
+            int bytes = pIn.read(pRecord, read, pRecord.length - read);
+            if (bytes < 0) {
+                break;
+            }
+            read += bytes;
+        }
+        return read;
+    }
+
+    /**
+     * This method opens a file for writing.
+     *
+     * @param pFile
+     *            the file
+     * @return the stream
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    private static DataOutputStream openOutput(File pFile) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pFile), 1 << 16));
+    }
+
+    /**
+     * This method opens a file for reading.
+     *
+     * @param pFile
+     *            the file
+     * @return the stream
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    private static DataInputStream openInput(File pFile) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(pFile), 1 << 16));
+    }
+
+    /**
+     * This method creates all renamings of the tokens that exchange properties
+     * or the values of properties and rename every token to a token of the
+     * game.
+     *
+     * @param pTokenCount
+     *            the number of tokens
+     * @param pProperties
+     *            the number of properties of every token
+     * @return the token every token is renamed to, for every renaming (the
+     *         first one keeps all tokens)
+     */
+    private static int[][] createTokenMaps(int pTokenCount, int pProperties) {
+        List<int[]> maps = new ArrayList<int[]>();
+        int[] identity = new int[pTokenCount];
+        for (int token = 0; token < pTokenCount; token++) {
+            identity[token] = token;
+        }
+        maps.add(identity);
+        if (pProperties >= Integer.SIZE - 1 || pTokenCount > 1 << pProperties) {
+            // tokens with more digits than properties have extra properties, nothing is renamed
+            return maps.toArray(new int[maps.size()][]);
+        }
+        HashSet<String> found = new HashSet<String>();
+        found.add(Arrays.toString(identity));
+        int[] permutation = new int[pProperties];
+        for (int i = 0; i < pProperties; i++) {
+            permutation[i] = i;
+        }
+        boolean permute = pProperties <= MAXIMUM_PERMUTED_PROPERTIES;
+        do {
+            for (int flip = 0; flip < 1 << Math.min(pProperties, MAXIMUM_PERMUTED_PROPERTIES); flip++) {
+                int[] map = new int[pTokenCount];
+                boolean valid = true;
+                for (int token = 0; token < pTokenCount && valid; token++) {
+                    int renamed = 0;
+                    for (int property = 0; property < pProperties; property++) {
+                        renamed |= ((token >>> property) & 1) << permutation[property];
+                    }
+                    map[token] = renamed ^ flip;
+                    valid = map[token] < pTokenCount;
+                }
+                if (valid && found.add(Arrays.toString(map))) {
+                    maps.add(map);
+                }
+            }
+        } while (permute && nextPermutation(permutation));
+        return maps.toArray(new int[maps.size()][]);
+    }
+
+    /**
+     * This method changes a permutation to the next one in lexicographic order.
+     *
+     * @param pPermutation
+     *            the permutation
+     * @return false if it was the last permutation
+     */
+    private static boolean nextPermutation(int[] pPermutation) {
+        int i = pPermutation.length - 2;
+        while (i >= 0 && pPermutation[i] >= pPermutation[i + 1]) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        int j = pPermutation.length - 1;
+        while (pPermutation[j] <= pPermutation[i]) {
+            j--;
+        }
+        int help = pPermutation[i];
+        pPermutation[i] = pPermutation[j];
+        pPermutation[j] = help;
+        for (int left = i + 1, right = pPermutation.length - 1; left < right; left++, right--) {
+            help = pPermutation[left];
+            pPermutation[left] = pPermutation[right];
+            pPermutation[right] = help;
+        }
+        return true;
+    }
+
+    /**
+     * This class reads the positions of a temporary file one after another.
+     */
+    private final class Run implements Comparable<Run> {
+
+        /**
+         * the file
+         */
+        private final DataInputStream in;
+
+        /**
+         * the position read last
+         */
+        private final byte[] record = new byte[recordLength];
+
+        /**
+         * This method opens a temporary file.
+         *
+         * @param pFile
+         *            the file
+         * @throws IOException
+         *             if the file cannot be opened
+         */
+        Run(File pFile) throws IOException {
+            in = openInput(pFile);
+        }
+
+        /**
+         * This method reads the next position.
+         *
+         * @return false at the end of the file
+         * @throws IOException
+         *             if the file cannot be read
+         */
+        boolean next() throws IOException {
+            return readRecord(in, record) == recordLength;
+        }
+
+        /**
+         * This method closes the file.
+         *
+         * @throws IOException
+         *             if the file cannot be closed
+         */
+        void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public int compareTo(Run pOther) {
+            return compare(record, 0, pOther.record, 0);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package edu.kit.informatik.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class finds weights for the {@link Evaluator}. It plays many games
+ * against itself (a player selects a random safe token and places a random
+ * token unless it can win), remembers the features of every position and the
+ * result of its game, and then chooses the weights so that the evaluation
+ * predicts the results as well as possible: a score s means that the player to
+ * move wins with the probability 1 / (1 + e^(-s / 1000)) (logistic regression,
+ * solved with Newton's method). Both the games and the regression are spread
+ * over all threads.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class WeightTuner {
+
+    /**
+     * the score that stands for odds of e : 1
+     */
+    private static final double SCALE = 1000.0;
+
+    /**
+     * the number of iterations of Newton's method
+     */
+    private static final int ITERATIONS = 15;
+
+    /**
+     * keeps the equations of Newton's method solvable if a feature never changes
+     */
+    private static final double RIDGE = 1e-6;
+
+    /**
+     * the features of all positions, NUMBER_OF_FEATURES values per position
+     */
+    private final int[] features;
+
+    /**
+     * the result of the game of every position from the point of view of the
+     * player to move (1 for a win, 0.5 for a draw, 0 for a loss)
+     */
+    private final double[] results;
+
+    /**
+     * the number of positions
+     */
+    private final int positions;
+
+    /**
+     * the threads generating positions and computing the regression
+     */
+    private final ExecutorService executor;
+
+    /**
+     * the number of threads
+     */
+    private final int threads;
+
+    /**
+     * This method creates a new tuner.
+     *
+     * @param pPositions
+     *            the number of positions to collect
+     * @param pThreads
+     *            the number of threads
+     */
+    private WeightTuner(int pPositions, int pThreads) {
+        positions = pPositions;
+        threads = pThreads;
+        features = new int[pPositions * Evaluator.NUMBER_OF_FEATURES];
+        results = new double[pPositions];
+        executor = Executors.newFixedThreadPool(pThreads);
+    }
+
+    /**
+     * This method tunes the weights and prints them. Usage: WeightTuner
+     * standard|torus [positions [threads [seed]]]
+     *
+     * @param args
+     *            the kind of board (6x6 with 16 tokens), the number of positions
+     *            (default 1000000), the number of threads (default: number of
+     *            processors) and the seed of the games
+     */
+    public static void main(String[] args) {
+        int positions = 1000000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        try {
+            if (args.length < 1 || args.length > 4 || !args[0].equals("standard") && !args[0].equals("torus")) {
+                throw new NumberFormatException();
+            }
+            if (args.length > 1) {
+                positions = Integer.parseInt(args[1]);
+            }
+            if (args.length > 2) {
+                threads = Integer.parseInt(args[2]);
+            }
+            if (args.length > 3) {
+                seed = Long.parseLong(args[3]);
+            }
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, usage: standard|torus [positions [threads [seed]]]");
+            System.exit(1);
+        }
+        if (positions < 1 || threads < 1) {
+            Terminal.printLine("Error, the number of positions and threads have to be greater than zero.");
+            System.exit(1);
+        }
+        WeightTuner tuner = new WeightTuner(positions, threads);
+        try {
+            long start = System.nanoTime();
+            tuner.generate(args[0].equals("torus"), seed);
+            long generated = System.nanoTime();
+            double[] weights = tuner.fit();
+            long end = System.nanoTime();
+            int[] rounded = new int[weights.length];
+            StringBuilder output = new StringBuilder("weights");
+            for (int i = 0; i < weights.length; i++) {
+                rounded[i] = (int) Math.round(weights[i] * SCALE);
+                output.append(i == 0 ? " " : ", ").append(rounded[i]);
+            }
+            Terminal.printLine(output.toString());
+            Terminal.printLine("loss " + format(tuner.loss(Evaluator.getDefault().getWeights()))
+                    + " (default weights), " + format(tuner.loss(rounded)) + " (new weights)");
+            Terminal.printLine("positions " + positions + ", self-play " + (generated - start) / 1000000
+                    + " ms, regression " + (end - generated) / 1000000 + " ms");
+        } catch (IllegalInputException | InterruptedException | ExecutionException e) {
+            Terminal.printLine("Error, the tuning has failed: " + e.getMessage());
+        } finally {
+            tuner.executor.shutdown();
+        }
+    }
+
+    /**
+     * This method formats a loss.
+     *
+     * @param pLoss
+     *            the loss
+     * @return the loss with 5 decimal places
+     */
+    private static String format(double pLoss) {
+        return String.format("%.5f", pLoss);
+    }
+
+    /**
+     * This method plays games until all positions have been collected, every
+     * thread filling its own part of the arrays.
+     *
+     * @param pTorus
+     *            true for the torus, false for the standard board
+     * @param pSeed
+     *            the seed of the games
+     * @throws IllegalInputException
+     *             if a board cannot be created (this should not happen)
+     * @throws InterruptedException
+     *             if the thread has been interrupted while waiting
+     * @throws ExecutionException
+     *             if a thread has failed
+     */
+    private void generate(final boolean pTorus, long pSeed)
+            throws IllegalInputException, InterruptedException, ExecutionException {
+        List<Future<Void>> parts = new ArrayList<Future<Void>>();
+        for (int i = 0; i < threads; i++) {
+            final int from = (int) ((long) positions * i / threads);
+            final int to = (int) ((long) positions * (i + 1) / threads);
+            final Board board = pTorus ? new Torus(16, 4, 6, 6) : new Standard(16, 4, 6, 6);
+            final Random random = new Random(pSeed + i);
+            parts.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IllegalInputException {
+                    new SelfPlay(new Game(2, board), random).fill(from, to);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> part : parts) {
+            part.get();
+        }
+    }
+
+    /**
+     * This method finds the weights predicting the results best.
+     *
+     * @return the weights in units of {@link #SCALE}
+     * @throws InterruptedException
+     *             if the thread has been interrupted while waiting
+     * @throws ExecutionException
+     *             if a thread has failed
+     */
+    private double[] fit() throws InterruptedException, ExecutionException {
+        final int n = Evaluator.NUMBER_OF_FEATURES;
+        final double[] weights = new double[n];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            // gradient (first n values) and Hessian (n * n values) of the loss
+            List<Future<double[]>> parts = new ArrayList<Future<double[]>>();
+            for (int i = 0; i < threads; i++) {
+                final int from = (int) ((long) positions * i / threads);
+                final int to = (int) ((long) positions * (i + 1) / threads);
+                parts.add(executor.submit(new Callable<double[]>() {
+                    @Override
+                    public double[] call() {
+                        return derivatives(weights, from, to);
+                    }
+                }));
+            }
+            double[] sum = new double[n + n * n];
+            for (Future<double[]> part : parts) {
+                double[] values = part.get();
+                for (int i = 0; i < sum.length; i++) {
+                    sum[i] += values[i];
+                }
+            }
+            double[][] hessian = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    hessian[i][j] = sum[n + i * n + j] + (i == j ? RIDGE * positions : 0);
+                }
+            }
+            double[] step = solve(hessian, Arrays.copyOf(sum, n));
+            for (int i = 0; i < n; i++) {
+                weights[i] -= step[i];
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * This method computes the gradient and the Hessian of the loss (cross
+     * entropy) for a part of the positions.
+     *
+     * @param pWeights
+     *            the current weights
+     * @param pFrom
+     *            the first position
+     * @param pTo
+     *            the position after the last one
+     * @return the gradient followed by the Hessian (row by row)
+     */
+    private double[] derivatives(double[] pWeights, int pFrom, int pTo) {
+        int n = Evaluator.NUMBER_OF_FEATURES;
+        double[] values = new double[n + n * n];
+        for (int p = pFrom; p < pTo; p++) {
+            int offset = p * n;
+            double score = 0;
+            for (int i = 0; i < n; i++) {
+                score += pWeights[i] * features[offset + i];
+            }
+            double probability = 1.0 / (1.0 + Math.exp(-score));
+            double error = probability - results[p];
+            double curvature = probability * (1 - probability);
+            for (int i = 0; i < n; i++) {
+                int feature = features[offset + i];
+                if (feature == 0) {
+                    continue;
+                }
+                values[i] += error * feature;
+                for (int j = 0; j < n; j++) {
+                    values[n + i * n + j] += curvature * feature * features[offset + j];
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * This method computes the average loss (cross entropy) of given weights.
+     *
+     * @param pWeights
+     *            the weights as used by the {@link Evaluator}
+     * @return the average loss
+     */
+    private double loss(int[] pWeights) {
+        int n = Evaluator.NUMBER_OF_FEATURES;
+        double sum = 0;
+        for (int p = 0; p < positions; p++) {
+            double score = 0;
+            for (int i = 0; i < n; i++) {
+                score += pWeights[i] * features[p * n + i];
+            }
+            double probability = 1.0 / (1.0 + Math.exp(-score / SCALE));
+            probability = Math.min(1 - 1e-12, Math.max(1e-12, probability));
+            sum -= results[p] * Math.log(probability) + (1 - results[p]) * Math.log(1 - probability);
+        }
+        return sum / positions;
+    }
+
+    /**
+     * This method solves a system of linear equations (Gaussian elimination
+     * with partial pivoting).
+     *
+     * @param pMatrix
+     *            the coefficients, they are changed
+     * @param pRight
+     *            the right side, it is changed
+     * @return the solution
+     */
+    private static double[] solve(double[][] pMatrix, double[] pRight) {
+        int n = pRight.length;
+        for (int column = 0; column < n; column++) {
+            int pivot = column;
+            for (int row = column + 1; row < n; row++) {
+                if (Math.abs(pMatrix[row][column]) > Math.abs(pMatrix[pivot][column])) {
+                    pivot = row;
+                }
+            }
+            double[] swapRow = pMatrix[column];
+            pMatrix[column] = pMatrix[pivot];
+            pMatrix[pivot] = swapRow;
+            double swapValue = pRight[column];
+            pRight[column] = pRight[pivot];
+            pRight[pivot] = swapValue;
+            if (pMatrix[column][column] == 0) {
+                continue;
+            }
+            for (int row = column + 1; row < n; row++) {
+                double factor = pMatrix[row][column] / pMatrix[column][column];
+                for (int k = column; k < n; k++) {
+                    pMatrix[row][k] -= factor * pMatrix[column][k];
+                }
+                pRight[row] -= factor * pRight[column];
+            }
+        }
+        double[] solution = new double[n];
+        for (int row = n - 1; row >= 0; row--) {
+            double value = pRight[row];
+            for (int k = row + 1; k < n; k++) {
+                value -= pMatrix[row][k] * solution[k];
+            }
+            solution[row] = pMatrix[row][row] == 0 ? 0 : value / pMatrix[row][row];
+        }
+        return solution;
+    }
+
+    /**
+     * This class plays games against itself on one thread and collects their
+     * positions.
+     */
+    private final class SelfPlay {
+
+        /**
+         * the game being played, it is reset after every game
+         */
+        private final Game game;
+
+        /**
+         * the generator of the random moves
+         */
+        private final Random random;
+
+        /**
+         * buffer for the generated placements and selections
+         */
+        private final int[] rows;
+
+        /**
+         * buffer for the generated placements
+         */
+        private final int[] columns;
+
+        /**
+         * the features of the positions of the current game
+         */
+        private final int[] gameFeatures;
+
+        /**
+         * the player to move in the positions of the current game
+         */
+        private final int[] gamePlayers;
+
+        /**
+         * This method creates a new self-play.
+         *
+         * @param pGame
+         *            the game to play
+         * @param pRandom
+         *            the generator of the random moves
+         */
+        SelfPlay(Game pGame, Random pRandom) {
+            game = pGame;
+            random = pRandom;
+            rows = new int[Math.max(pGame.getMaximumNumberOfPlacements(), pGame.getMaximumNumberOfSelections())];
+            columns = new int[rows.length];
+            int maxPly = 2 * pGame.getMaximumNumberOfPlacements() + 2;
+            gameFeatures = new int[maxPly * Evaluator.NUMBER_OF_FEATURES];
+            gamePlayers = new int[maxPly];
+        }
+
+        /**
+         * This method plays games until the given positions have been filled.
+         *
+         * @param pFrom
+         *            the first position to fill
+         * @param pTo
+         *            the position after the last one to fill
+         * @throws IllegalInputException
+         *             if a move fails (this should not happen)
+         */
+        void fill(int pFrom, int pTo) throws IllegalInputException {
+            int n = Evaluator.NUMBER_OF_FEATURES;
+            int next = pFrom;
+            int[] current = new int[n];
+            while (next < pTo) {
+                game.reset();
+                int count = 0;
+                while (!game.getGameWon() && !game.getGameDraw()) {
+                    Evaluator.computeFeatures(game, current);
+                    System.arraycopy(current, 0, gameFeatures, count * n, n);
+                    gamePlayers[count] = game.getPlayerToMove();
+                    count++;
+                    move();
+                }
+                int winner = game.getWinningPlayerNumber();
+                for (int i = 0; i < count && next < pTo; i++) {
+                    System.arraycopy(gameFeatures, i * n, features, next * n, n);
+                    results[next] = winner == -1 ? 0.5 : (winner == gamePlayers[i] ? 1 : 0);
+                    next++;
+                }
+            }
+        }
+
+        /**
+         * This method makes one move: a random safe token is selected (or any
+         * token if none is safe), a token is placed where it wins or at a
+         * random field.
+         *
+         * @throws IllegalInputException
+         *             if a move fails (this should not happen)
+         */
+        private void move() throws IllegalInputException {
+            if (game.isTokenSelected()) {
+                int count = game.generatePlacements(rows, columns);
+                if (game.isWinningPlacementPossible()) {
+                    for (int i = 0; i < count; i++) {
+                        game.place(rows[i], columns[i]);
+                        if (game.getGameWon()) {
+                            return;
+                        }
+                        game.undoPlace(rows[i], columns[i]);
+                    }
+                }
+                int index = random.nextInt(count);
+                game.place(rows[index], columns[index]);
+            } else {
+                int count = game.generateSelections(rows);
+                int safe = 0;
+                for (int i = 0; i < count; i++) {
+                    if (game.isSafeSelection(rows[i])) {
+                        rows[safe] = rows[i];
+                        safe++;
+                    }
+                }
+                try {
+                    game.select(rows[random.nextInt(safe > 0 ? safe : count)]);
+                } catch (ObjectNotFoundException e) {
+                    // this should not happen, only available tokens are selected
+                    throw new IllegalInputException(e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package edu.kit.informatik.gameLogic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 
 import edu.kit.informatik.Terminal;
 import edu.kit.informatik.userInteraction.IllegalInputException;
@@ -15,6 +17,16 @@ import edu.kit.informatik.userInteraction.IllegalInputException;
  */
 public abstract class Board {
 
+    /**
+     * the maximum number of rows and of columns of a board
+     */
+    public static final int MAXIMUM_LENGTH = 64;
+
+    /**
+     * the maximum number of tokens of a board
+     */
+    public static final int MAXIMUM_NUMBER_OF_TOKENS = 256;
+
     /**
      * the number of rows this board has
      */
@@ -30,6 +42,12 @@ public abstract class Board {
      */
     private ArrayList<Token> tokens;
     
+    /**
+     * all tokens of this board (by number), wherever they are; they are reused
+     * when the board is reset
+     */
+    private Token[] allTokens;
+
     /**
      * the token that is currently set as "selected" 
      */
@@ -44,33 +62,842 @@ public abstract class Board {
      */
     private Token[][] contentOfFields;
 
+    /**
+     * the position of every token (by number) in the order of the bag; tokens
+     * with smaller values come first
+     */
+    private int[] bagOrder;
+
+    /**
+     * the value of bagOrder for the next token that is put back at the end of the bag
+     */
+    private int nextBagOrder;
+
+    /**
+     * all lines of 4 fields in which 4 tokens win (rows, columns and diagonals),
+     * each given by the indices (row * columnNumber + column) of its fields
+     */
+    private int[][] lines;
+
+    /**
+     * the indices of the lines every field (by index) belongs to
+     */
+    private int[][] linesOfFields;
+
+    /**
+     * the number of tokens placed in every line
+     */
+    private int[] lineTokenCounts;
+
+    /**
+     * for every line the bits that all its tokens have set
+     */
+    private long[] lineCommonOnes;
+
+    /**
+     * for every line the bits that all its tokens have not set
+     */
+    private long[] lineCommonZeros;
+
+    /**
+     * the bits of all properties used by the tokens of this board
+     */
+    private long propertyMask;
+
+    /**
+     * for every bit: the number of lines with 3 tokens in which all tokens have it set
+     */
+    private int[] threatCountsOnes;
+
+    /**
+     * for every bit: the number of lines with 3 tokens in which all tokens have it not set
+     */
+    private int[] threatCountsZeros;
+
+    /**
+     * the bits that a token must not have set, otherwise it completes a line
+     */
+    private long threatOnes;
+
+    /**
+     * the bits that a token must have set, otherwise it completes a line
+     */
+    private long threatZeros;
+
+    /**
+     * for every bit: the tokens (as bitmask of their numbers) having it set
+     */
+    private long[] tokensWithBit;
+
+    /**
+     * the tokens (as bitmask of their numbers) that complete a line if placed
+     */
+    private long unsafeTokens;
+
+    /**
+     * the tokens in the bag (as bitmask of their numbers)
+     */
+    private long bagTokens;
+
+    /**
+     * saves for every line whether it contains a field more than once (only on
+     * small tori), such lines are always regarded as live
+     */
+    private boolean[] lineHasRepeatedFields;
+
+    /**
+     * the number of tokens that have not been placed yet (in the bag or selected)
+     */
+    private int remainingTokens;
+
+    /**
+     * for every bit: the number of tokens that have not been placed yet and have it set
+     */
+    private int[] remainingTokensWithBit;
+
+    /**
+     * the index of the line that has been found live last, it is checked first
+     */
+    private int lastLiveLine;
+
+    /**
+     * a random key for every combination of field and token (index field *
+     * number of tokens + token), used for hashing the position
+     */
+    private long[] fieldKeys;
+
+    /**
+     * a random key for every token being the selected token
+     */
+    private long[] selectionKeys;
+
+    /**
+     * the hash of the position (placed tokens and selected token), the keys of
+     * all placed tokens and of the selected token combined by xor
+     */
+    private long positionHash;
+
+    /**
+     * the output of {@link #rowPrint(int)} for every row, null if the row has
+     * changed since it has been printed last
+     */
+    private String[] rowRenderings;
+
+    /**
+     * the output of {@link #columnPrint(int)} for every column, null if the
+     * column has changed since it has been printed last
+     */
+    private String[] columnRenderings;
+
+    /**
+     * the permutations of the fields that map every line to a line (index 0
+     * is the identity), null until they are needed
+     */
+    private int[][] symmetries;
+
+    /**
+     * the event recorded for {@link #checkWin(int, int)}, reused for every call
+     */
+    private final RecordedEvents.CheckWinEvent checkWinEvent = new RecordedEvents.CheckWinEvent();
+
     /**This method creates a new board.
-     * @param pNumberOfTokens the number of tokens used on this board, has to be between 1 and 16
-     * @param pNumberOfTokenProperties the number of properties each token has
-     * @param pNumberOfRows the number of rows this board has
-     * @param pNumberOfColumns the number of columns this board has
-     * @throws IllegalInputException if pNumerOfRows, pNumberOfColumns or pNumberOfTokens are below 1
+     * @param pNumberOfTokens the number of tokens used on this board, has to be between 1 and
+     * {@link #MAXIMUM_NUMBER_OF_TOKENS}
+     * @param pNumberOfTokenProperties the number of properties each token has, at most 64
+     * @param pNumberOfRows the number of rows this board has, at most {@link #MAXIMUM_LENGTH}
+     * @param pNumberOfColumns the number of columns this board has, at most {@link #MAXIMUM_LENGTH}
+     * @throws IllegalInputException if pNumerOfRows, pNumberOfColumns or pNumberOfTokens are below 1 or above
+     * their maximum
      */
     public Board(int pNumberOfTokens, int pNumberOfTokenProperties, int pNumberOfRows, int pNumberOfColumns) 
             throws IllegalInputException {
         tokens = new ArrayList<Token>();
-        if (pNumberOfRows > 0 && pNumberOfColumns > 0) {
-            contentOfFields = new Token[pNumberOfRows][pNumberOfColumns];
-        } else {
-            throw new IllegalInputException(
-                    "Error, both the number of rows and the number of columns have to be greater than zero.");
-        }
+        checkSize(pNumberOfTokens, pNumberOfRows, pNumberOfColumns);
+        contentOfFields = new Token[pNumberOfRows][pNumberOfColumns];
         selectedToken = null;
         if (pNumberOfTokens > 0) {
+            bagOrder = new int[pNumberOfTokens];
+            allTokens = new Token[pNumberOfTokens];
             for (int i = 0; i < pNumberOfTokens; i++) {
-                tokens.add(new Token(i, pNumberOfTokenProperties));
+                allTokens[i] = new Token(i, pNumberOfTokenProperties);
+                tokens.add(allTokens[i]);
+                bagOrder[i] = i;
             }
+            nextBagOrder = pNumberOfTokens;
             numberOfTokenProperties = pNumberOfTokenProperties;
         } else {
             throw new IllegalInputException("Error, at least one token has to be used.");
         }
         rowNumber = pNumberOfRows;
         columnNumber = pNumberOfColumns;
+        rowRenderings = new String[pNumberOfRows];
+        columnRenderings = new String[pNumberOfColumns];
+        initializeLines();
+        initializeThreats(pNumberOfTokens);
+        initializeKeys();
+    }
+
+    /**
+     * This method checks the size of a board before it is created, so that
+     * its arrays (e.g. one hash key for every field and token) fit into memory.
+     * @param pNumberOfTokens the number of tokens, between 1 and {@link #MAXIMUM_NUMBER_OF_TOKENS}
+     * @param pNumberOfRows the number of rows, between 1 and {@link #MAXIMUM_LENGTH}
+     * @param pNumberOfColumns the number of columns, between 1 and {@link #MAXIMUM_LENGTH}
+     * @throws IllegalInputException if one of the numbers is out of its range
+     */
+    public static void checkSize(int pNumberOfTokens, int pNumberOfRows, int pNumberOfColumns)
+            throws IllegalInputException {
+        if (pNumberOfRows < 1 || pNumberOfColumns < 1 || pNumberOfRows > MAXIMUM_LENGTH
+                || pNumberOfColumns > MAXIMUM_LENGTH) {
+            throw new IllegalInputException("Error, both the number of rows and the number of columns have to be "
+                    + "between 1 and " + MAXIMUM_LENGTH + ".");
+        }
+        if (pNumberOfTokens < 1 || pNumberOfTokens > MAXIMUM_NUMBER_OF_TOKENS) {
+            throw new IllegalInputException("Error, the number of tokens has to be between 1 and "
+                    + MAXIMUM_NUMBER_OF_TOKENS + ".");
+        }
+    }
+
+    /**
+     * This method creates the keys for hashing positions. They are generated
+     * from a fixed seed, so that boards of the same size always have the same
+     * keys (also in different runs of the program).
+     */
+    private void initializeKeys() {
+        // at most 64 * 64 * 256 keys (see checkSize), so this does not overflow
+        int fields = rowNumber * columnNumber;
+        fieldKeys = new long[fields * allTokens.length];
+        selectionKeys = new long[allTokens.length];
+        long state = 0x5EED5EED5EED5EEDL;
+        for (int i = 0; i < fieldKeys.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            fieldKeys[i] = mix(state);
+        }
+        for (int i = 0; i < selectionKeys.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            selectionKeys[i] = mix(state);
+        }
+        positionHash = 0;
+    }
+
+    /**
+     * This method mixes the bits of a number (finalizer of SplitMix64), it is
+     * used for generating random keys and for the hash of {@link Position}.
+     * @param pValue the number to mix
+     * @return the mixed number
+     */
+    static long mix(long pValue) {
+        long value = (pValue ^ (pValue >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * This method returns the hash of the current position, which depends on
+     * the placed tokens and the selected token (the bag follows from them). It
+     * is updated with every move, so this method takes constant time. Boards of
+     * the same size use the same keys, also in different runs of the program.
+     * @return the hash of the position
+     */
+    public long getPositionHash() {
+        return positionHash;
+    }
+
+    /**
+     * This method returns the hash the current position would have if its
+     * tokens were moved to other fields (see {@link #getSymmetries()}). The
+     * smallest hash of all symmetries is the same for all positions that only
+     * differ by a symmetry of the board.
+     * @param pFieldPermutation the field every field is moved to (index row *
+     *                          columnNumber + column)
+     * @return the hash of the moved position
+     */
+    public long getPositionHash(int[] pFieldPermutation) {
+        long hash = selectedToken == null ? 0 : selectionKeys[selectedToken.getDecimalNumber()];
+        for (int row = 0; row < rowNumber; row++) {
+            for (int column = 0; column < columnNumber; column++) {
+                Token token = contentOfFields[row][column];
+                if (token != null) {
+                    hash ^= fieldKey(pFieldPermutation[row * columnNumber + column], token);
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * This method returns the symmetries of this board: the permutations of
+     * the fields that map every line of four fields to a line, so that wins
+     * and threats do not change. These are the rotations and reflections that
+     * fit the shape of the board and on a torus also the shifts. They are
+     * computed the first time they are needed.
+     * @return the field every field is moved to (index row * columnNumber +
+     *         column) for every symmetry, the first one is the identity; the
+     *         arrays must not be changed
+     */
+    public int[][] getSymmetries() {
+        if (symmetries != null) {
+            return symmetries;
+        }
+        HashSet<String> lineKeys = new HashSet<String>();
+        for (int[] line : lines) {
+            lineKeys.add(getLineKey(line, null));
+        }
+        boolean square = rowNumber == columnNumber;
+        int shifts = this instanceof Torus ? rowNumber * columnNumber : 1;
+        ArrayList<int[]> found = new ArrayList<int[]>();
+        for (int transformation = 0; transformation < 8; transformation++) {
+            if (transformation >= 4 && !square) {
+                // exchanging rows and columns only fits a square board
+                break;
+            }
+            for (int shift = 0; shift < shifts; shift++) {
+                int[] permutation = new int[rowNumber * columnNumber];
+                for (int row = 0; row < rowNumber; row++) {
+                    for (int column = 0; column < columnNumber; column++) {
+                        int newRow = (transformation & 1) == 0 ? row : rowNumber - 1 - row;
+                        int newColumn = (transformation & 2) == 0 ? column : columnNumber - 1 - column;
+                        if (transformation >= 4) {
+                            int help = newRow;
+                            newRow = newColumn;
+                            newColumn = help;
+                        }
+                        newRow = (newRow + shift / columnNumber) % rowNumber;
+                        newColumn = (newColumn + shift % columnNumber) % columnNumber;
+                        permutation[row * columnNumber + column] = newRow * columnNumber + newColumn;
+                    }
+                }
+                boolean keepsLines = true;
+                for (int i = 0; i < lines.length && keepsLines; i++) {
+                    keepsLines = lineKeys.contains(getLineKey(lines[i], permutation));
+                }
+                if (keepsLines) {
+                    found.add(permutation);
+                }
+            }
+        }
+        symmetries = found.toArray(new int[found.size()][]);
+        return symmetries;
+    }
+
+    /**
+     * This method describes the fields of a line independently of their order.
+     * @param pLine the fields of the line
+     * @param pFieldPermutation the field every field is moved to, null for
+     *                          none
+     * @return the sorted fields as text
+     */
+    private static String getLineKey(int[] pLine, int[] pFieldPermutation) {
+        int[] fields = new int[pLine.length];
+        for (int i = 0; i < pLine.length; i++) {
+            fields[i] = pFieldPermutation == null ? pLine[i] : pFieldPermutation[pLine[i]];
+        }
+        Arrays.sort(fields);
+        return Arrays.toString(fields);
+    }
+
+    /**
+     * This method returns the key of a token placed at a field.
+     * @param pField the index of the field (row * columnNumber + column)
+     * @param pToken the token
+     * @return the key
+     */
+    private long fieldKey(int pField, Token pToken) {
+        return fieldKeys[pField * allTokens.length + pToken.getDecimalNumber()];
+    }
+
+    /**
+     * This method determines all lines of 4 fields of this board, using the
+     * coordinate rules of the subclass (on a torus lines continue at the
+     * opposite side of the board).
+     */
+    private void initializeLines() {
+        // directions: row, column, diagonal to the bottom right, diagonal to the top right
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
+        ArrayList<int[]> foundLines = new ArrayList<int[]>();
+        for (int row = 0; row < rowNumber; row++) {
+            for (int column = 0; column < columnNumber; column++) {
+                for (int[] direction : directions) {
+                    int[] line = new int[4];
+                    boolean valid = true;
+                    for (int k = 0; k < 4 && valid; k++) {
+                        int fieldRow = getCoordinateRow(row + k * direction[0]);
+                        int fieldColumn = getCoordinateColumn(column + k * direction[1]);
+                        if (fieldRow < 0 || fieldColumn < 0 || fieldRow >= rowNumber || fieldColumn >= columnNumber) {
+                            // the line leaves a standard board
+                            valid = false;
+                        } else {
+                            line[k] = fieldRow * columnNumber + fieldColumn;
+                        }
+                    }
+                    if (valid) {
+                        foundLines.add(line);
+                    }
+                }
+            }
+        }
+        lines = foundLines.toArray(new int[foundLines.size()][]);
+        lineHasRepeatedFields = new boolean[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            for (int k = 0; k < 4; k++) {
+                for (int l = k + 1; l < 4; l++) {
+                    if (lines[i][k] == lines[i][l]) {
+                        lineHasRepeatedFields[i] = true;
+                    }
+                }
+            }
+        }
+        // counting the lines of every field first
+        int[] counts = new int[rowNumber * columnNumber];
+        for (int[] line : lines) {
+            for (int field : line) {
+                counts[field]++;
+            }
+        }
+        linesOfFields = new int[rowNumber * columnNumber][];
+        for (int i = 0; i < linesOfFields.length; i++) {
+            linesOfFields[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int i = 0; i < lines.length; i++) {
+            for (int field : lines[i]) {
+                linesOfFields[field][counts[field]] = i;
+                counts[field]++;
+            }
+        }
+    }
+
+    /**
+     * This method creates the arrays for the state of the lines, the threats
+     * and the bitmasks of the tokens and initializes them.
+     * @param pNumberOfTokens the number of tokens used on this board
+     */
+    private void initializeThreats(int pNumberOfTokens) {
+        // the highest token number determines how many bits are used
+        int bits = Math.max(numberOfTokenProperties, 64 - Long.numberOfLeadingZeros(pNumberOfTokens - 1));
+        propertyMask = bits >= 64 ? -1L : (1L << bits) - 1;
+        lineTokenCounts = new int[lines.length];
+        lineCommonOnes = new long[lines.length];
+        lineCommonZeros = new long[lines.length];
+        threatCountsOnes = new int[64];
+        threatCountsZeros = new int[64];
+        tokensWithBit = new long[64];
+        remainingTokensWithBit = new int[64];
+        // only tokens with a number below 64 fit into a bitmask
+        for (int i = 0; i < Math.min(pNumberOfTokens, 64); i++) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((i & (1L << bit)) != 0) {
+                    tokensWithBit[bit] |= 1L << i;
+                }
+            }
+        }
+        resetThreats();
+    }
+
+    /**
+     * This method sets the state of the lines, the threats and the counts of
+     * the remaining tokens to the state of an empty board.
+     */
+    private void resetThreats() {
+        for (int i = 0; i < lines.length; i++) {
+            lineTokenCounts[i] = 0;
+            lineCommonOnes[i] = propertyMask;
+            lineCommonZeros[i] = propertyMask;
+        }
+        Arrays.fill(threatCountsOnes, 0);
+        Arrays.fill(threatCountsZeros, 0);
+        Arrays.fill(remainingTokensWithBit, 0);
+        threatOnes = 0;
+        threatZeros = 0;
+        unsafeTokens = 0;
+        bagTokens = 0;
+        remainingTokens = allTokens.length;
+        lastLiveLine = 0;
+        for (int i = 0; i < allTokens.length; i++) {
+            long bits = allTokens[i].getPropertyMask();
+            while (bits != 0) {
+                remainingTokensWithBit[Long.numberOfTrailingZeros(bits)]++;
+                bits &= bits - 1;
+            }
+            if (i < 64) {
+                bagTokens |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * This method resets this board to its initial state: all fields are empty,
+     * all tokens are in the bag (in their original order) and no token is
+     * selected. No new objects are created, so boards can be reused, e.g. for
+     * simulating many games.
+     */
+    public void reset() {
+        for (Token[] row : contentOfFields) {
+            Arrays.fill(row, null);
+        }
+        tokens.clear();
+        for (int i = 0; i < allTokens.length; i++) {
+            tokens.add(allTokens[i]);
+            bagOrder[i] = i;
+        }
+        nextBagOrder = allTokens.length;
+        selectedToken = null;
+        positionHash = 0;
+        resetThreats();
+        invalidateRenderings();
+    }
+
+    /**
+     * This method sets this board up with the given tokens placed and the given
+     * token selected; all other tokens are in the bag (in the order of their
+     * numbers).
+     * @param pFieldTokens the number of the token placed at every field (index row *
+     *                     columnNumber + column), -1 for an empty field
+     * @param pSelectedToken the number of the selected token, -1 if none is selected
+     * @throws IllegalInputException if a token number does not exist or is used twice
+     */
+    void setUp(int[] pFieldTokens, int pSelectedToken) throws IllegalInputException {
+        boolean[] used = new boolean[allTokens.length];
+        for (int i = 0; i <= pFieldTokens.length; i++) {
+            int number = i < pFieldTokens.length ? pFieldTokens[i] : pSelectedToken;
+            if (number >= allTokens.length || number >= 0 && used[number]) {
+                throw new IllegalInputException("Error, the token " + number + " does not exist or is used twice.");
+            }
+            if (number >= 0) {
+                used[number] = true;
+            }
+        }
+        reset();
+        for (int field = 0; field < pFieldTokens.length; field++) {
+            if (pFieldTokens[field] >= 0) {
+                Token token = allTokens[pFieldTokens[field]];
+                tokens.remove(token);
+                updateBagTokens(token, false);
+                contentOfFields[field / columnNumber][field % columnNumber] = token;
+                positionHash ^= fieldKey(field, token);
+                updateRemainingTokens(token, -1);
+                updateLines(field);
+            }
+        }
+        if (pSelectedToken >= 0) {
+            selectedToken = allTokens[pSelectedToken];
+            tokens.remove(selectedToken);
+            updateBagTokens(selectedToken, false);
+            positionHash ^= selectionKeys[pSelectedToken];
+        }
+    }
+
+    /**
+     * This method checks whether the state of another board can be copied to
+     * this board, which is the case if both boards are of the same kind
+     * (standard or torus), have the same size and use the same tokens.
+     * @param pOther the other board
+     * @return true if both boards are compatible, false if not
+     */
+    public boolean isCompatible(Board pOther) {
+        return pOther != null && pOther.getClass() == getClass() && pOther.rowNumber == rowNumber
+                && pOther.columnNumber == columnNumber && pOther.allTokens.length == allTokens.length
+                && pOther.numberOfTokenProperties == numberOfTokenProperties;
+    }
+
+    /**
+     * This method copies the state of another board (placed tokens, bag and
+     * selected token) to this board. No new objects are created, this board
+     * keeps using its own tokens.
+     * @param pOther the board to copy the state of
+     * @throws IllegalInputException if the other board is not compatible with this board
+     */
+    public void copyFrom(Board pOther) throws IllegalInputException {
+        if (!isCompatible(pOther)) {
+            throw new IllegalInputException("Error, only boards of the same kind and size can be copied.");
+        }
+        if (pOther == this) {
+            return;
+        }
+        for (int i = 0; i < rowNumber; i++) {
+            for (int j = 0; j < columnNumber; j++) {
+                Token token = pOther.contentOfFields[i][j];
+                contentOfFields[i][j] = token == null ? null : allTokens[token.getDecimalNumber()];
+            }
+        }
+        tokens.clear();
+        for (int i = 0; i < pOther.tokens.size(); i++) {
+            tokens.add(allTokens[pOther.tokens.get(i).getDecimalNumber()]);
+        }
+        selectedToken = pOther.selectedToken == null ? null : allTokens[pOther.selectedToken.getDecimalNumber()];
+        System.arraycopy(pOther.bagOrder, 0, bagOrder, 0, bagOrder.length);
+        nextBagOrder = pOther.nextBagOrder;
+        System.arraycopy(pOther.lineTokenCounts, 0, lineTokenCounts, 0, lines.length);
+        System.arraycopy(pOther.lineCommonOnes, 0, lineCommonOnes, 0, lines.length);
+        System.arraycopy(pOther.lineCommonZeros, 0, lineCommonZeros, 0, lines.length);
+        System.arraycopy(pOther.threatCountsOnes, 0, threatCountsOnes, 0, 64);
+        System.arraycopy(pOther.threatCountsZeros, 0, threatCountsZeros, 0, 64);
+        System.arraycopy(pOther.remainingTokensWithBit, 0, remainingTokensWithBit, 0, 64);
+        threatOnes = pOther.threatOnes;
+        threatZeros = pOther.threatZeros;
+        unsafeTokens = pOther.unsafeTokens;
+        bagTokens = pOther.bagTokens;
+        remainingTokens = pOther.remainingTokens;
+        lastLiveLine = pOther.lastLiveLine;
+        positionHash = pOther.positionHash;
+        invalidateRenderings();
+    }
+
+    /**
+     * This method discards the cached output of all rows and columns.
+     */
+    private void invalidateRenderings() {
+        Arrays.fill(rowRenderings, null);
+        Arrays.fill(columnRenderings, null);
+    }
+
+    /**
+     * This method creates a new, empty board of the same kind, size and tokens
+     * as this board.
+     * @return the new board
+     * @throws IllegalInputException this should not happen, since this board
+     *                               has been created with the same parameters
+     */
+    public abstract Board createEmptyBoard() throws IllegalInputException;
+
+    /**
+     * This method changes the counts of the tokens that have not been placed yet.
+     * @param pToken the token that has been placed or taken back from the board
+     * @param pChange -1 if the token has been placed, 1 if it has been taken back
+     */
+    private void updateRemainingTokens(Token pToken, int pChange) {
+        remainingTokens += pChange;
+        long bits = pToken.getPropertyMask();
+        while (bits != 0) {
+            remainingTokensWithBit[Long.numberOfTrailingZeros(bits)] += pChange;
+            bits &= bits - 1;
+        }
+    }
+
+    /**
+     * This method checks whether a line can still be completed to a winning
+     * line: there have to be enough tokens left that share a property with all
+     * the tokens already placed in it.
+     * @param pLine the index of the line
+     * @return true if the line can still be completed, false if not
+     */
+    private boolean isLineLive(int pLine) {
+        if (lineHasRepeatedFields[pLine]) {
+            return true;
+        }
+        int missing = 4 - lineTokenCounts[pLine];
+        if (missing == 0 || missing > remainingTokens) {
+            return false;
+        }
+        long ones = lineCommonOnes[pLine];
+        while (ones != 0) {
+            if (remainingTokensWithBit[Long.numberOfTrailingZeros(ones)] >= missing) {
+                return true;
+            }
+            ones &= ones - 1;
+        }
+        long zeros = lineCommonZeros[pLine];
+        while (zeros != 0) {
+            if (remainingTokens - remainingTokensWithBit[Long.numberOfTrailingZeros(zeros)] >= missing) {
+                return true;
+            }
+            zeros &= zeros - 1;
+        }
+        return false;
+    }
+
+    /**
+     * This method checks whether any line can still be completed to a winning
+     * line. If not, the game can only end by draw. The line found last is
+     * checked first, so this usually takes constant time.
+     * @return true if there is a line that can still be completed
+     */
+    public boolean hasLiveLine() {
+        for (int i = 0; i < lines.length; i++) {
+            int line = (lastLiveLine + i) % lines.length;
+            if (isLineLive(line)) {
+                lastLiveLine = line;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method counts the lines that are completed by a matching token:
+     * lines with 3 tokens sharing at least one property and an empty field.
+     * @return the number of such lines
+     */
+    public int countThreatLines() {
+        int count = 0;
+        for (int line = 0; line < lines.length; line++) {
+            if (lineTokenCounts[line] == 3 && !lineHasRepeatedFields[line]
+                    && (lineCommonOnes[line] | lineCommonZeros[line]) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This method counts the properties lines can still be completed with: for
+     * every line with one or two tokens, the properties these tokens share and
+     * enough of the remaining tokens have.
+     * @return the sum of these properties over all lines
+     */
+    public int countLiveProperties() {
+        int count = 0;
+        for (int line = 0; line < lines.length; line++) {
+            int tokenCount = lineTokenCounts[line];
+            if (tokenCount == 0 || tokenCount > 2 || lineHasRepeatedFields[line]) {
+                continue;
+            }
+            int missing = 4 - tokenCount;
+            long ones = lineCommonOnes[line];
+            while (ones != 0) {
+                if (remainingTokensWithBit[Long.numberOfTrailingZeros(ones)] >= missing) {
+                    count++;
+                }
+                ones &= ones - 1;
+            }
+            long zeros = lineCommonZeros[line];
+            while (zeros != 0) {
+                if (remainingTokens - remainingTokensWithBit[Long.numberOfTrailingZeros(zeros)] >= missing) {
+                    count++;
+                }
+                zeros &= zeros - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This method updates the state of all lines a field belongs to after a
+     * token has been placed on it or taken from it.
+     * @param pField the index of the field (row * columnNumber + column)
+     */
+    private void updateLines(int pField) {
+        for (int line : linesOfFields[pField]) {
+            changeThreats(line, -1);
+            int count = 0;
+            long ones = propertyMask;
+            long zeros = propertyMask;
+            for (int field : lines[line]) {
+                Token token = contentOfFields[field / columnNumber][field % columnNumber];
+                if (token != null) {
+                    count++;
+                    ones &= token.getPropertyMask();
+                    zeros &= ~token.getPropertyMask();
+                }
+            }
+            lineTokenCounts[line] = count;
+            lineCommonOnes[line] = ones;
+            lineCommonZeros[line] = zeros;
+            changeThreats(line, 1);
+        }
+        updateUnsafeTokens();
+    }
+
+    /**
+     * This method adds the threat of a line (if it has 3 tokens) to the threat
+     * counts or removes it from them.
+     * @param pLine the index of the line
+     * @param pChange 1 for adding the threat, -1 for removing it
+     */
+    private void changeThreats(int pLine, int pChange) {
+        if (lineTokenCounts[pLine] != 3) {
+            return;
+        }
+        long ones = lineCommonOnes[pLine];
+        while (ones != 0) {
+            int bit = Long.numberOfTrailingZeros(ones);
+            threatCountsOnes[bit] += pChange;
+            ones &= ones - 1;
+        }
+        long zeros = lineCommonZeros[pLine];
+        while (zeros != 0) {
+            int bit = Long.numberOfTrailingZeros(zeros);
+            threatCountsZeros[bit] += pChange;
+            zeros &= zeros - 1;
+        }
+    }
+
+    /**
+     * This method determines the threatening bits and the unsafe tokens from
+     * the threat counts.
+     */
+    private void updateUnsafeTokens() {
+        threatOnes = 0;
+        threatZeros = 0;
+        long unsafe = 0;
+        long bits = propertyMask;
+        while (bits != 0) {
+            int bit = Long.numberOfTrailingZeros(bits);
+            if (threatCountsOnes[bit] > 0) {
+                threatOnes |= 1L << bit;
+                unsafe |= tokensWithBit[bit];
+            }
+            if (threatCountsZeros[bit] > 0) {
+                threatZeros |= 1L << bit;
+                unsafe |= ~tokensWithBit[bit];
+            }
+            bits &= bits - 1;
+        }
+        unsafeTokens = unsafe;
+    }
+
+    /**
+     * This method checks whether a token can be placed without completing a
+     * line, i.e. whether the placing player cannot win with it immediately.
+     * @param pToken the token to check
+     * @return true if there is no field at which the token completes a line
+     */
+    public boolean isSafe(Token pToken) {
+        return isSafe(pToken.getPropertyMask());
+    }
+
+    /**
+     * This method checks whether a token with the given properties can be placed
+     * without completing a line.
+     * @param pPropertyMask the properties of the token as bitmask
+     * @return true if there is no field at which the token completes a line
+     */
+    public boolean isSafe(long pPropertyMask) {
+        return (pPropertyMask & threatOnes) == 0 && (~pPropertyMask & threatZeros) == 0;
+    }
+
+    /**
+     * This method returns the tokens in the bag that can be selected without
+     * giving the opponent the chance to win immediately. Only tokens with a
+     * number below 64 are contained.
+     * @return the safe tokens as bitmask (bit i set if token i is safe)
+     */
+    public long getSafeTokens() {
+        return bagTokens & ~unsafeTokens;
+    }
+
+    /**
+     * This method returns the tokens in the bag. Only tokens with a number
+     * below 64 are contained.
+     * @return the tokens in the bag as bitmask (bit i set if token i is in the bag)
+     */
+    public long getBagTokens() {
+        return bagTokens;
+    }
+
+    /**
+     * This method changes the bitmask of the tokens in the bag.
+     * @param pToken the token that has been taken out of or put into the bag
+     * @param pInBag true if the token is in the bag now
+     */
+    private void updateBagTokens(Token pToken, boolean pInBag) {
+        if (pToken.getDecimalNumber() < 64) {
+            if (pInBag) {
+                bagTokens |= 1L << pToken.getDecimalNumber();
+            } else {
+                bagTokens &= ~(1L << pToken.getDecimalNumber());
+            }
+        }
     }
 
     /**This method selects a token, which means this token cannot be selected
@@ -83,8 +910,10 @@ public abstract class Board {
         if (pToken != null && tokens.contains(pToken)) {
             if (selectedToken == null) {
                 selectedToken = pToken;
+                positionHash ^= selectionKeys[pToken.getDecimalNumber()];
                 // selected token will not be available anymore
                 tokens.remove(pToken);
+                updateBagTokens(pToken, false);
             } else {
                 throw new IllegalInputException(
                         "Error, a token has already been selected. Please place the token now.");
@@ -94,6 +923,41 @@ public abstract class Board {
         }
     }
 
+    /**This method undoes {@link #select(Token)}: the selected token is put back into
+     * the bag at the position it has been taken from, so that the order of the bag
+     * does not change.
+     * @throws IllegalInputException if no token is selected
+     */
+    public void unselect() throws IllegalInputException {
+        if (selectedToken == null) {
+            throw new IllegalInputException("Error, a token has to be selected first.");
+        }
+        int order = bagOrder[selectedToken.getDecimalNumber()];
+        int index = 0;
+        while (index < tokens.size() && bagOrder[tokens.get(index).getDecimalNumber()] < order) {
+            index++;
+        }
+        tokens.add(index, selectedToken);
+        updateBagTokens(selectedToken, true);
+        positionHash ^= selectionKeys[selectedToken.getDecimalNumber()];
+        selectedToken = null;
+    }
+
+    /**This method puts the selected token back into the bag as its last token.
+     * @throws IllegalInputException if no token is selected
+     */
+    public void putBackSelectedToken() throws IllegalInputException {
+        if (selectedToken == null) {
+            throw new IllegalInputException("Error, a token has to be selected first.");
+        }
+        bagOrder[selectedToken.getDecimalNumber()] = nextBagOrder;
+        nextBagOrder++;
+        tokens.add(selectedToken);
+        updateBagTokens(selectedToken, true);
+        positionHash ^= selectionKeys[selectedToken.getDecimalNumber()];
+        selectedToken = null;
+    }
+
      /** This method places a token on the board at a specific field.
      * @param pRow the x - Coordinate where the token is going to be placed (number of the row)
      * @param pColumn the y - Coordinate where the token is going to be placed (number of the column)
@@ -110,6 +974,12 @@ public abstract class Board {
                 // check: token has been selected before
                 if (selectedToken != null) {
                     contentOfFields[getCoordinateRow(pRow)][getCoordinateColumn(pColumn)] = selectedToken;
+                    rowRenderings[getCoordinateRow(pRow)] = null;
+                    columnRenderings[getCoordinateColumn(pColumn)] = null;
+                    int field = getCoordinateRow(pRow) * columnNumber + getCoordinateColumn(pColumn);
+                    positionHash ^= selectionKeys[selectedToken.getDecimalNumber()] ^ fieldKey(field, selectedToken);
+                    updateRemainingTokens(selectedToken, -1);
+                    updateLines(field);
                 } else {
                     throw new IllegalInputException("Error, a token has to be selected first.");
                 }
@@ -124,7 +994,39 @@ public abstract class Board {
         selectedToken = null;
     }
 
-    /**This methods checks whether one player already won the game.
+    /**This method takes the token placed at a specific field back from the board,
+     * so that it is the selected token again. This undoes {@link #place(int, int)}.
+     * @param pRow the x - Coordinate of the field the token is taken from (number of the row)
+     * @param pColumn the y - Coordinate of the field the token is taken from (number of the column)
+     * @throws IllegalInputException if the field does not exist or is empty, or if a token
+     *                               is currently selected
+     */
+    public void unplace(int pRow, int pColumn) throws IllegalInputException {
+        int row = getCoordinateRow(pRow);
+        int column = getCoordinateColumn(pColumn);
+        if (row < 0 || column < 0 || row >= rowNumber || column >= columnNumber) {
+            throw new IllegalInputException("Error, illegal field has been selected, it does not exist.");
+        }
+        if (contentOfFields[row][column] == null) {
+            throw new IllegalInputException("Error, there is no token placed at this field.");
+        }
+        if (selectedToken != null) {
+            throw new IllegalInputException("Error, a token has already been selected. Please place the token now.");
+        }
+        selectedToken = contentOfFields[row][column];
+        contentOfFields[row][column] = null;
+        rowRenderings[row] = null;
+        columnRenderings[column] = null;
+        positionHash ^= selectionKeys[selectedToken.getDecimalNumber()]
+                ^ fieldKey(row * columnNumber + column, selectedToken);
+        updateRemainingTokens(selectedToken, 1);
+        updateLines(row * columnNumber + column);
+    }
+
+    /**This methods checks whether one player already won the game, i.e. whether
+     * one of the lines the given field belongs to is full and all its tokens have
+     * at least one property in common. All properties are compared at once using
+     * the bitmasks of the lines, which are kept up to date with every placement.
      * @param pStartRow the x-Coordinate of the field at which the board is going to
      *                  start searching for a winning row of tokens
      * @param pStartColumn the y-Coordinate of the field at which the board is going to
@@ -132,19 +1034,28 @@ public abstract class Board {
      * @return true if a win has been achieved, false if not.
      */
     public boolean checkWin(int pStartRow, int pStartColumn) {
-        if (getContentOfFields()[getCoordinateRow(pStartRow)][getCoordinateColumn(pStartColumn)] != null) {
-            // checking for every property of the starting token: is there a row
-            // of tokens with the same property?
-            for (Property property : getContentOfFields()[getCoordinateRow(pStartRow)][getCoordinateColumn(
-                    pStartColumn)].getProperties()) {
-                // looking at all of the neighbors of the starting token -->
-                // find a winning row
-                if (checkColumn(property, getCoordinateRow(pStartRow), getCoordinateColumn(pStartColumn))
-                        || checkRow(property, getCoordinateRow(pStartRow), getCoordinateColumn(pStartColumn))
-                        || checkDiagonalBottomRight(property, getCoordinateRow(pStartRow),
-                                getCoordinateColumn(pStartColumn))
-                        || checkDiagonalTopRight(property, getCoordinateRow(pStartRow),
-                                getCoordinateColumn(pStartColumn))) {
+        RecordedEvents.CheckWinEvent recorded = checkWinEvent;
+        recorded.begin();
+        boolean won = findWin(pStartRow, pStartColumn);
+        recorded.finish(this, pStartRow, pStartColumn, won);
+        return won;
+    }
+
+    /**
+     * This method looks for a completed line through a field (see
+     * {@link #checkWin(int, int)}).
+     * @param pStartRow the row of the field
+     * @param pStartColumn the column of the field
+     * @return true if a line through the field has been completed
+     */
+    private boolean findWin(int pStartRow, int pStartColumn) {
+        int row = getCoordinateRow(pStartRow);
+        int column = getCoordinateColumn(pStartColumn);
+        if (row >= 0 && column >= 0 && row < rowNumber && column < columnNumber
+                && contentOfFields[row][column] != null) {
+            // looking at all the lines of the starting field --> find a winning row
+            for (int line : linesOfFields[row * columnNumber + column]) {
+                if (lineTokenCounts[line] == 4 && (lineCommonOnes[line] | lineCommonZeros[line]) != 0) {
                     // a winning row has been found
                     return true;
                 }
@@ -154,173 +1065,14 @@ public abstract class Board {
         return false;
     }
 
-    /**This method checks the column of the starting field for a winning row.
-     * @param pProperty the property according to which the tokens in this column are
-     *                 being compared.
-     * @param pStartRow the x-Coordinate of the field to start searching at
-     * @param pStartColumn the y-Coordinate of the field to start searching at
-     * @return true if a the game has been won, false if not
-     */
-    private boolean checkColumn(Property pProperty, int pStartRow, int pStartColumn) {
-        int counter = 1;
-        int countCoordinates = 1;
-        // idea: going to next field above this one until the possible winning
-        // row is being interrupted or a winning row is found
-        while (getCoordinateRow(pStartRow + countCoordinates) < getColumnNumber()
-                && getContentOfFields()[getCoordinateRow(pStartRow + countCoordinates)][getCoordinateColumn(
-                        pStartColumn)] != null
-                && getContentOfFields()[getCoordinateRow(pStartRow + countCoordinates)][getCoordinateColumn(
-                        pStartColumn)].getProperties().contains(pProperty)) {
-            // found another token for the possible winning row
-            counter++;
-            countCoordinates++;
-            if (counter == 4) {
-                // 4 tokens with one common property in a line found --> game
-                // won
-                return true;
-            }
-        }
-        countCoordinates = 1;
-        // idea: going to next field below this one until the possible winning
-        // row is being interrupted or a winning row is found
-        while ((getCoordinateRow(pStartRow - countCoordinates) >= 0
-                && getContentOfFields()[getCoordinateRow(pStartRow - countCoordinates)][getCoordinateColumn(
-                        pStartColumn)] != null
-                && getContentOfFields()[getCoordinateRow(pStartRow - countCoordinates)][getCoordinateColumn(
-                        pStartColumn)].getProperties().contains(pProperty))) {
-            // found token for possible winning row
-            counter++;
-            countCoordinates++;
-            if (counter == 4) {
-                // win found
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**This method checks the row of the starting field for a winning row.
-     * @param pProperty the property according to which the tokens in this row are
-     *            being compared.
-     * @param pStartRow the x-Coordinate of the field to start searching at
-     * @param pStartColumn the y-Coordinate of the field to start searching at
-     * @return true if a the game has been won, false if not
-     */
-    private boolean checkRow(Property pProperty, int pStartRow, int pStartColumn) {
-        int counter = 1;
-        int countCoordinates = 1;
-        // idea: going to next field on the right side of this one until the possible winning
-        // row is being interrupted or a winning row is found
-        while (getCoordinateColumn(pStartColumn + countCoordinates) < columnNumber
-                && getContentOfFields()[getCoordinateRow(pStartRow)][getCoordinateColumn(
-                        pStartColumn + countCoordinates)] != null
-                && getContentOfFields()[getCoordinateRow(pStartRow)][getCoordinateColumn(
-                        pStartColumn + countCoordinates)].getProperties().contains(pProperty)) {
-            counter++;
-            countCoordinates++;
-            if (counter == 4) {
-                return true;
-            }
-        }
-        countCoordinates = 1;
-        // going to next field on the left side of this one until the
-        // possible winning row is being interrupted or a winning row is found
-        while ((getCoordinateColumn(pStartColumn - countCoordinates) >= 0
-                && getContentOfFields()[getCoordinateRow(pStartRow)][getCoordinateColumn(
-                        pStartColumn - countCoordinates)] != null
-                && getContentOfFields()[getCoordinateRow(pStartRow)][getCoordinateColumn(
-                        pStartColumn - countCoordinates)].getProperties().contains(pProperty))) {
-            counter++;
-            countCoordinates++;
-            if (counter == 4) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * This method checks the diagonal line (from the starting field to the
-     * bottom right field) of the starting field for a winning row.
-     * @param pProperty the property according to which the tokens in this diagonal
-     *                are being compared.
-     * @param pStartRow the x-Coordinate of the field to start searching at
-     * @param pStartColumn the y-Coordinate of the field to start searching at
-     * @return true if a the game has been won, false if not
-     */
-    private boolean checkDiagonalBottomRight(Property pProperty, int pStartRow, int pStartColumn) {
-        int counter = 1;
-        int countCoordinates = 1;
-        // going to next field on the bottom right side of this one until the
-        // possible winning row is being interrupted or a winning row is found
-        while (getCoordinateRow(pStartRow + countCoordinates) < rowNumber
-                && getCoordinateColumn(pStartColumn + countCoordinates) < columnNumber
-                && getContentOfFields()[getCoordinateRow(pStartRow + countCoordinates)][getCoordinateColumn(
-                        pStartColumn + countCoordinates)] != null
-                && getContentOfFields()[getCoordinateRow(pStartRow + countCoordinates)][getCoordinateColumn(
-                        pStartColumn + countCoordinates)].getProperties().contains(pProperty)) {
-            counter++;
-            countCoordinates++;
-            if (counter == 4) {
-                return true;
-            }
-        }
-        countCoordinates = 1;
-        // going to next field on the left top side of this one until the
-        // possible winning row is being interrupted or a winning row is found
-        while ((getCoordinateRow(pStartRow - countCoordinates) >= 0
-                && getCoordinateColumn(pStartColumn - countCoordinates) >= 0
-                && getContentOfFields()[getCoordinateRow(pStartRow - countCoordinates)][getCoordinateColumn(
-                        pStartColumn - countCoordinates)] != null
-                && getContentOfFields()[getCoordinateRow(pStartRow - countCoordinates)][getCoordinateColumn(
-                        pStartColumn - countCoordinates)].getProperties().contains(pProperty))) {
-            counter++;
-            countCoordinates++;
-            if (counter == 4) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
-     * This method checks the diagonal line (from the starting field to the top
-     * right field) of the starting field for a winning row.
-     * @param pProperty the property according to which the tokens in this diagonal
-     *               are being compared.
-     * @param pStartRow the x-Coordinate of the field to start searching at
-     * @param pStartColumn the y-Coordinate of the field to start searching at
-     * @return true if a the game has been won, false if not
-     */
-    private boolean checkDiagonalTopRight(Property pProperty, int pStartRow, int pStartColumn) {
-        int counter = 1;
-        int countCoordinates = 1;
-        // going to next field on the top right side of this one until the
-        // possible winning row is being interrupted or a winning row is found
-        while (getCoordinateRow(pStartRow - countCoordinates) >= 0
-                && getCoordinateColumn(pStartColumn + countCoordinates) < columnNumber
-                && getContentOfFields()[getCoordinateRow(pStartRow - countCoordinates)][getCoordinateColumn(
-                        pStartColumn + countCoordinates)] != null
-                && getContentOfFields()[getCoordinateRow(pStartRow - countCoordinates)][getCoordinateColumn(
-                        pStartColumn + countCoordinates)].getProperties().contains(pProperty)) {
-            counter++;
-            countCoordinates++;
-            if (counter == 4) {
-                return true;
-            }
-        }
-        countCoordinates = 1;
-        // going to next field on the bottom left side of this one until the
-        // possible winning row is being interrupted or a winning row is found
-        while ((getCoordinateRow(pStartRow + countCoordinates) < rowNumber
-                && getCoordinateColumn(pStartColumn - countCoordinates) >= 0
-                && getContentOfFields()[getCoordinateRow(pStartRow + countCoordinates)][getCoordinateColumn(
-                        pStartColumn - countCoordinates)] != null
-                && getContentOfFields()[getCoordinateRow(pStartRow + countCoordinates)][getCoordinateColumn(
-                        pStartColumn - countCoordinates)].getProperties().contains(pProperty))) {
-            counter++;
-            countCoordinates++;
-            if (counter == 4) {
+     * This method checks whether any line of this board has been completed
+     * by four tokens with a common property.
+     * @return true if a line has been completed, false if not
+     */
+    boolean hasCompletedLine() {
+        for (int line = 0; line < lines.length; line++) {
+            if (lineTokenCounts[line] == 4 && (lineCommonOnes[line] | lineCommonZeros[line]) != 0) {
                 return true;
             }
         }
@@ -361,53 +1113,93 @@ public abstract class Board {
     /**
      * This method prints a specific row of the board. It prints the row in one
      * line, it prints the number of the token for an occupied field and a '#'
-     * if the field is empty.
+     * if the field is empty. The output is cached until the row changes.
      * @param pRow the number of the row to be printed
      * @throws IllegalInputException if the given row number (pRow) is invalid
      */
     public void rowPrint(int pRow) throws IllegalInputException {
         if (pRow >= 0 && pRow < rowNumber) {
-            String output = "";
-            // summing up the output
-            for (int i = 0; i < columnNumber; i++) {
-                if (contentOfFields[pRow][i] == null) {
-                    // empty field --> #
-                    output = output + "#";
-                } else {
-                    // vacant field --> number of token
-                    output = output + contentOfFields[pRow][i].getDecimalNumber();
-                }
-                if (i < columnNumber - 1) {
-                output = output + " ";
-                }
-            }
-            Terminal.printLine(output);
+            Terminal.printLine(getRowRendering(pRow));
         } else
             throw new IllegalInputException("Error, invalid row number.");
     }
 
     /** This method prints a specific column of the board. It prints the column
      * in one line, it prints the number of the token for an occupied field and
-     * a '#' if the field is empty.
+     * a '#' if the field is empty. The output is cached until the column changes.
      * @param pColumn the number of the column to be printed
      * @throws IllegalInputException if the given column number (pColumn) is invalid
      */
     public void columnPrint(int pColumn) throws IllegalInputException {
         if (pColumn >= 0 && pColumn < columnNumber) {
-            String output = "";
-            for (int i = 0; i < rowNumber; i++) {
-                if (contentOfFields[i][pColumn] == null) {
-                    output = output + "#";
-                } else {
-                    output = output + contentOfFields[i][pColumn].getDecimalNumber();
+            Terminal.printLine(getColumnRendering(pColumn));
+        } else {
+            throw new IllegalInputException("Error, invalid column number.");
+        }
+    }
+
+    /**This method prints the whole board, one row per line (like {@link #rowPrint(int)}).
+     */
+    public void boardPrint() {
+        for (int i = 0; i < rowNumber; i++) {
+            Terminal.printLine(getRowRendering(i));
+        }
+    }
+
+    /**This method returns the output of {@link #rowPrint(int)} for a valid row,
+     * from the cache if the row has not changed since.
+     * @param pRow the number of the row
+     * @return the numbers of the tokens in the row ('#' for empty fields), separated by a whitespace
+     */
+    private String getRowRendering(int pRow) {
+        String rendering = rowRenderings[pRow];
+        if (rendering == null) {
+            StringBuilder output = new StringBuilder();
+            for (int i = 0; i < columnNumber; i++) {
+                appendField(output, contentOfFields[pRow][i]);
+                if (i < columnNumber - 1) {
+                    output.append(' ');
                 }
-                if (i < rowNumber - 1)  {
-                output = output + " ";
+            }
+            rendering = output.toString();
+            rowRenderings[pRow] = rendering;
+        }
+        return rendering;
+    }
+
+    /**This method returns the output of {@link #columnPrint(int)} for a valid column,
+     * from the cache if the column has not changed since.
+     * @param pColumn the number of the column
+     * @return the numbers of the tokens in the column ('#' for empty fields), separated by a whitespace
+     */
+    private String getColumnRendering(int pColumn) {
+        String rendering = columnRenderings[pColumn];
+        if (rendering == null) {
+            StringBuilder output = new StringBuilder();
+            for (int i = 0; i < rowNumber; i++) {
+                appendField(output, contentOfFields[i][pColumn]);
+                if (i < rowNumber - 1) {
+                    output.append(' ');
                 }
             }
-            Terminal.printLine(output);
+            rendering = output.toString();
+            columnRenderings[pColumn] = rendering;
+        }
+        return rendering;
+    }
+
+    /**This method appends the output for one field: the number of the token for an
+     * occupied field and a '#' if the field is empty.
+     * @param pOutput the output to append to
+     * @param pToken the token placed at the field, null if it is empty
+     */
+    private static void appendField(StringBuilder pOutput, Token pToken) {
+        if (pToken == null) {
+            // empty field --> #
+            pOutput.append('#');
         } else {
-            throw new IllegalInputException("Error, invalid column number.");
+            // vacant field --> number of token
+            pOutput.append(pToken.getDecimalNumber());
         }
     }
 
@@ -422,6 +1214,23 @@ public abstract class Board {
         Terminal.printLine(output);
     }
 
+    /**This method prints the numbers of all the tokens in the bag that can be
+     * selected without giving the opponent the chance to win immediately, in one
+     * line, separated by a whitespace.
+     */
+    public void safeTokenPrint() {
+        String output = "";
+        for (Token token : tokens) {
+            if (isSafe(token)) {
+                if (output.length() > 0) {
+                    output = output + " ";
+                }
+                output = output + token.getDecimalNumber();
+            }
+        }
+        Terminal.printLine(output);
+    }
+
     /**
      * This method returns modifies a given x-coordinate in order to return it.
      * This is necessary since the subclasses of this class (torus and standard)
@@ -448,6 +1257,66 @@ public abstract class Board {
         return tokens;
     }
 
+    /**
+     * This method returns the token with the given number, whether it is in
+     * the bag or not. No new token is created.
+     * @param pNumber the number of the token
+     * @return the token, null if this board has no token with this number
+     */
+    Token getToken(int pNumber) {
+        return pNumber >= 0 && pNumber < allTokens.length ? allTokens[pNumber] : null;
+    }
+
+    /**
+     * This method returns the lines of 4 fields of this board (rows, columns and
+     * diagonals, on a torus continued at the opposite side) as bitmasks: bit
+     * row * columnNumber + column is set for every field of a line. These are
+     * exactly the lines {@link #checkWin(int, int)} checks.
+     * @return a new array with one bitmask for every line
+     * @throws IllegalInputException if the board has more than 64 fields
+     */
+    public long[] getLineMasks() throws IllegalInputException {
+        if (rowNumber * columnNumber > 64) {
+            throw new IllegalInputException("Error, only boards with at most 64 fields can be given as bitmasks.");
+        }
+        long[] masks = new long[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            for (int field : lines[i]) {
+                masks[i] |= 1L << field;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * This method returns the bits of the token numbers that stand for
+     * properties.
+     * @return the bitmask of all properties
+     */
+    public long getPropertyMask() {
+        return propertyMask;
+    }
+
+    /**
+     * This method returns the number of the token placed at a field.
+     * @param pRow the number of the row
+     * @param pColumn the number of the column
+     * @return the number of the token, -1 if the field is empty
+     */
+    public int getTokenNumberAt(int pRow, int pColumn) {
+        Token token = contentOfFields[pRow][pColumn];
+        return token == null ? -1 : token.getDecimalNumber();
+    }
+
+    /**
+     * This method returns the number of all tokens of this board (not only
+     * those in the bag).
+     * @return the number of tokens
+     */
+    public int getTokenCount() {
+        return allTokens.length;
+    }
+
     /**
      * This method returns the content of the fields.
      * @return the contentOfFields
@@ -493,6 +1362,12 @@ public abstract class Board {
      * @param selectedToken the selectedToken to set
      */
     public void setSelectedToken(Token selectedToken) {
+        if (this.selectedToken != null) {
+            positionHash ^= selectionKeys[this.selectedToken.getDecimalNumber()];
+        }
         this.selectedToken = selectedToken;
+        if (selectedToken != null) {
+            positionHash ^= selectionKeys[selectedToken.getDecimalNumber()];
+        }
     }
 }
\ No newline at end of file
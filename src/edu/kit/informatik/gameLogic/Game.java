@@ -13,7 +13,9 @@ import edu.kit.informatik.userInteraction.IllegalInputException;
  * player 1 starts by selecting a token that player 2 has to place on the board.
  * The player that places a token in this way that 4 tokens which have at least
  * one attribute in common are next to each other in a row, column or diagonal,
- * wins. If no tokens are left but no player won, a draw is achieved.
+ * wins. If no tokens are left but no player won, a draw is achieved. A draw is
+ * also achieved as soon as no line can be completed anymore with the tokens
+ * that are left.
  * 
  * @author Johanna Thiemich
  * @version 1.0
@@ -50,6 +52,21 @@ public class Game {
      */
     private boolean gameDraw;
 
+    /**
+     * the stream the events of this game are published to, null if there is none
+     */
+    private GameEventStream eventStream;
+
+    /**
+     * the event recorded for {@link #select(int)}, reused for every call
+     */
+    private final RecordedEvents.SelectEvent selectEvent = new RecordedEvents.SelectEvent();
+
+    /**
+     * the event recorded for {@link #place(int, int)}, reused for every call
+     */
+    private final RecordedEvents.PlaceEvent placeEvent = new RecordedEvents.PlaceEvent();
+
     /**
      * This method creates a new game object.
      * 
@@ -74,20 +91,7 @@ public class Game {
         } else {
             // initializing the players
             for (int i = 1; i <= pNumberOfPlayers; i++) {
-                if (i == 1) {
-                    // first player is the selecting player at first
-                    players.add(new Player(i, Status.SELECTING));
-                } else if (i == 2) {
-                    // second player is the placing player at first
-                    players.add(new Player(i, Status.PLACING));
-                } else {
-                    /*
-                     * originally, the game was created for two players --> no
-                     * specifications for more than two players, they are set to
-                     * default
-                     */
-                    players.add(new Player(i, Status.DEFAULT));
-                }
+                players.add(new Player(i, getInitialStatus(i)));
             }
         }
         winningPlayer = null;
@@ -98,6 +102,276 @@ public class Game {
 
     }
 
+    /**
+     * This method returns the status a player has at the beginning of the game.
+     * 
+     * @param pNumber
+     *            the number of the player
+     * @return the initial status of the player
+     */
+    private static Status getInitialStatus(int pNumber) {
+        if (pNumber == 1) {
+            // first player is the selecting player at first
+            return Status.SELECTING;
+        } else if (pNumber == 2) {
+            // second player is the placing player at first
+            return Status.PLACING;
+        } else {
+            /*
+             * originally, the game was created for two players --> no
+             * specifications for more than two players, they are set to
+             * default
+             */
+            return Status.DEFAULT;
+        }
+    }
+
+    /**
+     * This method resets this game (and its board) to its initial state, so
+     * that it can be played again. No new objects are created, so games can be
+     * reused, e.g. for simulating many games.
+     */
+    public void reset() {
+        board.reset();
+        for (int i = 0; i < players.size(); i++) {
+            players.get(i).setStatus(getInitialStatus(players.get(i).getNumber()));
+        }
+        winningPlayer = null;
+        numberOfMoves = 0;
+        gameWon = false;
+        gameDraw = false;
+        publish(GameEvent.Type.RESET, -1, -1, -1, -1);
+    }
+
+    /**
+     * This method checks whether the state of another game can be copied to
+     * this game, which is the case if both have the same number of players and
+     * compatible boards (see {@link Board#isCompatible(Board)}).
+     * 
+     * @param pOther
+     *            the other game
+     * @return true if both games are compatible, false if not
+     */
+    public boolean isCompatible(Game pOther) {
+        return pOther != null && pOther.players.size() == players.size() && board.isCompatible(pOther.board);
+    }
+
+    /**
+     * This method copies the state of another game (board, players, moves and
+     * result) to this game. No new objects are created.
+     * 
+     * @param pOther
+     *            the game to copy the state of
+     * @throws IllegalInputException
+     *             if the other game is not compatible with this game
+     */
+    public void copyFrom(Game pOther) throws IllegalInputException {
+        if (!isCompatible(pOther)) {
+            throw new IllegalInputException("Error, only games with the same players and boards can be copied.");
+        }
+        if (pOther == this) {
+            return;
+        }
+        board.copyFrom(pOther.board);
+        winningPlayer = null;
+        for (int i = 0; i < players.size(); i++) {
+            players.get(i).setStatus(pOther.players.get(i).getStatus());
+            if (pOther.players.get(i) == pOther.winningPlayer) {
+                winningPlayer = players.get(i);
+            }
+        }
+        numberOfMoves = pOther.numberOfMoves;
+        gameWon = pOther.gameWon;
+        gameDraw = pOther.gameDraw;
+        publish(GameEvent.Type.RESET, -1, -1, -1, -1);
+    }
+
+    /**
+     * This method sets this game (with two players) up in the state reached by
+     * placing and selecting the given tokens one after another from the start
+     * of the game: player 1 selects the first token, and the player placing a
+     * token selects the next one. The placed tokens must not have ended the
+     * game.
+     * 
+     * @param pFieldTokens
+     *            the number of the token placed at every field (index row *
+     *            number of columns + column), -1 for an empty field
+     * @param pSelectedToken
+     *            the number of the selected token, -1 if none is selected
+     * @throws IllegalInputException
+     *             if this game does not have two players or the state is invalid
+     */
+    public void setUp(int[] pFieldTokens, int pSelectedToken) throws IllegalInputException {
+        int placed = countPlacedTokens(pFieldTokens);
+        setUp(pFieldTokens, pSelectedToken, getPlayerToMove(placed, pSelectedToken), false, false, placed);
+    }
+
+    /**
+     * This method counts the tokens placed at the fields.
+     * 
+     * @param pFieldTokens
+     *            the number of the token placed at every field, -1 for an
+     *            empty field
+     * @return the number of placed tokens
+     */
+    private static int countPlacedTokens(int[] pFieldTokens) {
+        int placed = 0;
+        for (int token : pFieldTokens) {
+            if (token >= 0) {
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * This method returns the player to move in a game with two players after
+     * the given number of moves: player 1 selects the first token, and the
+     * player placing a token selects the next one.
+     * 
+     * @param pPlaced
+     *            the number of moves (placements)
+     * @param pSelectedToken
+     *            the number of the selected token, -1 if none is selected
+     * @return the number of the player to move (1 or 2)
+     */
+    private static int getPlayerToMove(int pPlaced, int pSelectedToken) {
+        int ply = 2 * pPlaced + (pSelectedToken >= 0 ? 1 : 0);
+        // the player to move changes after every selection
+        return (ply + 1) / 2 % 2 == 0 ? 1 : 2;
+    }
+
+    /**
+     * This method sets this game (with two players) up in a given state.
+     * 
+     * @param pFieldTokens
+     *            the number of the token placed at every field (index row *
+     *            number of columns + column), -1 for an empty field
+     * @param pSelectedToken
+     *            the number of the selected token, -1 if none is selected
+     * @param pPlayerToMove
+     *            the number of the player whose turn it is (1 or 2), see
+     *            {@link #getPlayerToMove()}
+     * @param pWon
+     *            whether the game has been won (by the other player)
+     * @param pDraw
+     *            whether the game has ended by draw
+     * @param pNumberOfMoves
+     *            the number of moves that have been made
+     * @throws IllegalInputException
+     *             if this game does not have two players or the state is invalid:
+     *             the player to move and the number of moves have to match the
+     *             placed tokens, the game has to be won exactly if a line has
+     *             been completed and has to end by draw exactly if no line can
+     *             be completed any more (then this game is reset)
+     */
+    void setUp(int[] pFieldTokens, int pSelectedToken, int pPlayerToMove, boolean pWon, boolean pDraw,
+            int pNumberOfMoves) throws IllegalInputException {
+        int placed = countPlacedTokens(pFieldTokens);
+        // the placement ending the game is not counted as a move
+        int moves = pWon || pDraw ? placed - 1 : placed;
+        int expectedPlayer = getPlayerToMove(moves, pSelectedToken);
+        if (players.size() != 2 || pPlayerToMove != expectedPlayer || pNumberOfMoves != moves || pWon && pDraw
+                || (pWon || pDraw) && pSelectedToken >= 0) {
+            throw new IllegalInputException("Error, invalid state of the game: the player to move, the number "
+                    + "of moves or the selected token do not match the " + placed + " placed tokens.");
+        }
+        board.setUp(pFieldTokens, pSelectedToken);
+        // a draw is declared after a placement that leaves no possible win
+        boolean drawn = placed > 0 && pSelectedToken < 0
+                && (board.isBoardFull() || !board.areTokensLeft() || !board.hasLiveLine());
+        if (board.hasCompletedLine() != pWon || !pWon && drawn != pDraw
+                || pSelectedToken >= 0 && board.isBoardFull()) {
+            reset();
+            throw new IllegalInputException("Error, invalid state of the game: it is won exactly if a line has "
+                    + "been completed and ends by draw exactly if no line can be completed any more.");
+        }
+        Player playerToMove = players.get(pPlayerToMove - 1);
+        Player otherPlayer = players.get(2 - pPlayerToMove);
+        if (pSelectedToken >= 0) {
+            playerToMove.setStatus(Status.PLACING);
+            otherPlayer.setStatus(Status.SELECTING);
+        } else {
+            playerToMove.setStatus(Status.SELECTING);
+            otherPlayer.setStatus(Status.PLACING);
+        }
+        winningPlayer = null;
+        if (pWon) {
+            // the winner has placed the last token
+            winningPlayer = otherPlayer;
+            winningPlayer.setStatus(Status.WINNING);
+        }
+        gameWon = pWon;
+        gameDraw = pDraw;
+        numberOfMoves = pNumberOfMoves;
+        publish(GameEvent.Type.RESET, -1, -1, -1, -1);
+    }
+
+    /**
+     * This method sets the stream the events of this game (selections,
+     * placements, end of the game and resets) are published to. Taking moves
+     * back ({@link #undoSelect()}, {@link #undoPlace(int, int)}) is not
+     * published, so a game with a stream should not be searched directly.
+     * Copies of this game do not publish to the stream.
+     * 
+     * @param pEventStream
+     *            the stream, null to stop publishing events
+     */
+    public void setEventStream(GameEventStream pEventStream) {
+        eventStream = pEventStream;
+    }
+
+    /**
+     * This method returns the stream the events of this game are published to.
+     * 
+     * @return the stream, null if there is none
+     */
+    public GameEventStream getEventStream() {
+        return eventStream;
+    }
+
+    /**
+     * This method publishes an event of this game if it has a stream.
+     * 
+     * @param pType
+     *            the kind of the event
+     * @param pRow
+     *            the row, -1 if not relevant
+     * @param pColumn
+     *            the column, -1 if not relevant
+     * @param pToken
+     *            the number of the token, -1 if not relevant
+     * @param pPlayer
+     *            the number of the player, -1 if not relevant
+     */
+    private void publish(GameEvent.Type pType, int pRow, int pColumn, int pToken, int pPlayer) {
+        if (eventStream != null) {
+            eventStream.publish(pType, pRow, pColumn, pToken, pPlayer, numberOfMoves);
+        }
+    }
+
+    /**
+     * This method returns the number of players taking part in this game.
+     * 
+     * @return the number of players
+     */
+    public int getNumberOfPlayers() {
+        return players.size();
+    }
+
+    /**
+     * This method creates a new game with the same number of players and an
+     * empty board of the same kind as this game.
+     * 
+     * @return the new game in its initial state
+     * @throws IllegalInputException
+     *             this should not happen, since this game has been created with
+     *             the same parameters
+     */
+    public Game createEmptyCopy() throws IllegalInputException {
+        return new Game(players.size(), board.createEmptyBoard());
+    }
+
     /**
      * This method selects a token with a specific number. Selecting means:
      * Taking it out of the (virtual) bag, so that it can be placed on the board
@@ -107,23 +381,43 @@ public class Game {
      *            the number of the token that is to be selected
      * @throws IllegalInputException
      *             if the game is already over, then no tokens can be selected
-     *             anymore
+     *             anymore, or if the number is negative
      * @throws ObjectNotFoundException
      *             if the chosen token is not available
      */
     public void select(int pNumberOfToken) throws IllegalInputException, ObjectNotFoundException {
+        RecordedEvents.SelectEvent recorded = selectEvent;
+        recorded.begin();
+        String outcome = RecordedEvents.FAILED;
+        try {
+            selectToken(pNumberOfToken);
+            outcome = "selected";
+        } finally {
+            recorded.finish(board, pNumberOfToken, getSelectingPlayer().getNumber(), outcome);
+        }
+    }
+
+    /**
+     * This method selects a token (see {@link #select(int)}).
+     * 
+     * @param pNumberOfToken
+     *            the number of the token that is to be selected
+     * @throws IllegalInputException
+     *             if the game is already over or the number is negative
+     * @throws ObjectNotFoundException
+     *             if the chosen token is not available
+     */
+    private void selectToken(int pNumberOfToken) throws IllegalInputException, ObjectNotFoundException {
         // making sure the game is not over yet
         if (!gameWon && !gameDraw) {
-            Token selectedToken = null;
-            for (int i = 0; i < board.getTokens().size(); i++) {
-                // finding the token with the specified number
-                if (board.getTokens().get(i).equals(new Token(pNumberOfToken, board.getNumberOfTokenProperties()))) {
-                    selectedToken = board.getTokens().get(i);
-                    break;
-                }
+            if (pNumberOfToken < 0) {
+                throw new IllegalInputException("Error, the token number " + pNumberOfToken + " does not exist.");
+            }
+            // selecting the token with the specified number, the board checks whether it is in the bag
+            board.select(board.getToken(pNumberOfToken));
+            if (eventStream != null) {
+                publish(GameEvent.Type.SELECTED, -1, -1, pNumberOfToken, getSelectingPlayer().getNumber());
             }
-            // selecting the found token
-            board.select(selectedToken);
         } else {
             throw new IllegalInputException("Error, the game is already over.");
         }
@@ -137,11 +431,29 @@ public class Game {
     public void resetMove() {
         // adding selected token to available tokens again
         if (board.getSelectedToken() != null) {
-            board.getTokens().add(board.getSelectedToken());
-            board.setSelectedToken(null);
+            int token = board.getSelectedToken().getDecimalNumber();
+            try {
+                board.putBackSelectedToken();
+                publish(GameEvent.Type.UNSELECTED, -1, -1, token, getSelectingPlayer().getNumber());
+            } catch (IllegalInputException e) {
+                // this should not happen, a token is selected
+            }
         }
     }
 
+    /**
+     * This method takes back the selection of a token: the token is put back
+     * into the bag at the position it has been taken from. Unlike
+     * {@link #resetMove()}, this keeps the order of the bag, which is needed
+     * for searching through the possible courses of the game.
+     * 
+     * @throws IllegalInputException
+     *             if no token is selected
+     */
+    public void undoSelect() throws IllegalInputException {
+        board.unselect();
+    }
+
     /**
      * This method places a token on the board and changes the tasks of the
      * players (placing and selecting a token).
@@ -158,9 +470,40 @@ public class Game {
      *             pColumn) are invalid.
      */
     public void place(int pRow, int pColumn) throws IllegalInputException {
+        RecordedEvents.PlaceEvent recorded = placeEvent;
+        recorded.begin();
+        int token = board.getSelectedToken() == null ? -1 : board.getSelectedToken().getDecimalNumber();
+        String outcome = RecordedEvents.FAILED;
+        try {
+            outcome = placeToken(pRow, pColumn, token);
+        } finally {
+            recorded.finish(board, pRow, pColumn, token, outcome);
+        }
+    }
+
+    /**
+     * This method places the selected token (see {@link #place(int, int)}).
+     * 
+     * @param pRow
+     *            the number of the row
+     * @param pColumn
+     *            the number of the column
+     * @param pToken
+     *            the number of the selected token, -1 if none is selected
+     * @return "won" or "draw" if the game has ended, "placed" otherwise
+     * @throws IllegalInputException
+     *             if the game is already over or if the given coordinates are
+     *             invalid
+     */
+    private String placeToken(int pRow, int pColumn, int pToken) throws IllegalInputException {
         //game must not be over yet
         if (!gameWon && !gameDraw) {
             board.place(pRow, pColumn);
+            if (eventStream != null) {
+                // the field the board has used, on a torus the given coordinates may be outside of it
+                publish(GameEvent.Type.PLACED, board.getCoordinateRow(pRow), board.getCoordinateColumn(pColumn),
+                        pToken, getPlacingPlayer().getNumber());
+            }
             /*
              * every time a token has been placed: check whether a win has been
              * achieved, starting at the field where the last token has been
@@ -171,11 +514,17 @@ public class Game {
                 gameWon = true;
                 winningPlayer = getPlacingPlayer();
                 winningPlayer.setStatus(Status.WINNING);
-                return;
-            } else if (!board.checkWin(pRow, pColumn) && (board.isBoardFull() || !board.areTokensLeft())) {
-                // draw has been achieved
+                publish(GameEvent.Type.WON, -1, -1, -1, winningPlayer.getNumber());
+                return "won";
+            } else if (!board.checkWin(pRow, pColumn)
+                    && (board.isBoardFull() || !board.areTokensLeft() || !board.hasLiveLine())) {
+                /*
+                 * draw has been achieved: no moves are left or no line can be
+                 * completed anymore with the remaining tokens
+                 */
                 gameDraw = true;
-                return;
+                publish(GameEvent.Type.DRAW, -1, -1, -1, -1);
+                return "draw";
             }
         } else {
             throw new IllegalInputException("Error, the game is already over.");
@@ -186,6 +535,130 @@ public class Game {
         helpPlacingPlayer.setStatus(Status.SELECTING);
         // increasing number of moves
         numberOfMoves++;
+        return "placed";
+    }
+
+    /**
+     * This method takes back the last placement, which has to be the one at the
+     * given field. Afterwards the token is selected again, the players have their
+     * former tasks and a win or draw achieved by the placement is revoked. This is
+     * needed for searching through the possible courses of the game without
+     * copying it.
+     * 
+     * @param pRow
+     *            the x-Coordinate where the token has been placed (number of
+     *            the row)
+     * @param pColumn
+     *            the y-Coordinate where the token has been placed (number of
+     *            the column)
+     * @throws IllegalInputException
+     *             if there is no token at the given field or if a token is
+     *             currently selected
+     */
+    public void undoPlace(int pRow, int pColumn) throws IllegalInputException {
+        board.unplace(pRow, pColumn);
+        if (gameWon) {
+            // the winning player was the placing one
+            winningPlayer.setStatus(Status.PLACING);
+            winningPlayer = null;
+            gameWon = false;
+        } else if (gameDraw) {
+            gameDraw = false;
+        } else {
+            // changing the order of the players back
+            Player helpSelectingPlayer = getSelectingPlayer();
+            getPlacingPlayer().setStatus(Status.SELECTING);
+            helpSelectingPlayer.setStatus(Status.PLACING);
+            numberOfMoves--;
+        }
+    }
+
+    /**
+     * This method writes all fields the currently selected token can legally be
+     * placed at into the given arrays and returns how many fields were found.
+     * Only the coordinates inside the board are generated: on a standard board
+     * these are the only valid ones, on a torus every other coordinate is just
+     * another name for one of them. Nothing is allocated, so this method can be
+     * used as the inner loop of a search. If the arrays are too short, only as
+     * many fields as fit are written (see {@link #getMaximumNumberOfPlacements()}).
+     * 
+     * @param pRows
+     *            the array the row numbers of the free fields are written to
+     * @param pColumns
+     *            the array the column numbers of the free fields are written to
+     * @return the number of fields written, 0 if the game is over or no token
+     *         has been selected
+     */
+    public int generatePlacements(int[] pRows, int[] pColumns) {
+        if (gameWon || gameDraw || board.getSelectedToken() == null) {
+            return 0;
+        }
+        Token[][] fields = board.getContentOfFields();
+        int capacity = Math.min(pRows.length, pColumns.length);
+        int count = 0;
+        for (int i = 0; i < board.getRowNumber(); i++) {
+            for (int j = 0; j < board.getColumnNumber(); j++) {
+                if (fields[i][j] == null && count < capacity) {
+                    pRows[count] = i;
+                    pColumns[count] = j;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This method writes the numbers of all tokens that can legally be selected
+     * into the given array and returns how many tokens were found. Nothing is
+     * allocated. If the array is too short, only as many tokens as fit are
+     * written (see {@link #getMaximumNumberOfSelections()}).
+     * 
+     * @param pTokenNumbers
+     *            the array the numbers of the available tokens are written to
+     * @return the number of tokens written, 0 if the game is over or a token
+     *         has already been selected
+     */
+    public int generateSelections(int[] pTokenNumbers) {
+        if (gameWon || gameDraw || board.getSelectedToken() != null) {
+            return 0;
+        }
+        int count = Math.min(pTokenNumbers.length, board.getTokens().size());
+        for (int i = 0; i < count; i++) {
+            // indexed access, an iterator would be allocated otherwise
+            pTokenNumbers[i] = board.getTokens().get(i).getDecimalNumber();
+        }
+        return count;
+    }
+
+    /**
+     * This method returns how long the arrays given to
+     * {@link #generatePlacements(int[], int[])} have to be at most.
+     * 
+     * @return the number of fields of the board
+     */
+    public int getMaximumNumberOfPlacements() {
+        return board.getRowNumber() * board.getColumnNumber();
+    }
+
+    /**
+     * This method returns how long the array given to
+     * {@link #generateSelections(int[])} has to be at most.
+     * 
+     * @return the number of tokens that are still in the bag
+     */
+    public int getMaximumNumberOfSelections() {
+        return board.getTokens().size();
+    }
+
+    /**
+     * This method returns whether a token has been selected and now has to be
+     * placed, i.e. whether the next move is a placement.
+     * 
+     * @return true if the next move is a placement, false if it is a selection
+     */
+    public boolean isTokenSelected() {
+        return board.getSelectedToken() != null;
     }
 
     /**
@@ -237,6 +710,92 @@ public class Game {
         }
     }
 
+    /**
+     * This method returns the tokens in the bag that the selecting player can
+     * hand over without giving the opponent the chance to win immediately. The
+     * result is maintained by the board with every placement, so this method
+     * takes constant time. Only tokens with a number below 64 are contained.
+     * 
+     * @return the safe tokens as bitmask (bit i set if token i is safe)
+     */
+    public long getSafeTokens() {
+        return board.getSafeTokens();
+    }
+
+    /**
+     * This method checks whether the token with the given number can be handed
+     * over without giving the opponent the chance to win immediately.
+     * 
+     * @param pNumberOfToken
+     *            the number of the token
+     * @return true if the token cannot complete a line
+     */
+    public boolean isSafeSelection(int pNumberOfToken) {
+        return board.isSafe(pNumberOfToken);
+    }
+
+    /**
+     * This method returns the number of the selected token.
+     * 
+     * @return the number of the selected token, -1 if no token is selected
+     */
+    public int getSelectedTokenNumber() {
+        return board.getSelectedToken() == null ? -1 : board.getSelectedToken().getDecimalNumber();
+    }
+
+    /**
+     * This method returns whether the selected token can be placed so that it
+     * completes a line, i.e. whether the placing player can win immediately.
+     * 
+     * @return true if a token is selected and it completes a line
+     */
+    public boolean isWinningPlacementPossible() {
+        return board.getSelectedToken() != null && !board.isSafe(board.getSelectedToken());
+    }
+
+    /**
+     * This method returns the number of the player who won the game.
+     * 
+     * @return the number of the winning player, -1 if the game has not been won
+     */
+    public int getWinningPlayerNumber() {
+        return winningPlayer == null ? -1 : winningPlayer.getNumber();
+    }
+
+    /**
+     * This method returns the hash of the current position (placed tokens and
+     * selected token), see {@link Board#getPositionHash()}.
+     * 
+     * @return the hash of the position
+     */
+    public long getPositionHash() {
+        return board.getPositionHash();
+    }
+
+    /**
+     * This method returns the number of the player whose turn it is, i.e. the
+     * selecting player if no token has been selected yet and the placing player
+     * otherwise.
+     * 
+     * @return the number of the player to move, -1 if there is none
+     */
+    public int getPlayerToMove() {
+        Player player = isTokenSelected() ? getPlacingPlayer() : getSelectingPlayer();
+        if (player == null) {
+            return -1;
+        }
+        return player.getNumber();
+    }
+
+    /**
+     * This method returns the number of moves that have already been made.
+     * 
+     * @return the number of moves
+     */
+    public int getNumberOfMoves() {
+        return numberOfMoves;
+    }
+
     /**
      * This method returns the board that is being played on.
      * 
@@ -0,0 +1,194 @@
+package edu.kit.informatik.gameLogic;
+
+/**
+ * This class represents an event of a game, read from a
+ * {@link GameEventStream}. A consumer reuses one object for all events it
+ * reads, so reading events does not create any objects.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class GameEvent {
+
+    /**
+     * This enum represents the different kinds of events.
+     */
+    public enum Type {
+
+        /**
+         * a token has been selected (token, player)
+         */
+        SELECTED,
+
+        /**
+         * the selection of a token has been taken back because the placement
+         * failed, the token is in the bag again (token, player)
+         */
+        UNSELECTED,
+
+        /**
+         * a token has been placed (row, column, token, player, number of moves)
+         */
+        PLACED,
+
+        /**
+         * the game has been won by the last placement (player, number of moves)
+         */
+        WON,
+
+        /**
+         * the game has ended by draw (number of moves)
+         */
+        DRAW,
+
+        /**
+         * the whole state of the game has changed, e.g. a new game has been
+         * started
+         */
+        RESET,
+
+        /**
+         * events have been missed because the consumer was too slow, the number
+         * of missed events is given as number of moves
+         */
+        LOST;
+    }
+
+    /**
+     * all kinds of events, indexed by their ordinal
+     */
+    static final Type[] TYPES = Type.values();
+
+    /**
+     * the kind of this event
+     */
+    private Type type;
+
+    /**
+     * the sequence number of this event (the first event has number 1)
+     */
+    private long sequence;
+
+    /**
+     * the row of the placed token, -1 if not relevant
+     */
+    private int row;
+
+    /**
+     * the column of the placed token, -1 if not relevant
+     */
+    private int column;
+
+    /**
+     * the number of the selected or placed token, -1 if not relevant
+     */
+    private int token;
+
+    /**
+     * the number of the player who made the move, -1 if not relevant
+     */
+    private int player;
+
+    /**
+     * the number of moves made until this event, or the number of missed events
+     */
+    private int numberOfMoves;
+
+    /**
+     * This method sets all attributes of this event.
+     *
+     * @param pType
+     *            the kind of the event
+     * @param pSequence
+     *            the sequence number
+     * @param pRow
+     *            the row
+     * @param pColumn
+     *            the column
+     * @param pToken
+     *            the number of the token
+     * @param pPlayer
+     *            the number of the player
+     * @param pNumberOfMoves
+     *            the number of moves
+     */
+    void set(Type pType, long pSequence, int pRow, int pColumn, int pToken, int pPlayer, int pNumberOfMoves) {
+        type = pType;
+        sequence = pSequence;
+        row = pRow;
+        column = pColumn;
+        token = pToken;
+        player = pPlayer;
+        numberOfMoves = pNumberOfMoves;
+    }
+
+    /**
+     * This method returns the kind of this event.
+     *
+     * @return the kind of this event
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * This method returns the sequence number of this event.
+     *
+     * @return the sequence number of this event
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * This method returns the row of the placed token.
+     *
+     * @return the row on the board (also on a torus), -1 if no token has been placed
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * This method returns the column of the placed token.
+     *
+     * @return the column on the board (also on a torus), -1 if no token has been placed
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * This method returns the number of the selected or placed token.
+     *
+     * @return the number of the token, -1 if not relevant
+     */
+    public int getToken() {
+        return token;
+    }
+
+    /**
+     * This method returns the number of the player who made the move.
+     *
+     * @return the number of the player, -1 if not relevant
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * This method returns the number of moves made until this event (for
+     * events of type {@link Type#LOST}: the number of missed events).
+     *
+     * @return the number of moves
+     */
+    public int getNumberOfMoves() {
+        return numberOfMoves;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " row " + row + " column " + column + " token " + token + " player "
+                + player + " moves " + numberOfMoves;
+    }
+}
@@ -0,0 +1,279 @@
+package edu.kit.informatik.gameLogic;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class passes the events of a game (see {@link GameEvent}) from the
+ * thread playing the game to any number of consumers reading them on their
+ * own threads at their own pace.
+ *
+ * The events are written into a ring buffer that is allocated once. The game
+ * never waits for a consumer: if a consumer falls behind by more than the
+ * capacity, the events it has not read yet are overwritten. The consumer
+ * notices this and receives an event of type {@link GameEvent.Type#LOST}
+ * instead, followed by the oldest event still available.
+ *
+ * Every slot of the ring buffer consists of four longs: the sequence number of
+ * the event in it (-1 while it is written) and three longs with the attributes
+ * of the event. A consumer reads a slot and checks afterwards that the
+ * sequence number has not changed, so it never uses a half-written event.
+ *
+ * A consumer waiting for events registers its thread and parks it, the
+ * publisher unparks the registered threads after every event. Publishing still
+ * never blocks, it only costs more while consumers are waiting.
+ *
+ * Only one thread may publish events, i.e. change the game.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class GameEventStream {
+
+    /**
+     * the number of longs a slot consists of
+     */
+    private static final int SLOT_SIZE = 4;
+
+    /**
+     * the number of events the ring buffer can hold
+     */
+    private final int capacity;
+
+    /**
+     * capacity - 1, to compute the index of a slot
+     */
+    private final int mask;
+
+    /**
+     * the slots of the ring buffer
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * the sequence number of the last published event
+     */
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * the threads of the consumers waiting for the next event
+     */
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * This method creates a new stream.
+     *
+     * @param pCapacity
+     *            the number of events the stream can hold, it has to be a
+     *            power of two
+     * @throws IllegalInputException
+     *             if the capacity is not a power of two
+     */
+    public GameEventStream(int pCapacity) throws IllegalInputException {
+        if (pCapacity < 1 || Integer.bitCount(pCapacity) != 1) {
+            throw new IllegalInputException("Error, the capacity has to be a power of two.");
+        }
+        capacity = pCapacity;
+        mask = pCapacity - 1;
+        slots = new AtomicLongArray(pCapacity * SLOT_SIZE);
+        for (int i = 0; i < pCapacity; i++) {
+            slots.set(i * SLOT_SIZE, -1);
+        }
+    }
+
+    /**
+     * This method publishes an event and wakes up the waiting consumers. It
+     * never blocks.
+     *
+     * @param pType
+     *            the kind of the event
+     * @param pRow
+     *            the row, -1 if not relevant
+     * @param pColumn
+     *            the column, -1 if not relevant
+     * @param pToken
+     *            the number of the token, -1 if not relevant
+     * @param pPlayer
+     *            the number of the player, -1 if not relevant
+     * @param pNumberOfMoves
+     *            the number of moves
+     */
+    void publish(GameEvent.Type pType, int pRow, int pColumn, int pToken, int pPlayer, int pNumberOfMoves) {
+        long sequence = cursor.get() + 1;
+        int slot = (int) (sequence & mask) * SLOT_SIZE;
+        // marking the slot as being written before overwriting the old event
+        slots.set(slot, -1);
+        slots.set(slot + 1, (long) pType.ordinal() << 32 | (pPlayer & 0xFFFFFFFFL));
+        slots.set(slot + 2, (long) pRow << 32 | (pColumn & 0xFFFFFFFFL));
+        slots.set(slot + 3, (long) pToken << 32 | (pNumberOfMoves & 0xFFFFFFFFL));
+        slots.set(slot, sequence);
+        cursor.set(sequence);
+        if (!waiters.isEmpty()) {
+            for (Thread waiter : waiters) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * This method returns the number of events published so far.
+     *
+     * @return the number of published events
+     */
+    public long getPublishedEvents() {
+        return cursor.get();
+    }
+
+    /**
+     * This method returns the number of events the stream can hold.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * This method creates a new consumer. It receives all events published
+     * after it has been created.
+     *
+     * @return the new consumer
+     */
+    public Consumer newConsumer() {
+        return new Consumer(cursor.get() + 1);
+    }
+
+    /**
+     * This class reads the events of a stream. Every consumer has its own
+     * position in the stream and may only be used by one thread.
+     */
+    public final class Consumer {
+
+        /**
+         * the sequence number of the next event to read
+         */
+        private long next;
+
+        /**
+         * the number of events that have been missed
+         */
+        private long lostEvents;
+
+        /**
+         * This method creates a new consumer.
+         *
+         * @param pNext
+         *            the sequence number of the first event to read
+         */
+        private Consumer(long pNext) {
+            next = pNext;
+        }
+
+        /**
+         * This method reads the next event if there is one.
+         *
+         * @param pEvent
+         *            the object the event is written to
+         * @return true if an event has been read, false if there is no new event
+         */
+        public boolean poll(GameEvent pEvent) {
+            long published = cursor.get();
+            if (published < next) {
+                return false;
+            }
+            int slot = (int) (next & mask) * SLOT_SIZE;
+            if (slots.get(slot) == next) {
+                long first = slots.get(slot + 1);
+                long second = slots.get(slot + 2);
+                long third = slots.get(slot + 3);
+                if (slots.get(slot) == next) {
+                    pEvent.set(GameEvent.TYPES[(int) (first >>> 32)], next, (int) (second >>> 32), (int) second,
+                            (int) (third >>> 32), (int) first, (int) third);
+                    next++;
+                    return true;
+                }
+            }
+            // the event has been overwritten, continuing with the oldest event left
+            long oldest = Math.max(next + 1, cursor.get() - capacity + 2);
+            int lost = (int) Math.min(Integer.MAX_VALUE, oldest - next);
+            lostEvents += oldest - next;
+            pEvent.set(GameEvent.Type.LOST, next, -1, -1, -1, -1, lost);
+            next = oldest;
+            return true;
+        }
+
+        /**
+         * This method reads the next event and waits for it if necessary.
+         *
+         * @param pEvent
+         *            the object the event is written to
+         * @param pTimeoutMillis
+         *            the maximum time to wait in milliseconds
+         * @return true if an event has been read, false if no event has been
+         *         published within the given time
+         * @throws InterruptedException
+         *             if the thread has been interrupted while waiting
+         */
+        public boolean poll(GameEvent pEvent, long pTimeoutMillis) throws InterruptedException {
+            if (poll(pEvent)) {
+                return true;
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pTimeoutMillis);
+            Thread thread = Thread.currentThread();
+            waiters.add(thread);
+            try {
+                // checking again after registering, so an event published in between wakes this thread up
+                while (!poll(pEvent)) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                return true;
+            } finally {
+                waiters.remove(thread);
+            }
+        }
+
+        /**
+         * This method moves this consumer in the stream, e.g. after the state
+         * of the game up to a certain event has been taken from a snapshot.
+         *
+         * @param pSequence
+         *            the sequence number of the last event that is not to be
+         *            read (0 to read from the first event on)
+         */
+        public void skipTo(long pSequence) {
+            next = pSequence + 1;
+        }
+
+        /**
+         * This method returns the number of events this consumer has missed.
+         *
+         * @return the number of missed events
+         */
+        public long getLostEvents() {
+            return lostEvents;
+        }
+
+        /**
+         * This method returns the number of published events this consumer has
+         * not read yet.
+         *
+         * @return the number of events behind the producer
+         */
+        public long getLag() {
+            return Math.max(0, cursor.get() - next + 1);
+        }
+    }
+}
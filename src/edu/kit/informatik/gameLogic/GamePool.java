@@ -0,0 +1,96 @@
+package edu.kit.informatik.gameLogic;
+
+import java.util.ArrayList;
+
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class keeps games that are not needed anymore, so that they can be
+ * reused instead of creating new games (with new boards and tokens) again. This
+ * is useful if many games are simulated. Every thread has its own pool, so no
+ * synchronization is needed; a game must be given back by the thread that got
+ * it.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class GamePool {
+
+    /**
+     * the maximum number of games kept by the pool of one thread
+     */
+    private static final int MAXIMUM_SIZE = 64;
+
+    /**
+     * the games not in use, one list for every thread
+     */
+    private static final ThreadLocal<ArrayList<Game>> POOLS = new ThreadLocal<ArrayList<Game>>() {
+        @Override
+        protected ArrayList<Game> initialValue() {
+            return new ArrayList<Game>();
+        }
+    };
+
+    private GamePool() {
+        // intentionally left blank to avoid instantiation
+    }
+
+    /**
+     * This method returns a game in the same state as the given game. If the
+     * pool of this thread contains a compatible game, it is reused, otherwise a
+     * new game is created.
+     *
+     * @param pOriginal
+     *            the game to copy
+     * @return a copy of the given game
+     * @throws IllegalInputException
+     *             if the given game is null
+     */
+    public static Game acquireCopy(Game pOriginal) throws IllegalInputException {
+        Game game = acquireEmpty(pOriginal);
+        game.copyFrom(pOriginal);
+        return game;
+    }
+
+    /**
+     * This method returns a game in its initial state that is compatible with
+     * the given game (same players, same kind and size of board). If the pool
+     * of this thread contains such a game, it is reused, otherwise a new game
+     * is created.
+     *
+     * @param pTemplate
+     *            the game the returned game has to be compatible with
+     * @return a game in its initial state
+     * @throws IllegalInputException
+     *             if the given game is null
+     */
+    public static Game acquireEmpty(Game pTemplate) throws IllegalInputException {
+        if (pTemplate == null) {
+            throw new IllegalInputException("Error, the game must not be null.");
+        }
+        ArrayList<Game> pool = POOLS.get();
+        // searching from the end, the games given back last are found first
+        for (int i = pool.size() - 1; i >= 0; i--) {
+            if (pool.get(i).isCompatible(pTemplate)) {
+                Game game = pool.remove(i);
+                game.reset();
+                return game;
+            }
+        }
+        return pTemplate.createEmptyCopy();
+    }
+
+    /**
+     * This method gives a game back to the pool of this thread. The game must
+     * not be used anymore afterwards. If the pool is full, the game is dropped.
+     *
+     * @param pGame
+     *            the game that is not needed anymore
+     */
+    public static void release(Game pGame) {
+        ArrayList<Game> pool = POOLS.get();
+        if (pGame != null && pool.size() < MAXIMUM_SIZE) {
+            pool.add(pGame);
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package edu.kit.informatik.gameLogic;
+
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class represents the state of a game with two players as an immutable
+ * value: the kind and size of the board, the tokens placed on the fields, the
+ * tokens in the bag, the selected token, the player to move, the number of
+ * moves and whether the game is over. Everything is packed into a few longs, so
+ * positions can be compared and hashed cheaply and shared between threads
+ * without any synchronization.
+ *
+ * The order of the tokens in the bag is not part of a position: after applying
+ * a position to a game, the bag is ordered by the numbers of the tokens. Only
+ * games with at most 64 tokens are supported.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class Position {
+
+    /**
+     * the maximum number of tokens of a game (bits of a long)
+     */
+    public static final int MAXIMUM_NUMBER_OF_TOKENS = 64;
+
+    /**
+     * the number of bits a field needs (token number + 1, 0 for an empty field)
+     */
+    private static final int BITS_PER_FIELD = 7;
+
+    /**
+     * the number of fields packed into one long
+     */
+    private static final int FIELDS_PER_LONG = Long.SIZE / BITS_PER_FIELD;
+
+    /**
+     * the result of a running game
+     */
+    private static final int RUNNING = 0;
+
+    /**
+     * the result of a won game
+     */
+    private static final int WON = 1;
+
+    /**
+     * the result of a game ended by draw
+     */
+    private static final int DRAW = 2;
+
+    /**
+     * kind and size of the board: rows (bits 0-15), columns (bits 16-31),
+     * tokens (bits 32-39), properties (bits 40-47), torus (bit 48)
+     */
+    private final long layout;
+
+    /**
+     * the tokens on the fields: token number + 1 for every field (0 for an
+     * empty field), 7 bits each, 9 fields per long
+     */
+    private final long[] fields;
+
+    /**
+     * the tokens in the bag, bit i stands for the token with number i
+     */
+    private final long bag;
+
+    /**
+     * selected token + 1 (bits 0-7), player to move (bits 8-15), result (bits
+     * 16-23), number of moves (bits 32-63)
+     */
+    private final long state;
+
+    /**
+     * the hash code, computed once
+     */
+    private final int hash;
+
+    /**
+     * This method creates a new position from its packed parts.
+     *
+     * @param pLayout
+     *            kind and size of the board
+     * @param pFields
+     *            the packed fields, the array must not be changed afterwards
+     * @param pBag
+     *            the tokens in the bag
+     * @param pState
+     *            selected token, player to move, result and number of moves
+     */
+    private Position(long pLayout, long[] pFields, long pBag, long pState) {
+        layout = pLayout;
+        fields = pFields;
+        bag = pBag;
+        state = pState;
+        long h = Board.mix(pLayout) ^ Board.mix(pBag + 1) ^ Board.mix(pState + 2);
+        for (int i = 0; i < pFields.length; i++) {
+            h = Board.mix(h + pFields[i]);
+        }
+        hash = (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * This method creates the position a game is in.
+     *
+     * @param pGame
+     *            the game
+     * @return the position of the game
+     * @throws IllegalInputException
+     *             if the game does not have two players or has more than 64
+     *             tokens
+     */
+    public static Position of(Game pGame) throws IllegalInputException {
+        Board board = pGame.getBoard();
+        int tokenCount = board.getTokenCount();
+        if (pGame.getNumberOfPlayers() != 2 || tokenCount > MAXIMUM_NUMBER_OF_TOKENS) {
+            throw new IllegalInputException("Error, only games with two players and at most "
+                    + MAXIMUM_NUMBER_OF_TOKENS + " tokens can be stored as position.");
+        }
+        int rows = board.getRowNumber();
+        int columns = board.getColumnNumber();
+        long[] packed = new long[(rows * columns + FIELDS_PER_LONG - 1) / FIELDS_PER_LONG];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int field = row * columns + column;
+                long value = board.getTokenNumberAt(row, column) + 1;
+                packed[field / FIELDS_PER_LONG] |= value << (field % FIELDS_PER_LONG * BITS_PER_FIELD);
+            }
+        }
+        long layout = rows | (long) columns << 16 | (long) tokenCount << 32
+                | (long) board.getNumberOfTokenProperties() << 40 | (board instanceof Torus ? 1L << 48 : 0);
+        Token selected = board.getSelectedToken();
+        int result = pGame.getGameWon() ? WON : pGame.getGameDraw() ? DRAW : RUNNING;
+        long state = (selected == null ? 0 : selected.getDecimalNumber() + 1)
+                | (long) pGame.getPlayerToMove() << 8 | (long) result << 16
+                | (long) pGame.getNumberOfMoves() << 32;
+        return new Position(layout, packed, board.getBagTokens(), state);
+    }
+
+    /**
+     * This method creates a position from its text (see {@link #format()}).
+     *
+     * @param pText
+     *            the position as text
+     * @return the position
+     * @throws IllegalInputException
+     *             if the text is not a valid position
+     */
+    public static Position parse(String pText) throws IllegalInputException {
+        String[] parts = pText.trim().split("\\s+");
+        if (parts.length != 10 || !parts[0].equals("standard") && !parts[0].equals("torus")) {
+            throw new IllegalInputException("Error, a position consists of the board type, the number of rows, "
+                    + "columns, tokens and properties, the fields, the selected token, the player to move, the "
+                    + "number of moves and the result.");
+        }
+        int rows = parseNumber(parts[1], 1, Board.MAXIMUM_LENGTH);
+        int columns = parseNumber(parts[2], 1, Board.MAXIMUM_LENGTH);
+        int tokenCount = parseNumber(parts[3], 1, MAXIMUM_NUMBER_OF_TOKENS);
+        int properties = parseNumber(parts[4], 1, Token.MAXIMUM_NUMBER_OF_PROPERTIES);
+        if (properties < Integer.SIZE - 1 && tokenCount > 1 << properties) {
+            throw new IllegalInputException("Error, " + tokenCount + " tokens need more than " + properties
+                    + " properties.");
+        }
+        String[] rowTexts = parts[5].split("/", -1);
+        if (rowTexts.length != rows) {
+            throw new IllegalInputException("Error, the position has to contain " + rows + " rows.");
+        }
+        long[] packed = new long[(rows * columns + FIELDS_PER_LONG - 1) / FIELDS_PER_LONG];
+        long bag = tokenCount == MAXIMUM_NUMBER_OF_TOKENS ? -1L : (1L << tokenCount) - 1;
+        for (int row = 0; row < rows; row++) {
+            String[] fieldTexts = rowTexts[row].split(",", -1);
+            if (fieldTexts.length != columns) {
+                throw new IllegalInputException("Error, every row has to contain " + columns + " fields.");
+            }
+            for (int column = 0; column < columns; column++) {
+                int field = row * columns + column;
+                int token = parseToken(fieldTexts[column], tokenCount, bag);
+                if (token >= 0) {
+                    bag &= ~(1L << token);
+                }
+                packed[field / FIELDS_PER_LONG] |= (long) (token + 1) << (field % FIELDS_PER_LONG * BITS_PER_FIELD);
+            }
+        }
+        int selected = parseToken(parts[6], tokenCount, bag);
+        if (selected >= 0) {
+            bag &= ~(1L << selected);
+        }
+        int playerToMove = parseNumber(parts[7], 1, 2);
+        int moves = parseNumber(parts[8], 0, Integer.MAX_VALUE);
+        int result;
+        if (parts[9].equals("running")) {
+            result = RUNNING;
+        } else if (parts[9].equals("won")) {
+            result = WON;
+        } else if (parts[9].equals("draw")) {
+            result = DRAW;
+        } else {
+            throw new IllegalInputException("Error, the result has to be running, won or draw.");
+        }
+        long layout = rows | (long) columns << 16 | (long) tokenCount << 32 | (long) properties << 40
+                | (parts[0].equals("torus") ? 1L << 48 : 0);
+        long state = (selected + 1) | (long) playerToMove << 8 | (long) result << 16 | (long) moves << 32;
+        return new Position(layout, packed, bag, state);
+    }
+
+    /**
+     * This method reads a number of a position.
+     *
+     * @param pText
+     *            the number as text
+     * @param pMinimum
+     *            the smallest allowed value
+     * @param pMaximum
+     *            the greatest allowed value
+     * @return the number
+     * @throws IllegalInputException
+     *             if the text is not a number in the allowed range
+     */
+    private static int parseNumber(String pText, int pMinimum, int pMaximum) throws IllegalInputException {
+        int number;
+        try {
+            number = Integer.parseInt(pText);
+        } catch (NumberFormatException e) {
+            throw new IllegalInputException("Error, " + pText + " is not a valid integer number.");
+        }
+        if (number < pMinimum || number > pMaximum) {
+            throw new IllegalInputException("Error, " + pText + " has to be between " + pMinimum + " and "
+                    + pMaximum + ".");
+        }
+        return number;
+    }
+
+    /**
+     * This method reads the number of a token of a position ("#" for none).
+     *
+     * @param pText
+     *            the number as text
+     * @param pTokenCount
+     *            the number of tokens
+     * @param pBag
+     *            the tokens that have not been used yet
+     * @return the number of the token, -1 for none
+     * @throws IllegalInputException
+     *             if the token does not exist or has already been used
+     */
+    private static int parseToken(String pText, int pTokenCount, long pBag) throws IllegalInputException {
+        if (pText.equals("#")) {
+            return -1;
+        }
+        int token = parseNumber(pText, 0, pTokenCount - 1);
+        if ((pBag & 1L << token) == 0) {
+            throw new IllegalInputException("Error, the token " + token + " is used twice.");
+        }
+        return token;
+    }
+
+    /**
+     * This method creates a new game with two players on a board of the kind
+     * and size of this position and puts it into this position.
+     *
+     * @return the game
+     * @throws IllegalInputException
+     *             if the board cannot be created or the position is invalid
+     */
+    public Game createGame() throws IllegalInputException {
+        Board board = isTorus() ? new Torus(getTokenCount(), getNumberOfTokenProperties(), getRowNumber(),
+                getColumnNumber()) : new Standard(getTokenCount(), getNumberOfTokenProperties(), getRowNumber(),
+                        getColumnNumber());
+        Game game = new Game(2, board);
+        applyTo(game);
+        return game;
+    }
+
+    /**
+     * This method puts a game into this position. The game has to be played
+     * by two players on a board of the same kind and size with the same tokens.
+     *
+     * @param pGame
+     *            the game
+     * @throws IllegalInputException
+     *             if the game does not match this position
+     */
+    public void applyTo(Game pGame) throws IllegalInputException {
+        Board board = pGame.getBoard();
+        if (board.getRowNumber() != getRowNumber() || board.getColumnNumber() != getColumnNumber()
+                || board.getTokenCount() != getTokenCount()
+                || board.getNumberOfTokenProperties() != getNumberOfTokenProperties()
+                || (board instanceof Torus) != isTorus()) {
+            throw new IllegalInputException("Error, the position does not belong to a game of this kind.");
+        }
+        int[] fieldTokens = new int[getRowNumber() * getColumnNumber()];
+        for (int field = 0; field < fieldTokens.length; field++) {
+            fieldTokens[field] = getTokenAt(field);
+        }
+        pGame.setUp(fieldTokens, getSelectedToken(), getPlayerToMove(), isWon(), isDraw(), getNumberOfMoves());
+    }
+
+    /**
+     * This method returns the number of the token at a field.
+     *
+     * @param pField
+     *            the index of the field (row * number of columns + column)
+     * @return the number of the token, -1 if the field is empty
+     */
+    public int getTokenAt(int pField) {
+        long value = fields[pField / FIELDS_PER_LONG] >>> (pField % FIELDS_PER_LONG * BITS_PER_FIELD);
+        return (int) (value & ((1L << BITS_PER_FIELD) - 1)) - 1;
+    }
+
+    /**
+     * This method returns the tokens in the bag.
+     *
+     * @return the tokens in the bag as bitmask, bit i stands for the token with
+     *         number i
+     */
+    public long getBag() {
+        return bag;
+    }
+
+    /**
+     * This method returns the selected token.
+     *
+     * @return the number of the selected token, -1 if no token is selected
+     */
+    public int getSelectedToken() {
+        return (int) (state & 0xFF) - 1;
+    }
+
+    /**
+     * This method returns the player to move (see {@link Game#getPlayerToMove()}).
+     *
+     * @return the number of the player to move
+     */
+    public int getPlayerToMove() {
+        return (int) (state >>> 8 & 0xFF);
+    }
+
+    /**
+     * This method returns whether the game has been won.
+     *
+     * @return true if the game has been won (by the player not to move)
+     */
+    public boolean isWon() {
+        return (state >>> 16 & 0xFF) == WON;
+    }
+
+    /**
+     * This method returns whether the game has ended by draw.
+     *
+     * @return true if the game has ended by draw
+     */
+    public boolean isDraw() {
+        return (state >>> 16 & 0xFF) == DRAW;
+    }
+
+    /**
+     * This method returns the number of moves that have been made.
+     *
+     * @return the number of moves
+     */
+    public int getNumberOfMoves() {
+        return (int) (state >>> 32);
+    }
+
+    /**
+     * This method returns the number of rows of the board.
+     *
+     * @return the number of rows
+     */
+    public int getRowNumber() {
+        return (int) (layout & 0xFFFF);
+    }
+
+    /**
+     * This method returns the number of columns of the board.
+     *
+     * @return the number of columns
+     */
+    public int getColumnNumber() {
+        return (int) (layout >>> 16 & 0xFFFF);
+    }
+
+    /**
+     * This method returns the number of tokens of the game.
+     *
+     * @return the number of tokens
+     */
+    public int getTokenCount() {
+        return (int) (layout >>> 32 & 0xFF);
+    }
+
+    /**
+     * This method returns the number of properties of the tokens.
+     *
+     * @return the number of properties
+     */
+    public int getNumberOfTokenProperties() {
+        return (int) (layout >>> 40 & 0xFF);
+    }
+
+    /**
+     * This method returns whether the board is a torus.
+     *
+     * @return true if the board is a torus, false if it is a standard board
+     */
+    public boolean isTorus() {
+        return (layout >>> 48 & 1) != 0;
+    }
+
+    /**
+     * This method returns this position as one line of text: the kind of the
+     * board (standard or torus), the number of rows, columns, tokens and
+     * properties, the rows of the board (separated by "/", the fields of a row
+     * separated by ",", "#" for an empty field), the selected token ("#" if
+     * none), the player to move, the number of moves and the result (running,
+     * won or draw), all separated by spaces. The text can be read again with
+     * {@link #parse(String)}.
+     *
+     * @return this position as text
+     */
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(isTorus() ? "torus" : "standard").append(' ').append(getRowNumber()).append(' ')
+                .append(getColumnNumber()).append(' ').append(getTokenCount()).append(' ')
+                .append(getNumberOfTokenProperties()).append(' ');
+        for (int row = 0; row < getRowNumber(); row++) {
+            for (int column = 0; column < getColumnNumber(); column++) {
+                if (column > 0) {
+                    builder.append(',');
+                }
+                int token = getTokenAt(row * getColumnNumber() + column);
+                builder.append(token < 0 ? "#" : Integer.toString(token));
+            }
+            builder.append(row < getRowNumber() - 1 ? '/' : ' ');
+        }
+        builder.append(getSelectedToken() < 0 ? "#" : Integer.toString(getSelectedToken())).append(' ')
+                .append(getPlayerToMove()).append(' ').append(getNumberOfMoves()).append(' ')
+                .append(isWon() ? "won" : isDraw() ? "draw" : "running");
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    @Override
+    public boolean equals(Object pObject) {
+        if (this == pObject) {
+            return true;
+        }
+        if (!(pObject instanceof Position)) {
+            return false;
+        }
+        Position other = (Position) pObject;
+        if (other.hash != hash || other.layout != layout || other.bag != bag || other.state != state) {
+            return false;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (other.fields[i] != fields[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,286 @@
+package edu.kit.informatik.gameLogic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class contains the events recorded by the Java Flight Recorder for
+ * profiling the program with standard tools, e.g. by starting it with
+ * -XX:StartFlightRecording:settings=quarto.jfc, where the file enables the
+ * events (for example "edu.kit.informatik.Place#enabled=true").
+ *
+ * All events are disabled by default, then beginning and committing an event
+ * does nothing, so the overhead is close to zero. Every game, board and user
+ * interface reuses one event object of every kind (their methods are invoked
+ * by one thread only), so recording does not create any objects either.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class RecordedEvents {
+
+    /**
+     * the outcome of an operation that has thrown an exception
+     */
+    public static final String FAILED = "failed";
+
+    /**
+     * This class cannot be instantiated, it only contains the events.
+     */
+    private RecordedEvents() {
+    }
+
+    /**
+     * This method returns the kind of a board for the events.
+     *
+     * @param pBoard
+     *            the board
+     * @return "torus" or "standard"
+     */
+    static String getBoardType(Board pBoard) {
+        return pBoard instanceof Torus ? "torus" : "standard";
+    }
+
+    /**
+     * This class represents the selection of a token by {@link Game#select(int)}.
+     */
+    @Name("edu.kit.informatik.Select")
+    @Label("Select")
+    @Category({"Quarto", "Game"})
+    @Description("A token has been selected")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class SelectEvent extends Event {
+
+        /**
+         * the kind of board
+         */
+        @Label("Board Type")
+        String boardType;
+
+        /**
+         * the number of the token
+         */
+        @Label("Token")
+        int token;
+
+        /**
+         * the number of the selecting player
+         */
+        @Label("Player")
+        int player;
+
+        /**
+         * "selected" or {@link RecordedEvents#FAILED}
+         */
+        @Label("Outcome")
+        String outcome;
+
+        /**
+         * This method commits the event if it is recorded.
+         *
+         * @param pBoard
+         *            the board
+         * @param pToken
+         *            the number of the token
+         * @param pPlayer
+         *            the number of the selecting player
+         * @param pOutcome
+         *            the outcome of the selection
+         */
+        void finish(Board pBoard, int pToken, int pPlayer, String pOutcome) {
+            end();
+            if (shouldCommit()) {
+                boardType = getBoardType(pBoard);
+                token = pToken;
+                player = pPlayer;
+                outcome = pOutcome;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * This class represents the placement of a token by
+     * {@link Game#place(int, int)}, including the check for a win or draw.
+     */
+    @Name("edu.kit.informatik.Place")
+    @Label("Place")
+    @Category({"Quarto", "Game"})
+    @Description("A token has been placed")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class PlaceEvent extends Event {
+
+        /**
+         * the kind of board
+         */
+        @Label("Board Type")
+        String boardType;
+
+        /**
+         * the row of the field
+         */
+        @Label("Row")
+        int row;
+
+        /**
+         * the column of the field
+         */
+        @Label("Column")
+        int column;
+
+        /**
+         * the number of the token
+         */
+        @Label("Token")
+        int token;
+
+        /**
+         * "placed", "won", "draw" or {@link RecordedEvents#FAILED}
+         */
+        @Label("Outcome")
+        String outcome;
+
+        /**
+         * This method commits the event if it is recorded.
+         *
+         * @param pBoard
+         *            the board
+         * @param pRow
+         *            the row of the field
+         * @param pColumn
+         *            the column of the field
+         * @param pToken
+         *            the number of the token, -1 if none was selected
+         * @param pOutcome
+         *            the outcome of the placement
+         */
+        void finish(Board pBoard, int pRow, int pColumn, int pToken, String pOutcome) {
+            end();
+            if (shouldCommit()) {
+                boardType = getBoardType(pBoard);
+                row = pRow;
+                column = pColumn;
+                token = pToken;
+                outcome = pOutcome;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * This class represents the check for a win by
+     * {@link Board#checkWin(int, int)}.
+     */
+    @Name("edu.kit.informatik.CheckWin")
+    @Label("Check Win")
+    @Category({"Quarto", "Game"})
+    @Description("The lines of a field have been checked for a win")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class CheckWinEvent extends Event {
+
+        /**
+         * the kind of board
+         */
+        @Label("Board Type")
+        String boardType;
+
+        /**
+         * the row of the field
+         */
+        @Label("Row")
+        int row;
+
+        /**
+         * the column of the field
+         */
+        @Label("Column")
+        int column;
+
+        /**
+         * whether a line of the field has been completed
+         */
+        @Label("Won")
+        boolean won;
+
+        /**
+         * This method commits the event if it is recorded.
+         *
+         * @param pBoard
+         *            the board
+         * @param pRow
+         *            the row of the field
+         * @param pColumn
+         *            the column of the field
+         * @param pWon
+         *            the result of the check
+         */
+        void finish(Board pBoard, int pRow, int pColumn, boolean pWon) {
+            end();
+            if (shouldCommit()) {
+                boardType = getBoardType(pBoard);
+                row = pRow;
+                column = pColumn;
+                won = pWon;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * This class represents the execution of a command of the user.
+     */
+    @Name("edu.kit.informatik.Command")
+    @Label("Command")
+    @Category({"Quarto", "User Interaction"})
+    @Description("A command of the user has been executed")
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class CommandEvent extends Event {
+
+        /**
+         * the name of the command
+         */
+        @Label("Command")
+        String command;
+
+        /**
+         * the kind of board
+         */
+        @Label("Board Type")
+        String boardType;
+
+        /**
+         * "ok" or the simple name of the exception the command has failed with
+         */
+        @Label("Outcome")
+        String outcome;
+
+        /**
+         * This method commits the event if it is recorded.
+         *
+         * @param pCommand
+         *            the name of the command
+         * @param pBoard
+         *            the board of the game
+         * @param pOutcome
+         *            the outcome of the command
+         */
+        public void finish(String pCommand, Board pBoard, String pOutcome) {
+            end();
+            if (shouldCommit()) {
+                command = pCommand;
+                boardType = getBoardType(pBoard);
+                outcome = pOutcome;
+                commit();
+            }
+        }
+    }
+}
@@ -53,4 +53,13 @@ public class Standard extends Board {
     public int getCoordinateColumn(int pCoordinate) {
         return pCoordinate;
     }
+
+    /**
+     * This method creates a new, empty standard board of the same size and with the
+     * same tokens as this board.
+     */
+    @Override
+    public Board createEmptyBoard() throws IllegalInputException {
+        return new Standard(getTokenCount(), getNumberOfTokenProperties(), getRowNumber(), getColumnNumber());
+    }
 }
@@ -60,4 +60,13 @@ public class Torus extends Board {
             return pOriginalCoordinate % super.getColumnNumber();
         }
     }
+
+    /**
+     * This method creates a new, empty torus board of the same size and with the
+     * same tokens as this board.
+     */
+    @Override
+    public Board createEmptyBoard() throws IllegalInputException {
+        return new Torus(getTokenCount(), getNumberOfTokenProperties(), getRowNumber(), getColumnNumber());
+    }
 }
@@ -1,10 +1,14 @@
 package edu.kit.informatik.main;
 
+import java.io.File;
+import java.io.IOException;
+
 import edu.kit.informatik.Terminal;
 import edu.kit.informatik.gameLogic.Board;
 import edu.kit.informatik.gameLogic.Game;
 import edu.kit.informatik.gameLogic.Standard;
 import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.CommandJournal;
 import edu.kit.informatik.userInteraction.IllegalInputException;
 import edu.kit.informatik.userInteraction.UserInterface;
 
@@ -28,29 +32,41 @@ public final class Main {
      * 
      * @param args
      *            containing information about which type of board is used
-     *            (either standard or torus)
+     *            (either standard or torus) and optionally the file of a
+     *            journal: the game is restored from it and all commands
+     *            changing the game are written to it (see {@link CommandJournal})
      */
     public static void main(String[] args) {
         Board board;
         // checking command line parameter
-        if (args.length == 1) {
+        if (args.length == 1 || args.length == 2) {
             try {
                 // determining game mode
                 if (args[0].equals("standard")) {
                     board = new Standard(16, 4, 6, 6);
-                    UserInterface userInterface = new UserInterface(new Game(2, board));
-                    // running game
-                    userInterface.interactiveSequence();
                 } else if (args[0].equals("torus")) {
                     board = new Torus(16, 4, 6, 6);
-                    UserInterface userInterface = new UserInterface(new Game(2, board));
-                    // running game
-                    userInterface.interactiveSequence();
                 } else {
                     // not the right parameter
                     Terminal.printLine("Error, illegal board type has been entered. Please choose standard or torus.");
                     System.exit(1);
+                    return;
+                }
+                UserInterface userInterface = new UserInterface(new Game(2, board));
+                if (args.length == 2) {
+                    try {
+                        userInterface.recover(new CommandJournal(new File(args[1])));
+                    } catch (IOException e) {
+                        Terminal.printLine("Error, the journal " + args[1] + " cannot be opened.");
+                        System.exit(1);
+                    } catch (IllegalInputException e) {
+                        // the game cannot be restored, continuing would lose the journal
+                        Terminal.printLine(e.getMessage());
+                        System.exit(1);
+                    }
                 }
+                // running game
+                userInterface.interactiveSequence();
             } catch (IllegalInputException e) {
                 // this should not happen, since parameters are not variable in
                 // this case and are chosen in the right way
@@ -58,7 +74,7 @@ public final class Main {
             }
         } else {
             Terminal.printLine("Error, illegal number of arguments in commandline. "
-                    + "Exactly one parameter is needed (standard or torus).");
+                    + "One or two parameters are needed (standard or torus and optionally a journal file).");
             System.exit(1);
         }
     }
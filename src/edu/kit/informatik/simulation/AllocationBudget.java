@@ -0,0 +1,178 @@
+package edu.kit.informatik.simulation;
+
+import java.lang.management.ManagementFactory;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class checks that making moves does not create objects: it plays random
+ * games on a standard and a torus board and measures the bytes allocated by
+ * the playing thread for every cycle of selecting a token, placing it and
+ * checking for a win. The games are played several times, the first rounds
+ * only warm up the compiler; the best of the remaining rounds is compared to
+ * the budget. If a board exceeds the budget, the program ends with exit code
+ * 1, so that it can be run after every change of the game logic.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class AllocationBudget {
+
+    /**
+     * the number of rounds run before measuring
+     */
+    private static final int WARM_UP_ROUNDS = 5;
+
+    /**
+     * the number of rounds measured
+     */
+    private static final int MEASURED_ROUNDS = 5;
+
+    private AllocationBudget() {
+        // intentionally left blank to avoid instantiation
+    }
+
+    /**
+     * This method measures the allocations and compares them to the budget.
+     * Usage: AllocationBudget [budget [cycles]]
+     *
+     * @param args
+     *            the budget in bytes per cycle (default 0) and the number of
+     *            cycles of every round (default 200000)
+     */
+    public static void main(String[] args) {
+        double budget = 0;
+        int cycles = 200000;
+        try {
+            if (args.length > 0) {
+                budget = Double.parseDouble(args[0]);
+            }
+            if (args.length > 1) {
+                cycles = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, usage: [budget [cycles]]");
+            System.exit(1);
+        }
+        if (budget < 0 || cycles < 1) {
+            Terminal.printLine("Error, the budget must not be negative and the number of cycles has to be greater "
+                    + "than zero.");
+            System.exit(1);
+        }
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            Terminal.printLine("Error, this Java virtual machine cannot measure allocations.");
+            System.exit(1);
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        boolean withinBudget = true;
+        try {
+            Board[] boards = {new Standard(16, 4, 6, 6), new Torus(16, 4, 6, 6)};
+            String[] names = {"standard", "torus"};
+            for (int i = 0; i < boards.length; i++) {
+                double bytes = measure(new Game(2, boards[i]), cycles, allocations);
+                boolean passed = bytes <= budget;
+                withinBudget &= passed;
+                Terminal.printLine(names[i] + ": " + String.format("%.2f", bytes) + " bytes per cycle, budget "
+                        + String.format("%.2f", budget) + (passed ? ", OK" : ", exceeded"));
+            }
+        } catch (IllegalInputException e) {
+            Terminal.printLine("Error, the boards cannot be created: " + e.getMessage());
+            System.exit(1);
+        }
+        if (!withinBudget) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * This method plays random games and measures the allocations.
+     *
+     * @param pGame
+     *            the game
+     * @param pCycles
+     *            the number of cycles of every round
+     * @param pAllocations
+     *            the bean measuring the allocations
+     * @return the fewest bytes allocated per cycle in a measured round
+     */
+    private static double measure(Game pGame, int pCycles, com.sun.management.ThreadMXBean pAllocations) {
+        long thread = Thread.currentThread().getId();
+        int[] tokens = new int[pGame.getMaximumNumberOfSelections() + 1];
+        int[] rows = new int[pGame.getMaximumNumberOfPlacements()];
+        int[] columns = new int[rows.length];
+        long[] random = {1};
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARM_UP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long before = pAllocations.getThreadAllocatedBytes(thread);
+            play(pGame, pCycles, tokens, rows, columns, random);
+            long after = pAllocations.getThreadAllocatedBytes(thread);
+            if (round >= WARM_UP_ROUNDS) {
+                best = Math.min(best, (double) (after - before) / pCycles);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * This method plays random games until the given number of tokens has been
+     * placed. A new game is started whenever a game is over.
+     *
+     * @param pGame
+     *            the game
+     * @param pCycles
+     *            the number of placements
+     * @param pTokens
+     *            an array for the selectable tokens
+     * @param pRows
+     *            an array for the rows of the free fields
+     * @param pColumns
+     *            an array for the columns of the free fields
+     * @param pRandom
+     *            the state of the random numbers (one element, changed)
+     */
+    private static void play(Game pGame, int pCycles, int[] pTokens, int[] pRows, int[] pColumns,
+            long[] pRandom) {
+        Board board = pGame.getBoard();
+        for (int cycle = 0; cycle < pCycles; cycle++) {
+            if (pGame.getGameWon() || pGame.getGameDraw()) {
+                pGame.reset();
+            }
+            int tokenCount = pGame.generateSelections(pTokens);
+            int placementCount;
+            try {
+                pGame.select(pTokens[next(pRandom, tokenCount)]);
+                placementCount = pGame.generatePlacements(pRows, pColumns);
+                int placement = next(pRandom, placementCount);
+                pGame.place(pRows[placement], pColumns[placement]);
+                board.checkWin(pRows[placement], pColumns[placement]);
+            } catch (IllegalInputException | ObjectNotFoundException e) {
+                // this should not happen, only legal moves are generated
+                pGame.reset();
+            }
+        }
+    }
+
+    /**
+     * This method returns the next random number (linear congruential
+     * generator, so that no objects are created).
+     *
+     * @param pState
+     *            the state of the random numbers (one element, changed)
+     * @param pBound
+     *            the number of possible values
+     * @return a number between 0 (inclusive) and pBound (exclusive)
+     */
+    private static int next(long[] pState, int pBound) {
+        pState[0] = pState[0] * 6364136223846793005L + 1442695040888963407L;
+        return (int) ((pState[0] >>> 33) % pBound);
+    }
+}
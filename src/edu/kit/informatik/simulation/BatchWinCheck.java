@@ -0,0 +1,238 @@
+package edu.kit.informatik.simulation;
+
+import java.util.Random;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class checks that {@link BatchWinEvaluator} finds the same wins as
+ * {@link Board#checkWin(int, int)}: it plays random games on many boards at
+ * once, places every token on a board of the evaluator, too, and compares the
+ * results of all three checks of the evaluator after every placement. The
+ * plain loops are always checked, the Vector API only if it is available (see
+ * {@link BatchWinEvaluator}). If a result differs, the program ends with exit
+ * code 1, so that it can be run after every change of the evaluator.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class BatchWinCheck {
+
+    private BatchWinCheck() {
+        // intentionally left blank to avoid instantiation
+    }
+
+    /**
+     * This method compares the evaluator to the boards. Usage: BatchWinCheck
+     * [games [boards [seed]]]
+     *
+     * @param args
+     *            the number of games played for every kind of board (default
+     *            20000), the number of boards played at once (default 67, so
+     *            that some boards are left over after the full vectors) and the
+     *            seed of the random games (default 42)
+     */
+    public static void main(String[] args) {
+        int games = 20000;
+        int capacity = 67;
+        long seed = 42;
+        try {
+            if (args.length > 3) {
+                throw new NumberFormatException();
+            }
+            if (args.length > 0) {
+                games = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1) {
+                capacity = Integer.parseInt(args[1]);
+            }
+            if (args.length > 2) {
+                seed = Long.parseLong(args[2]);
+            }
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, usage: [games [boards [seed]]]");
+            System.exit(1);
+        }
+        if (games < 1 || capacity < 1) {
+            Terminal.printLine("Error, the number of games and boards have to be greater than zero.");
+            System.exit(1);
+        }
+        if (!BatchWinEvaluator.isVectorApiAvailable()) {
+            Terminal.printLine("The Vector API is not available, only the plain loops are checked.");
+        }
+        boolean passed = true;
+        try {
+            Board[] templates = {new Standard(16, 4, 6, 6), new Torus(16, 4, 6, 6), new Standard(16, 4, 4, 4),
+                new Torus(16, 4, 4, 4)};
+            for (Board template : templates) {
+                passed &= check(template, games, capacity, new Random(seed));
+            }
+        } catch (IllegalInputException e) {
+            Terminal.printLine("Error, the boards cannot be created: " + e.getMessage());
+            System.exit(1);
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * This method plays random games on boards of one kind and compares the
+     * wins found by the evaluators to those found by the boards.
+     *
+     * @param pTemplate
+     *            a board of the kind and size to check
+     * @param pGames
+     *            the number of games to play
+     * @param pCapacity
+     *            the number of boards played at once
+     * @param pRandom
+     *            the generator of the random moves
+     * @return true if all results have been the same
+     * @throws IllegalInputException
+     *             if the boards cannot be created
+     */
+    private static boolean check(Board pTemplate, int pGames, int pCapacity, Random pRandom)
+            throws IllegalInputException {
+        Game[] boards = new Game[pCapacity];
+        for (int i = 0; i < pCapacity; i++) {
+            boards[i] = new Game(2, pTemplate.createEmptyBoard());
+        }
+        BatchWinEvaluator[] evaluators = BatchWinEvaluator.isVectorApiAvailable()
+                ? new BatchWinEvaluator[] {new BatchWinEvaluator(pTemplate, pCapacity, false),
+                    new BatchWinEvaluator(pTemplate, pCapacity, true)}
+                : new BatchWinEvaluator[] {new BatchWinEvaluator(pTemplate, pCapacity, false)};
+        int columnNumber = pTemplate.getColumnNumber();
+        int fieldNumber = pTemplate.getRowNumber() * columnNumber;
+        int[] tokens = new int[boards[0].getMaximumNumberOfSelections() + 1];
+        int[] rows = new int[boards[0].getMaximumNumberOfPlacements()];
+        int[] columns = new int[rows.length];
+        int[] fields = new int[pCapacity];
+        boolean[] expected = new boolean[pCapacity];
+        boolean[] results = new boolean[pCapacity];
+        long placements = 0;
+        long wins = 0;
+        int started = pCapacity;
+        int mismatches = 0;
+        while (started < pGames || !allOver(boards)) {
+            for (int i = 0; i < pCapacity; i++) {
+                Game game = boards[i];
+                if (game.getGameWon() || game.getGameDraw()) {
+                    if (started >= pGames) {
+                        // the board keeps its last position, the results have to stay the same
+                        continue;
+                    }
+                    game.reset();
+                    for (BatchWinEvaluator evaluator : evaluators) {
+                        evaluator.clear(i);
+                    }
+                    started++;
+                }
+                int tokenCount = game.generateSelections(tokens);
+                try {
+                    game.select(tokens[pRandom.nextInt(tokenCount)]);
+                } catch (ObjectNotFoundException e) {
+                    // this should not happen, only available tokens are generated
+                    throw new IllegalInputException(e.getMessage());
+                }
+                int placement = pRandom.nextInt(game.generatePlacements(rows, columns));
+                game.place(rows[placement], columns[placement]);
+                placements++;
+                wins += game.getGameWon() ? 1 : 0;
+                Board board = game.getBoard();
+                fields[i] = rows[placement] * columnNumber + columns[placement];
+                for (BatchWinEvaluator evaluator : evaluators) {
+                    evaluator.place(i, fields[i], board.getTokenNumberAt(rows[placement], columns[placement]));
+                }
+            }
+            // a game ends with its first completed line, so every line is completed by the last token
+            for (int i = 0; i < pCapacity; i++) {
+                int field = fields[i];
+                expected[i] = boards[i].getBoard().checkWin(field / columnNumber, field % columnNumber);
+            }
+            for (BatchWinEvaluator evaluator : evaluators) {
+                evaluator.checkWins(fields, results);
+                mismatches += compare(mismatches == 0, "the last fields", evaluator, expected, results);
+                evaluator.checkAllWins(results);
+                mismatches += compare(mismatches == 0, "all lines", evaluator, expected, results);
+            }
+            int field = pRandom.nextInt(fieldNumber);
+            for (int i = 0; i < pCapacity; i++) {
+                expected[i] = boards[i].getBoard().checkWin(field / columnNumber, field % columnNumber);
+            }
+            for (BatchWinEvaluator evaluator : evaluators) {
+                evaluator.checkWins(field, results);
+                mismatches += compare(mismatches == 0, "field " + field, evaluator, expected, results);
+            }
+        }
+        Terminal.printLine(describe(pTemplate) + ": " + started + " games, " + placements + " placements, " + wins
+                + " wins, " + (mismatches == 0 ? "OK" : mismatches + " differences"));
+        return mismatches == 0;
+    }
+
+    /**
+     * This method checks whether all games are over.
+     *
+     * @param pGames
+     *            the games
+     * @return true if no game is running any more
+     */
+    private static boolean allOver(Game[] pGames) {
+        for (Game game : pGames) {
+            if (!game.getGameWon() && !game.getGameDraw()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method compares the results of an evaluator to the expected ones
+     * and prints the first difference.
+     *
+     * @param pReport
+     *            false if a difference has already been printed
+     * @param pCheck
+     *            a description of the check
+     * @param pEvaluator
+     *            the evaluator
+     * @param pExpected
+     *            the results of the boards
+     * @param pResults
+     *            the results of the evaluator
+     * @return the number of different results
+     */
+    private static int compare(boolean pReport, String pCheck, BatchWinEvaluator pEvaluator, boolean[] pExpected,
+            boolean[] pResults) {
+        int mismatches = 0;
+        for (int i = 0; i < pExpected.length; i++) {
+            if (pExpected[i] != pResults[i]) {
+                if (pReport && mismatches == 0) {
+                    Terminal.printLine("Error, the " + (pEvaluator.isVectorized() ? "Vector API" : "plain loops")
+                            + " found " + (pResults[i] ? "a win" : "no win") + " on board " + i + " checking "
+                            + pCheck + ".");
+                }
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * This method describes the kind and size of a board.
+     *
+     * @param pBoard
+     *            the board
+     * @return the description
+     */
+    private static String describe(Board pBoard) {
+        return (pBoard instanceof Torus ? "torus " : "standard ") + pBoard.getRowNumber() + "x"
+                + pBoard.getColumnNumber();
+    }
+}
@@ -0,0 +1,376 @@
+package edu.kit.informatik.simulation;
+
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+
+/**
+ * This class holds many boards of the same kind and size at once and checks
+ * all of them for wins. The boards are not stored as objects but column-wise
+ * (structure of arrays): for every bit of the token numbers there is one array
+ * with a bitmask for every board, telling at which fields tokens with this bit
+ * set have been placed. A line wins if all its fields are set in one of these
+ * masks (or all its fields are occupied and not set in it).
+ *
+ * The loops over the boards only consist of operations on consecutive longs,
+ * so the JIT compiler can turn them into vector instructions. Checking a line
+ * on all boards is also implemented explicitly with the Vector API in
+ * {@code VectorWinKernel}. As it needs the incubator module
+ * jdk.incubator.vector, its source is kept apart in the directory src-vector
+ * and compiled on its own after the other classes:
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp bin -d bin src-vector/edu/kit/informatik/simulation/VectorWinKernel.java
+ * </pre>
+ *
+ * It is loaded by its name and only used if it has been compiled and the
+ * program runs with {@code --add-modules jdk.incubator.vector}, otherwise the
+ * plain loops are used. {@link BatchWinCheck} compares both with
+ * {@link Board#checkWin(int, int)}. The lines are
+ * taken from {@link Board#getLineMasks()}, so the results are the same as
+ * those of {@link Board#checkWin(int, int)}. Only boards with at most 64 fields
+ * are supported.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class BatchWinEvaluator {
+
+    /**
+     * the implementation with the Vector API, null if it is not available
+     */
+    private static final WinKernel VECTOR_KERNEL = loadVectorKernel();
+
+    /**
+     * the implementation checking a line on all boards, null for the plain
+     * loops
+     */
+    private final WinKernel kernel;
+
+    /**
+     * the number of boards
+     */
+    private final int capacity;
+
+    /**
+     * the bits of the token numbers that stand for properties
+     */
+    private final long propertyMask;
+
+    /**
+     * all lines of the board as bitmasks of their fields
+     */
+    private final long[] lineMasks;
+
+    /**
+     * for every field: the lines it belongs to, as bitmasks of their fields
+     */
+    private final long[][] lineMasksOfFields;
+
+    /**
+     * for every board: the occupied fields
+     */
+    private final long[] occupied;
+
+    /**
+     * for every bit and every board: the fields with a token having this bit set
+     */
+    private final long[][] ones;
+
+    /**
+     * for every board: whether a win has been found, as a long so that the
+     * loops stay vectorizable
+     */
+    private final long[] wins;
+
+    /**
+     * This method creates a new evaluator with empty boards. It uses the Vector
+     * API if it is available.
+     *
+     * @param pTemplate
+     *            a board of the kind and size all boards will have
+     * @param pCapacity
+     *            the number of boards
+     * @throws IllegalInputException
+     *             if the board has more than 64 fields or the capacity is
+     *             smaller than one
+     */
+    public BatchWinEvaluator(Board pTemplate, int pCapacity) throws IllegalInputException {
+        this(pTemplate, pCapacity, true);
+    }
+
+    /**
+     * This method creates a new evaluator with empty boards.
+     *
+     * @param pTemplate
+     *            a board of the kind and size all boards will have
+     * @param pCapacity
+     *            the number of boards
+     * @param pVectorized
+     *            true to use the Vector API if it is available, false to use
+     *            the plain loops
+     * @throws IllegalInputException
+     *             if the board has more than 64 fields or the capacity is
+     *             smaller than one
+     */
+    BatchWinEvaluator(Board pTemplate, int pCapacity, boolean pVectorized) throws IllegalInputException {
+        if (pCapacity < 1) {
+            throw new IllegalInputException("Error, at least one board is needed.");
+        }
+        capacity = pCapacity;
+        lineMasks = pTemplate.getLineMasks();
+        propertyMask = pTemplate.getPropertyMask();
+        int fields = pTemplate.getRowNumber() * pTemplate.getColumnNumber();
+        lineMasksOfFields = new long[fields][];
+        for (int field = 0; field < fields; field++) {
+            int count = 0;
+            for (long line : lineMasks) {
+                if ((line & (1L << field)) != 0) {
+                    count++;
+                }
+            }
+            lineMasksOfFields[field] = new long[count];
+            count = 0;
+            for (long line : lineMasks) {
+                if ((line & (1L << field)) != 0) {
+                    lineMasksOfFields[field][count] = line;
+                    count++;
+                }
+            }
+        }
+        occupied = new long[capacity];
+        ones = new long[64 - Long.numberOfLeadingZeros(propertyMask)][capacity];
+        wins = new long[capacity];
+        kernel = pVectorized ? VECTOR_KERNEL : null;
+    }
+
+    /**
+     * This method loads the implementation with the Vector API.
+     *
+     * @return the implementation, null if it has not been compiled or the
+     *         module jdk.incubator.vector is missing
+     */
+    private static WinKernel loadVectorKernel() {
+        try {
+            return (WinKernel) Class.forName("edu.kit.informatik.simulation.VectorWinKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // the plain loops are used instead
+            return null;
+        }
+    }
+
+    /**
+     * This method returns whether the Vector API is available.
+     *
+     * @return true if the implementation with the Vector API can be used
+     */
+    public static boolean isVectorApiAvailable() {
+        return VECTOR_KERNEL != null;
+    }
+
+    /**
+     * This method returns whether this evaluator uses the Vector API.
+     *
+     * @return true if the Vector API is used, false if the plain loops are used
+     */
+    public boolean isVectorized() {
+        return kernel != null;
+    }
+
+    /**
+     * This method returns the number of boards.
+     *
+     * @return the number of boards
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * This method removes all tokens from one board.
+     *
+     * @param pBoard
+     *            the index of the board
+     */
+    public void clear(int pBoard) {
+        occupied[pBoard] = 0;
+        for (long[] column : ones) {
+            column[pBoard] = 0;
+        }
+    }
+
+    /**
+     * This method removes all tokens from all boards.
+     */
+    public void clearAll() {
+        for (int i = 0; i < capacity; i++) {
+            clear(i);
+        }
+    }
+
+    /**
+     * This method places a token on one board.
+     *
+     * @param pBoard
+     *            the index of the board
+     * @param pField
+     *            the index of the field (row * number of columns + column)
+     * @param pTokenNumber
+     *            the number of the token
+     */
+    public void place(int pBoard, int pField, int pTokenNumber) {
+        long field = 1L << pField;
+        occupied[pBoard] |= field;
+        for (int bit = 0; bit < ones.length; bit++) {
+            if ((pTokenNumber & (1L << bit)) != 0) {
+                ones[bit][pBoard] |= field;
+            }
+        }
+    }
+
+    /**
+     * This method takes a token from one board.
+     *
+     * @param pBoard
+     *            the index of the board
+     * @param pField
+     *            the index of the field (row * number of columns + column)
+     */
+    public void remove(int pBoard, int pField) {
+        long field = ~(1L << pField);
+        occupied[pBoard] &= field;
+        for (long[] column : ones) {
+            column[pBoard] &= field;
+        }
+    }
+
+    /**
+     * This method copies the placed tokens of a board into one of the boards of
+     * this evaluator.
+     *
+     * @param pBoard
+     *            the index of the board
+     * @param pState
+     *            the board to copy, it has to be of the same kind and size
+     */
+    public void load(int pBoard, Board pState) {
+        clear(pBoard);
+        int columns = pState.getColumnNumber();
+        for (int row = 0; row < pState.getRowNumber(); row++) {
+            for (int column = 0; column < columns; column++) {
+                int token = pState.getTokenNumberAt(row, column);
+                if (token >= 0) {
+                    place(pBoard, row * columns + column, token);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method checks all boards for a win through the given field, e.g.
+     * after a token has been placed at this field on every board.
+     *
+     * @param pField
+     *            the index of the field (row * number of columns + column)
+     * @param pResults
+     *            the array the results are written to (true if a board has been won)
+     * @return the number of boards that have been won
+     */
+    public int checkWins(int pField, boolean[] pResults) {
+        clearWins();
+        for (long line : lineMasksOfFields[pField]) {
+            accumulateWins(line);
+        }
+        return collectWins(pResults);
+    }
+
+    /**
+     * This method checks all boards for a win through one field per board, e.g.
+     * after a token has been placed on every board at a different field.
+     *
+     * @param pFields
+     *            the index of the field for every board
+     * @param pResults
+     *            the array the results are written to (true if a board has been won)
+     * @return the number of boards that have been won
+     */
+    public int checkWins(int[] pFields, boolean[] pResults) {
+        for (int i = 0; i < capacity; i++) {
+            long win = 0;
+            long occupiedFields = occupied[i];
+            for (long line : lineMasksOfFields[pFields[i]]) {
+                if ((occupiedFields & line) == line) {
+                    for (long[] column : ones) {
+                        long set = column[i] & line;
+                        // all fields have the bit set or all fields have it not set
+                        win |= (set == line || set == 0) ? 1 : 0;
+                    }
+                }
+            }
+            wins[i] = win;
+        }
+        return collectWins(pResults);
+    }
+
+    /**
+     * This method checks all boards for a win anywhere on the board.
+     *
+     * @param pResults
+     *            the array the results are written to (true if a board has been won)
+     * @return the number of boards that have been won
+     */
+    public int checkAllWins(boolean[] pResults) {
+        clearWins();
+        for (long line : lineMasks) {
+            accumulateWins(line);
+        }
+        return collectWins(pResults);
+    }
+
+    /**
+     * This method resets the found wins.
+     */
+    private void clearWins() {
+        for (int i = 0; i < capacity; i++) {
+            wins[i] = 0;
+        }
+    }
+
+    /**
+     * This method checks one line on all boards and remembers the boards at
+     * which it wins. The inner loops run over the boards with the same line.
+     *
+     * @param pLine
+     *            the line as bitmask of its fields
+     */
+    private void accumulateWins(long pLine) {
+        if (kernel != null) {
+            kernel.accumulateWins(pLine, occupied, ones, wins, capacity);
+            return;
+        }
+        for (long[] column : ones) {
+            for (int i = 0; i < capacity; i++) {
+                long set = column[i] & pLine;
+                long full = occupied[i] & pLine;
+                // the line is full and its tokens all have the bit set or all have it not set
+                wins[i] |= (full == pLine && (set == pLine || set == 0)) ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * This method writes the found wins into an array.
+     *
+     * @param pResults
+     *            the array the results are written to
+     * @return the number of boards that have been won
+     */
+    private int collectWins(boolean[] pResults) {
+        int count = 0;
+        for (int i = 0; i < capacity; i++) {
+            pResults[i] = wins[i] != 0;
+            count += (int) wins[i];
+        }
+        return count;
+    }
+}
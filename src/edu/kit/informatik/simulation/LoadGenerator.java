@@ -0,0 +1,379 @@
+package edu.kit.informatik.simulation;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import edu.kit.informatik.Terminal;
+import edu.kit.informatik.gameLogic.Board;
+import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
+import edu.kit.informatik.userInteraction.IllegalInputException;
+import edu.kit.informatik.userInteraction.UserInterface;
+
+/**
+ * This class tests how the user interface behaves under load: it runs many
+ * interactive sessions at the same time, each in its own thread with its own
+ * game. Instead of the standard input and output, every session reads random
+ * commands from memory and writes its output to memory (see
+ * {@link Terminal#bindSession(BufferedReader, PrintWriter)}). The commands are
+ * a mix of legal moves, illegal input of all kinds (which is answered with an
+ * error message) and printing commands. At the end, the throughput and the
+ * latencies (time from reading a command until the next command is read) are
+ * printed.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public final class LoadGenerator {
+
+    /**
+     * commands that are always rejected by the user interface
+     */
+    private static final String[] ILLEGAL_COMMANDS = {"select 99", "select -1", "select abc", "select",
+        "place 9;9", "place 1", "place a;b", "place 1;2;3", "place", "rowprint x", "colprint -1", "bag 1",
+        "safe now", "quit now", "foo", "", "   ", "hint -5", "perft 0"};
+
+    private LoadGenerator() {
+        // intentionally left blank to avoid instantiation
+    }
+
+    /**
+     * This method runs the load test and prints its results. Usage:
+     * LoadGenerator [sessions [commands per session [threads [seed]]]]
+     *
+     * @param args
+     *            the number of sessions (default 1000), the number of commands
+     *            every session executes (default 500), the number of threads
+     *            (default: one per session) and the seed of the random commands
+     */
+    public static void main(String[] args) {
+        int sessions = 1000;
+        int commands = 500;
+        int threads = -1;
+        long seed = 42;
+        try {
+            if (args.length > 0) {
+                sessions = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1) {
+                commands = Integer.parseInt(args[1]);
+            }
+            if (args.length > 2) {
+                threads = Integer.parseInt(args[2]);
+            }
+            if (args.length > 3) {
+                seed = Long.parseLong(args[3]);
+            }
+        } catch (NumberFormatException e) {
+            Terminal.printLine("Error, usage: [sessions [commands per session [threads [seed]]]]");
+            System.exit(1);
+        }
+        if (sessions < 1 || commands < 1) {
+            Terminal.printLine("Error, the number of sessions and commands have to be greater than zero.");
+            System.exit(1);
+        }
+        run(sessions, commands, threads < 1 ? sessions : threads, seed);
+    }
+
+    /**
+     * This method runs the sessions and prints the results.
+     *
+     * @param pSessions
+     *            the number of sessions
+     * @param pCommands
+     *            the number of commands every session executes
+     * @param pThreads
+     *            the number of threads running sessions at the same time
+     * @param pSeed
+     *            the seed of the random commands
+     */
+    private static void run(int pSessions, int pCommands, int pThreads, long pSeed) {
+        Session[] sessions = new Session[pSessions];
+        ExecutorService executor = Executors.newFixedThreadPool(pThreads);
+        long start = System.nanoTime();
+        for (int i = 0; i < pSessions; i++) {
+            sessions[i] = new Session(pCommands, pSeed + i);
+            executor.execute(sessions[i]);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long nanos = Math.max(1, System.nanoTime() - start);
+        long[] latencies = new long[pSessions * pCommands];
+        int count = 0;
+        long errors = 0;
+        long lines = 0;
+        long games = 0;
+        for (Session session : sessions) {
+            System.arraycopy(session.latencies, 0, latencies, count, session.latencyCount);
+            count += session.latencyCount;
+            errors += session.output.errors;
+            lines += session.output.lines;
+            games += session.games;
+        }
+        Arrays.sort(latencies, 0, count);
+        Terminal.printLine("sessions " + pSessions + ", threads " + pThreads + ", games " + games + ", commands "
+                + count + ", errors " + errors + ", output lines " + lines);
+        Terminal.printLine("time " + (nanos / 1000000) + " ms, commands/sec " + (long) (count * 1e9 / nanos));
+        Terminal.printLine("latency in microseconds: p50 " + percentile(latencies, count, 0.5) + ", p90 "
+                + percentile(latencies, count, 0.9) + ", p99 " + percentile(latencies, count, 0.99) + ", p99.9 "
+                + percentile(latencies, count, 0.999) + ", max " + percentile(latencies, count, 1.0));
+    }
+
+    /**
+     * This method returns a percentile of sorted latencies.
+     *
+     * @param pSorted
+     *            the sorted latencies in nanoseconds
+     * @param pCount
+     *            the number of latencies
+     * @param pFraction
+     *            the percentile as fraction (e.g. 0.99)
+     * @return the percentile in microseconds
+     */
+    private static long percentile(long[] pSorted, int pCount, double pFraction) {
+        if (pCount == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(pCount - 1, Math.ceil(pFraction * pCount) - 1);
+        return pSorted[Math.max(0, index)] / 1000;
+    }
+
+    /**
+     * This class represents one session: games are played via the user
+     * interface until the given number of commands has been executed.
+     */
+    private static final class Session implements Runnable {
+
+        /**
+         * the generator of the commands
+         */
+        private final Random random;
+
+        /**
+         * the number of commands still to execute
+         */
+        private int remainingCommands;
+
+        /**
+         * the measured latencies in nanoseconds
+         */
+        private final long[] latencies;
+
+        /**
+         * the number of measured latencies
+         */
+        private int latencyCount;
+
+        /**
+         * the number of games played
+         */
+        private int games;
+
+        /**
+         * the output of the session
+         */
+        private final SessionOutput output = new SessionOutput();
+
+        /**
+         * This method creates a new session.
+         *
+         * @param pCommands
+         *            the number of commands to execute
+         * @param pSeed
+         *            the seed of the random commands
+         */
+        Session(int pCommands, long pSeed) {
+            random = new Random(pSeed);
+            remainingCommands = pCommands;
+            latencies = new long[pCommands];
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (remainingCommands > 0) {
+                    Board board = random.nextBoolean() ? new Standard(16, 4, 6, 6) : new Torus(16, 4, 6, 6);
+                    Game game = new Game(2, board);
+                    UserInterface userInterface = new UserInterface(game);
+                    userInterface.setExitOnQuit(false);
+                    Terminal.bindSession(new ScriptedInput(this, game), output);
+                    games++;
+                    userInterface.interactiveSequence();
+                }
+            } catch (IllegalInputException e) {
+                // this should not happen, the parameters of the boards are valid
+            } finally {
+                Terminal.unbindSession();
+            }
+        }
+    }
+
+    /**
+     * This class is the input of a session: every line read is a new random
+     * command (depending on the state of the game) and the time since the last
+     * line has been read is recorded as latency of the last command.
+     */
+    private static final class ScriptedInput extends BufferedReader {
+
+        /**
+         * the session this input belongs to
+         */
+        private final Session session;
+
+        /**
+         * the game played with this input
+         */
+        private final Game game;
+
+        /**
+         * buffer for the generated placements and selections
+         */
+        private final int[] rows;
+
+        /**
+         * buffer for the generated placements
+         */
+        private final int[] columns;
+
+        /**
+         * the point of time (System.nanoTime) the last line has been read at, 0
+         * before the first line
+         */
+        private long lastRead;
+
+        /**
+         * saves whether "quit" has been sent
+         */
+        private boolean quitSent;
+
+        /**
+         * This method creates a new input for a game of a session.
+         *
+         * @param pSession
+         *            the session
+         * @param pGame
+         *            the game played
+         */
+        ScriptedInput(Session pSession, Game pGame) {
+            super(new StringReader(""));
+            session = pSession;
+            game = pGame;
+            rows = new int[Math.max(pGame.getMaximumNumberOfPlacements(), pGame.getMaximumNumberOfSelections())];
+            columns = new int[rows.length];
+        }
+
+        @Override
+        public String readLine() {
+            long now = System.nanoTime();
+            if (lastRead != 0 && session.latencyCount < session.latencies.length) {
+                session.latencies[session.latencyCount] = now - lastRead;
+                session.latencyCount++;
+            }
+            lastRead = now;
+            if (quitSent) {
+                return null;
+            }
+            if (session.remainingCommands == 0 || game.getGameWon() || game.getGameDraw()) {
+                // a new game is started by the session
+                quitSent = true;
+                return "quit";
+            }
+            session.remainingCommands--;
+            return nextCommand(session.random);
+        }
+
+        /**
+         * This method creates a random command.
+         *
+         * @param pRandom
+         *            the random generator
+         * @return the command
+         */
+        private String nextCommand(Random pRandom) {
+            int kind = pRandom.nextInt(100);
+            if (kind < 40) {
+                // a legal move
+                if (game.isTokenSelected()) {
+                    int count = game.generatePlacements(rows, columns);
+                    int index = pRandom.nextInt(count);
+                    return "place " + rows[index] + ";" + columns[index];
+                } else {
+                    int count = game.generateSelections(rows);
+                    return "select " + rows[pRandom.nextInt(count)];
+                }
+            } else if (kind < 60) {
+                return ILLEGAL_COMMANDS[pRandom.nextInt(ILLEGAL_COMMANDS.length)];
+            } else if (kind < 70) {
+                return "bag";
+            } else if (kind < 75) {
+                return "safe";
+            } else if (kind < 87) {
+                return "rowprint " + pRandom.nextInt(7);
+            } else if (kind < 99) {
+                return "colprint " + pRandom.nextInt(7);
+            } else {
+                return "perft 2";
+            }
+        }
+    }
+
+    /**
+     * This class is the output of a session: it counts the printed lines and
+     * error messages and drops them.
+     */
+    private static final class SessionOutput extends PrintWriter {
+
+        /**
+         * the number of printed lines
+         */
+        private long lines;
+
+        /**
+         * the number of printed error messages
+         */
+        private long errors;
+
+        /**
+         * This method creates a new output.
+         */
+        SessionOutput() {
+            super(new Writer() {
+                @Override
+                public void write(char[] pBuffer, int pOffset, int pLength) {
+                    // the output is dropped
+                }
+
+                @Override
+                public void flush() {
+                    // nothing to flush
+                }
+
+                @Override
+                public void close() {
+                    // nothing to close
+                }
+            });
+        }
+
+        @Override
+        public void println(String pLine) {
+            lines++;
+            if (pLine.endsWith("(IllegalInputException)")) {
+                errors++;
+            }
+        }
+    }
+}
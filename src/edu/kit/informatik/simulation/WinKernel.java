@@ -0,0 +1,30 @@
+package edu.kit.informatik.simulation;
+
+/**
+ * This interface describes the inner loop of {@link BatchWinEvaluator}: it
+ * checks one line on all boards. It is implemented with the Vector API in a
+ * class that is compiled separately (see {@link BatchWinEvaluator}).
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+interface WinKernel {
+
+    /**
+     * This method checks one line on all boards and remembers the boards at
+     * which it wins.
+     *
+     * @param pLine
+     *            the line as bitmask of its fields
+     * @param pOccupied
+     *            for every board: the occupied fields
+     * @param pOnes
+     *            for every bit and every board: the fields with a token having
+     *            this bit set
+     * @param pWins
+     *            for every board: 1 if a win has been found, changed
+     * @param pCapacity
+     *            the number of boards
+     */
+    void accumulateWins(long pLine, long[] pOccupied, long[][] pOnes, long[] pWins, int pCapacity);
+}
@@ -0,0 +1,282 @@
+package edu.kit.informatik.userInteraction;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is a journal of the commands that changed a game: every command
+ * is appended to a file, so that the game can be restored after the program
+ * has been stopped or has crashed (see
+ * {@link UserInterface#recover(CommandJournal)}).
+ *
+ * Appending a command does not wait for the file: the commands are collected
+ * in memory and written by a separate thread, which forces them to the disk
+ * with one fsync for all commands collected in the meantime (group commit). So
+ * the latency of a command does not depend on the disk, but the commands of
+ * the last fsync (a few milliseconds) can be lost in a crash. A command that
+ * has only been written partly is removed when the journal is opened again.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class CommandJournal {
+
+    /**
+     * the file the commands are written to
+     */
+    private final File file;
+
+    /**
+     * the channel the commands are written to
+     */
+    private final FileChannel channel;
+
+    /**
+     * the thread writing the commands
+     */
+    private final Thread flusher;
+
+    /**
+     * the commands that have not been written yet
+     */
+    private StringBuilder pending = new StringBuilder();
+
+    /**
+     * the commands being written, swapped with the pending ones
+     */
+    private StringBuilder writing = new StringBuilder();
+
+    /**
+     * the number of commands appended
+     */
+    private long appended;
+
+    /**
+     * the number of commands forced to the disk
+     */
+    private long durable;
+
+    /**
+     * the number of commands found in the file when it has been opened
+     */
+    private final long recovered;
+
+    /**
+     * saves whether the journal has been closed
+     */
+    private boolean closed;
+
+    /**
+     * the error that occurred while writing, null if there is none
+     */
+    private IOException failure;
+
+    /**
+     * This method opens a journal. If the file exists, its commands are kept
+     * (see {@link #readCommands()}) and new commands are appended.
+     *
+     * @param pFile
+     *            the file of the journal
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public CommandJournal(File pFile) throws IOException {
+        file = pFile;
+        channel = FileChannel.open(pFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        recovered = removePartialCommand();
+        channel.position(channel.size());
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * This method cuts off a command at the end of the file that has only been
+     * written partly (that is, without line break).
+     *
+     * @return the number of complete commands in the file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private long removePartialCommand() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = 0;
+        long end = 0;
+        long lines = 0;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    end = position + i + 1;
+                    lines++;
+                }
+            }
+            position += read;
+        }
+        if (end < channel.size()) {
+            channel.truncate(end);
+            channel.force(true);
+        }
+        return lines;
+    }
+
+    /**
+     * This method returns the number of commands the file contained when the
+     * journal has been opened.
+     *
+     * @return the number of recovered commands
+     */
+    public long getRecoveredCommands() {
+        return recovered;
+    }
+
+    /**
+     * This method opens the file for reading the commands written so far.
+     *
+     * @return a reader returning one command per line
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public BufferedReader readCommands() throws IOException {
+        FileChannel reading = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        return new BufferedReader(new InputStreamReader(Channels.newInputStream(reading), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method appends a command to the journal. It does not wait until the
+     * command has been written.
+     *
+     * @param pCommand
+     *            the command (one line)
+     * @throws IOException
+     *             if the journal has been closed or writing a previous command
+     *             has failed
+     */
+    public void append(String pCommand) throws IOException {
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("Error, the journal has been closed.");
+            }
+            pending.append(pCommand).append('\n');
+            appended++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * This method waits until all commands appended so far have been forced to
+     * the disk.
+     *
+     * @throws IOException
+     *             if writing the commands has failed
+     */
+    public void sync() throws IOException {
+        synchronized (this) {
+            long target = appended;
+            while (durable < target && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * This method writes all remaining commands and closes the journal.
+     *
+     * @throws IOException
+     *             if writing the commands has failed
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * This method writes the appended commands until the journal is closed.
+     * While a group of commands is being forced to the disk, the next commands
+     * are collected and written together afterwards.
+     */
+    private void flush() {
+        while (true) {
+            long target;
+            synchronized (this) {
+                while (pending.length() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // only closing the journal ends this thread
+                    }
+                }
+                if (pending.length() == 0) {
+                    // closed and everything written
+                    return;
+                }
+                StringBuilder swap = writing;
+                writing = pending;
+                pending = swap;
+                target = appended;
+            }
+            try {
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(writing.toString());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            writing.setLength(0);
+            synchronized (this) {
+                durable = target;
+                notifyAll();
+            }
+        }
+    }
+}
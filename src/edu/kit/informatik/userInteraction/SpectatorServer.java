@@ -0,0 +1,381 @@
+package edu.kit.informatik.userInteraction;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.kit.informatik.gameLogic.GameEvent;
+import edu.kit.informatik.gameLogic.GameEventStream;
+import edu.kit.informatik.gameLogic.Position;
+
+/**
+ * This class lets spectators watch a game over TCP connections. Every
+ * spectator gets a snapshot of the whole game when joining and afterwards only
+ * the changes, one line each:
+ * <ul>
+ * <li>snapshot POSITION bag BAG (see {@link Position#format()}, BAG is the
+ * bitmask of the tokens in the bag in hexadecimal notation)</li>
+ * <li>selected TOKEN PPLAYER bag BAG</li>
+ * <li>unselected TOKEN bag BAG</li>
+ * <li>placed ROW;COLUMN TOKEN PPLAYER</li>
+ * <li>PPLAYER wins MOVES</li>
+ * <li>draw</li>
+ * </ul>
+ * Every spectator reads the events of the game (see {@link GameEventStream})
+ * on its own thread, so the players never wait for a spectator. A spectator
+ * that falls behind gets a new snapshot instead of the changes it has missed.
+ *
+ * The snapshots are taken by the thread playing the game (see
+ * {@link #update(Position)}), the spectators only read the latest one. A
+ * spectator waiting for a snapshot is parked until the game takes the next one.
+ *
+ * @author Johanna Thiemich
+ * @version 1.0
+ */
+public class SpectatorServer {
+
+    /**
+     * the number of events a spectator may be behind before the changes are
+     * replaced by a snapshot
+     */
+    private static final int MAXIMUM_LAG = 64;
+
+    /**
+     * the time in milliseconds a spectator waits for events before checking
+     * whether the server has been closed
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * the stream the events of the game are read from
+     */
+    private final GameEventStream eventStream;
+
+    /**
+     * the socket accepting spectators
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * the connected spectators
+     */
+    private final CopyOnWriteArrayList<Spectator> spectators = new CopyOnWriteArrayList<Spectator>();
+
+    /**
+     * the latest snapshot of the game, null if there is none yet
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * the threads of the spectators waiting for the next snapshot
+     */
+    private final Queue<Thread> snapshotWaiters = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * saves whether the server has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * This method creates a new server and starts accepting spectators.
+     *
+     * @param pEventStream
+     *            the stream the game publishes its events to
+     * @param pPort
+     *            the port to listen at, 0 for any free port
+     * @throws IOException
+     *             if the port cannot be used
+     */
+    public SpectatorServer(GameEventStream pEventStream, int pPort) throws IOException {
+        eventStream = pEventStream;
+        serverSocket = new ServerSocket(pPort);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "spectator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * This method returns the port the server listens at.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * This method returns the number of connected spectators.
+     *
+     * @return the number of spectators
+     */
+    public int getNumberOfSpectators() {
+        return spectators.size();
+    }
+
+    /**
+     * This method stores a snapshot of the game. It has to be invoked by the
+     * thread playing the game after it has been changed.
+     *
+     * @param pPosition
+     *            the position of the game, it contains all events published so
+     *            far
+     */
+    public void update(Position pPosition) {
+        snapshot = new Snapshot(pPosition, eventStream.getPublishedEvents());
+        wakeUpSnapshotWaiters();
+    }
+
+    /**
+     * This method returns the number of events the latest snapshot contains.
+     *
+     * @return the sequence number of the last event of the snapshot, -1 if
+     *         there is no snapshot
+     */
+    public long getSnapshotSequence() {
+        Snapshot current = snapshot;
+        return current == null ? -1 : current.sequence;
+    }
+
+    /**
+     * This method stops accepting spectators and disconnects all of them.
+     */
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // nothing left to do, the server is closed anyway
+        }
+        for (Spectator spectator : spectators) {
+            spectator.disconnect();
+        }
+        wakeUpSnapshotWaiters();
+    }
+
+    /**
+     * This method wakes up the spectators waiting for the next snapshot.
+     */
+    private void wakeUpSnapshotWaiters() {
+        if (!snapshotWaiters.isEmpty()) {
+            for (Thread waiter : snapshotWaiters) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * This method accepts spectators until the server is closed.
+     */
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Spectator spectator = new Spectator(socket);
+                spectators.add(spectator);
+                Thread thread = new Thread(spectator, "spectator-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // the server has been closed or the connection failed before it was accepted
+            }
+        }
+    }
+
+    /**
+     * This class represents a snapshot of the game.
+     */
+    private static final class Snapshot {
+
+        /**
+         * the position of the game
+         */
+        private final Position position;
+
+        /**
+         * the sequence number of the last event contained in the position
+         */
+        private final long sequence;
+
+        /**
+         * This method creates a new snapshot.
+         *
+         * @param pPosition
+         *            the position of the game
+         * @param pSequence
+         *            the sequence number of the last event contained in it
+         */
+        Snapshot(Position pPosition, long pSequence) {
+            position = pPosition;
+            sequence = pSequence;
+        }
+    }
+
+    /**
+     * This class represents one spectator: it sends the snapshots and the
+     * changes of the game to its connection.
+     */
+    private final class Spectator implements Runnable {
+
+        /**
+         * the connection to the spectator
+         */
+        private final Socket socket;
+
+        /**
+         * the position of the spectator in the stream of events
+         */
+        private final GameEventStream.Consumer consumer;
+
+        /**
+         * the event read last, reused for all events
+         */
+        private final GameEvent event = new GameEvent();
+
+        /**
+         * the tokens in the bag as the spectator knows them
+         */
+        private long bag;
+
+        /**
+         * This method creates a new spectator.
+         *
+         * @param pSocket
+         *            the connection to the spectator
+         */
+        Spectator(Socket pSocket) {
+            socket = pSocket;
+            consumer = eventStream.newConsumer();
+        }
+
+        @Override
+        public void run() {
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                        StandardCharsets.UTF_8));
+                sendSnapshot(out, 0);
+                while (!closed) {
+                    if (consumer.getLag() > MAXIMUM_LAG) {
+                        // coalescing the missed changes into one snapshot
+                        sendSnapshot(out, 0);
+                    } else if (consumer.poll(event, POLL_MILLIS)) {
+                        send(out);
+                        if (consumer.getLag() == 0) {
+                            out.flush();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // the spectator has left, nothing left to do
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                disconnect();
+            }
+        }
+
+        /**
+         * This method sends the change of the game described by the last event.
+         *
+         * @param pOut
+         *            the connection
+         * @throws IOException
+         *             if the spectator has left
+         */
+        private void send(Writer pOut) throws IOException {
+            switch (event.getType()) {
+            case SELECTED:
+                bag &= ~(1L << event.getToken());
+                pOut.write("selected " + event.getToken() + " P" + event.getPlayer() + " bag "
+                        + Long.toHexString(bag) + "\n");
+                break;
+            case UNSELECTED:
+                bag |= 1L << event.getToken();
+                pOut.write("unselected " + event.getToken() + " bag " + Long.toHexString(bag) + "\n");
+                break;
+            case PLACED:
+                pOut.write("placed " + event.getRow() + ";" + event.getColumn() + " " + event.getToken() + " P"
+                        + event.getPlayer() + "\n");
+                break;
+            case WON:
+                pOut.write("P" + event.getPlayer() + " wins " + event.getNumberOfMoves() + "\n");
+                break;
+            case DRAW:
+                pOut.write("draw\n");
+                break;
+            case RESET:
+                // the snapshot has to contain the reset
+                sendSnapshot(pOut, event.getSequence());
+                break;
+            default:
+                // events have been missed
+                sendSnapshot(pOut, 0);
+                break;
+            }
+        }
+
+        /**
+         * This method sends the latest snapshot and continues with the events
+         * published after it.
+         *
+         * @param pOut
+         *            the connection
+         * @param pMinimumSequence
+         *            the sequence number of the last event the snapshot has to
+         *            contain
+         * @throws IOException
+         *             if the spectator has left
+         */
+        private void sendSnapshot(Writer pOut, long pMinimumSequence) throws IOException {
+            Snapshot current = snapshot;
+            if (current == null || current.sequence < pMinimumSequence) {
+                Thread thread = Thread.currentThread();
+                snapshotWaiters.add(thread);
+                try {
+                    // reading the snapshot again after registering, so a snapshot taken in between is not missed
+                    current = snapshot;
+                    while (!closed && (current == null || current.sequence < pMinimumSequence)) {
+                        // waiting for the game to take a new snapshot
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS));
+                        current = snapshot;
+                    }
+                } finally {
+                    snapshotWaiters.remove(thread);
+                }
+            }
+            if (current == null) {
+                return;
+            }
+            bag = current.position.getBag();
+            consumer.skipTo(current.sequence);
+            pOut.write("snapshot " + current.position.format() + " bag " + Long.toHexString(bag) + "\n");
+            pOut.flush();
+        }
+
+        /**
+         * This method closes the connection to the spectator.
+         */
+        void disconnect() {
+            spectators.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to do, the connection is closed anyway
+            }
+        }
+    }
+}
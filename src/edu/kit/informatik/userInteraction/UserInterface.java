@@ -1,8 +1,27 @@
 package edu.kit.informatik.userInteraction;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
 import edu.kit.informatik.Terminal;
+import edu.kit.informatik.analysis.ComputerPlayer;
+import edu.kit.informatik.analysis.Perft;
+import edu.kit.informatik.analysis.PositionAnalyzer;
+import edu.kit.informatik.analysis.PositionCache;
+import edu.kit.informatik.analysis.Search;
+import edu.kit.informatik.analysis.SearchResult;
+import edu.kit.informatik.gameLogic.Board;
 import edu.kit.informatik.gameLogic.Game;
+import edu.kit.informatik.gameLogic.GameEventStream;
+import edu.kit.informatik.gameLogic.GamePool;
 import edu.kit.informatik.gameLogic.ObjectNotFoundException;
+import edu.kit.informatik.gameLogic.Position;
+import edu.kit.informatik.gameLogic.RecordedEvents;
+import edu.kit.informatik.gameLogic.Standard;
+import edu.kit.informatik.gameLogic.Torus;
 
 /**
  * This class handles the interaction with the user.Important: Large parts of
@@ -14,11 +33,89 @@ import edu.kit.informatik.gameLogic.ObjectNotFoundException;
  */
 public class UserInterface {
 
+    /**
+     * the number of events kept for spectators
+     */
+    private static final int SPECTATOR_EVENTS = 1024;
+
+    /**
+     * the size in megabytes of a new cache file if no size is given
+     */
+    private static final int DEFAULT_CACHE_MEGABYTES = 64;
+
+    /**
+     * the command written to the journal when a failed "place" command has put
+     * the selected token back into the bag; it is not available to the user
+     */
+    private static final String RESET_MOVE = "resetmove";
+
+    /**
+     * the error message for an unknown command
+     */
+    private static final String UNKNOWN_COMMAND = "Error, only the following commands are allowed: quit, newgame, "
+            + "select, place, bag, safe, rowprint, colprint, print, hint, analyze, perft, spectate, computer, "
+            + "cache, load.";
+
     /**
      * the game that the user's commands are being executed on
      */
     private Game game;
 
+    /**
+     * the time in milliseconds the "hint" command searches if no time is given
+     */
+    private long hintTimeBudget = 1000;
+
+    /**
+     * the time in milliseconds the "analyze" command takes if no time is given
+     */
+    private long analyzeTimeBudget = 2000;
+
+    /**
+     * saves whether the "quit" command exits the program (true) or only ends
+     * the interactive dialog (false, e.g. if several sessions run in one program)
+     */
+    private boolean exitOnQuit = true;
+
+    /**
+     * the server sending the game to spectators, null if spectating has not
+     * been started
+     */
+    private SpectatorServer spectatorServer;
+
+    /**
+     * the journal the commands changing the game are written to, null if there
+     * is none
+     */
+    private CommandJournal journal;
+
+    /**
+     * saves whether the commands of a journal are being executed again
+     */
+    private boolean recovering;
+
+    /**
+     * the error of the first command of the journal that could not be executed
+     * again, null if there is none
+     */
+    private String recoveryError;
+
+    /**
+     * the player controlled by the computer, null if both players are users
+     */
+    private ComputerPlayer computerPlayer;
+
+    /**
+     * the file the results of the "hint" command are kept in, null if there
+     * is none
+     */
+    private PositionCache positionCache;
+
+    /**
+     * the event recorded for every command, reused for all commands
+     */
+    private final RecordedEvents.CommandEvent commandEvent = new RecordedEvents.CommandEvent();
+
     /**
      * This method creates a new user interface
      * 
@@ -31,9 +128,22 @@ public class UserInterface {
 
     /**
      * This method starts and continues the interactive dialog with the user by
-     * executing the input commands.
+     * executing the input commands. When the dialog ends, the journal is closed,
+     * so that no command written to it is lost.
      */
     public void interactiveSequence() {
+        try {
+            executeCommands();
+        } finally {
+            closeJournal();
+        }
+    }
+
+    /**
+     * This method executes the input commands until "quit" is entered or the
+     * input ends.
+     */
+    private void executeCommands() {
         String input = "";
         String[] commands = new String[0];
 
@@ -44,8 +154,15 @@ public class UserInterface {
         while (!input.equals("quit")) {
             // get the new command
             input = Terminal.readLine();
+            if (input == null) {
+                // end of the input, nothing more to execute
+                return;
+            }
             // separate input at the first whitespace occurrence
             commands = input.split("\\s", 2);
+            RecordedEvents.CommandEvent recorded = commandEvent;
+            recorded.begin();
+            String outcome = RecordedEvents.FAILED;
             try {
                 switch (commands[0]) {
                 /*
@@ -56,10 +173,22 @@ public class UserInterface {
                     checkParameterNumber(commands.length, 1);
                     quit();
                     break;
+                case "newgame":
+                    checkParameterNumber(commands.length, 2);
+                    newGame(commands[1]);
+                    break;
+                case "load":
+                    checkParameterNumber(commands.length, 2);
+                    load(commands[1]);
+                    break;
                 case "bag":
                     checkParameterNumber(commands.length, 1);
                     bag();
                     break;
+                case "safe":
+                    checkParameterNumber(commands.length, 1);
+                    safe();
+                    break;
                 case "select":
                     checkParameterNumber(commands.length, 2);
                     select(commands[1]);
@@ -68,6 +197,10 @@ public class UserInterface {
                     checkParameterNumber(commands.length, 2);
                     rowPrint(commands[1]);
                     break;
+                case "print":
+                    checkParameterNumber(commands.length, 1);
+                    print();
+                    break;
                 case "colprint":
                     checkParameterNumber(commands.length, 2);
                     colPrint(commands[1]);
@@ -76,28 +209,405 @@ public class UserInterface {
                     checkParameterNumber(commands.length, 2);
                     place(commands[1]);
                     break;
+                case "analyze":
+                    // the time budget is optional
+                    if (commands.length == 1) {
+                        analyze(null);
+                    } else {
+                        analyze(commands[1]);
+                    }
+                    break;
+                case "perft":
+                    checkParameterNumber(commands.length, 2);
+                    perft(commands[1]);
+                    break;
+                case "spectate":
+                    checkParameterNumber(commands.length, 2);
+                    spectate(commands[1]);
+                    break;
+                case "computer":
+                    checkParameterNumber(commands.length, 2);
+                    computer(commands[1]);
+                    break;
+                case "cache":
+                    checkParameterNumber(commands.length, 2);
+                    cache(commands[1]);
+                    break;
+                case RESET_MOVE:
+                    // only written to the journal by a failed "place" command
+                    if (!recovering) {
+                        throw new IllegalInputException(UNKNOWN_COMMAND);
+                    }
+                    checkParameterNumber(commands.length, 1);
+                    game.resetMove();
+                    break;
+                case "hint":
+                    // the time budget is optional
+                    if (commands.length == 1) {
+                        hint(null);
+                    } else {
+                        hint(commands[1]);
+                    }
+                    break;
                 default:
                     // check: empty input?
                     if (input.trim().length() == 0) {
                         throw new IllegalInputException("Error, please enter a command");
                     } else {
                         // unknown command
-                        throw new IllegalInputException("Error, only the following commands are allowed: "
-                                + "quit, select, place, bag, rowprint, colprint.");
+                        throw new IllegalInputException(UNKNOWN_COMMAND);
                     }
                 }
+                outcome = "ok";
                 // in case of illegal input
             } catch (IllegalInputException e) {
+                outcome = e.getClass().getSimpleName();
+                if (recovering) {
+                    // the journal only contains commands that have been executed successfully
+                    recoveryError = "\"" + input + "\": " + e.getMessage();
+                    return;
+                }
                 Terminal.printLine(e.getMessage() + " (" + e.getClass().getSimpleName() + ")");
+            } finally {
+                recorded.finish(commands[0], game.getBoard(), outcome);
+            }
+            playComputerMoves();
+            updateSpectators();
+        }
+    }
+
+    /**
+     * This method lets the computer make its moves if it is its turn, and
+     * informs it about the moves of the user otherwise (see
+     * {@link ComputerPlayer#moveMade(Game)}). The moves of the computer are
+     * printed like commands, followed by the output of these commands.
+     */
+    private void playComputerMoves() {
+        if (computerPlayer == null) {
+            return;
+        }
+        try {
+            while (computerPlayer.isToMove(game)) {
+                String move = computerPlayer.chooseMove(game).formatMove();
+                Terminal.printLine(move);
+                String[] parts = move.split(" ", 2);
+                if (parts[0].equals("select")) {
+                    select(parts[1]);
+                } else {
+                    place(parts[1]);
+                }
+            }
+            computerPlayer.moveMade(game);
+        } catch (IllegalInputException e) {
+            // this should not happen, the computer only makes legal moves
+            Terminal.printLine(e.getMessage() + " (" + e.getClass().getSimpleName() + ")");
+        }
+    }
+
+    /**
+     * This method gives the spectators a new snapshot of the game if it has
+     * changed since the last one.
+     */
+    private void updateSpectators() {
+        if (spectatorServer != null
+                && spectatorServer.getSnapshotSequence() != game.getEventStream().getPublishedEvents()) {
+            try {
+                spectatorServer.update(Position.of(game));
+            } catch (IllegalInputException e) {
+                // this should not happen, spectating is only possible with at most 64 tokens
             }
         }
     }
 
     /**
-     * This method exits the program.
+     * This method exits the program (or only ends the interactive dialog, see
+     * {@link #setExitOnQuit(boolean)}).
      */
     private void quit() {
-        System.exit(0);
+        if (computerPlayer != null) {
+            computerPlayer.stop();
+            computerPlayer = null;
+        }
+        if (spectatorServer != null) {
+            spectatorServer.close();
+            spectatorServer = null;
+        }
+        if (positionCache != null) {
+            try {
+                positionCache.close();
+            } catch (IOException e) {
+                Terminal.printLine("Error, the cache could not be written completely.");
+            }
+            positionCache = null;
+        }
+        closeJournal();
+        if (exitOnQuit) {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * This method closes the journal, if there is one, after writing all
+     * commands to it.
+     */
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Terminal.printLine("Error, the journal could not be written completely.");
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * This method changes whether the "quit" command exits the program or only
+     * ends the interactive dialog.
+     * 
+     * @param pExitOnQuit
+     *            true if "quit" exits the program, false if it only ends the
+     *            dialog
+     */
+    public void setExitOnQuit(boolean pExitOnQuit) {
+        exitOnQuit = pExitOnQuit;
+    }
+
+    /**
+     * This method restores the game from a journal and writes all following
+     * commands changing the game (newgame, load, select and place) to it. The
+     * commands of the journal are executed like commands entered by the user,
+     * but without printing anything. This method has to be invoked before the
+     * interactive dialog is started.
+     * 
+     * @param pJournal
+     *            the journal
+     * @throws IllegalInputException
+     *             if the journal cannot be read or written or if one of its
+     *             commands cannot be executed again
+     */
+    public void recover(CommandJournal pJournal) throws IllegalInputException {
+        journal = null;
+        recoveryError = null;
+        try {
+            BufferedReader commands = pJournal.readCommands();
+            Terminal.bindSession(commands, new PrintWriter(new Writer() {
+                @Override
+                public void write(char[] pBuffer, int pOffset, int pLength) {
+                    // the output of the restored commands is dropped
+                }
+
+                @Override
+                public void flush() {
+                    // nothing to flush
+                }
+
+                @Override
+                public void close() {
+                    // nothing to close
+                }
+            }));
+            recovering = true;
+            try {
+                interactiveSequence();
+            } finally {
+                recovering = false;
+                Terminal.unbindSession();
+                commands.close();
+            }
+            if (recoveryError != null) {
+                pJournal.close();
+                throw new IllegalInputException("Error, the journal cannot be executed again, the command "
+                        + recoveryError);
+            }
+            journal = pJournal;
+            if (pJournal.getRecoveredCommands() == 0) {
+                // the journal starts with the kind of game, so that it can be restored with any arguments
+                journalCommand(describeGame());
+            }
+        } catch (IOException e) {
+            throw new IllegalInputException("Error, the journal cannot be read.");
+        }
+    }
+
+    /**
+     * This method writes a command that changed the game to the journal, if
+     * there is one.
+     * 
+     * @param pCommand
+     *            the command
+     * @throws IllegalInputException
+     *             if the journal cannot be written
+     */
+    private void journalCommand(String pCommand) throws IllegalInputException {
+        if (journal != null) {
+            try {
+                journal.append(pCommand);
+            } catch (IOException e) {
+                throw new IllegalInputException("Error, the journal cannot be written.");
+            }
+        }
+    }
+
+    /**
+     * This method returns the "newgame" command that starts a game of the same
+     * kind as the current one.
+     * 
+     * @return the command
+     */
+    private String describeGame() {
+        Board board = game.getBoard();
+        return "newgame " + (board instanceof Torus ? "torus" : "standard") + " " + board.getRowNumber() + " "
+                + board.getColumnNumber() + " " + board.getTokenCount();
+    }
+
+    /**
+     * This method handles the "newgame" command: the current game is replaced by
+     * a new one, so that several games can be played without starting the
+     * program again. If the new game has the same kind and size of board as the
+     * current one, the current game is reset instead of creating a new one.
+     * 
+     * @param pCommand
+     *            String in the format: standard|torus [rows columns tokens], by
+     *            default the board has 6 rows, 6 columns and 16 tokens. The
+     *            tokens have 4 properties, or more if their numbers need more
+     *            binary digits.
+     * @throws IllegalInputException
+     *             if the board type is unknown, if the numbers are not valid
+     *             integers or if they are smaller than one or too big (see
+     *             {@link Board#checkSize(int, int, int)})
+     */
+    private void newGame(String pCommand) throws IllegalInputException {
+        String[] parameters = pCommand.trim().split("\\s+");
+        if (parameters.length != 1 && parameters.length != 4) {
+            throw new IllegalInputException("Error, this command requires the board type and optionally the "
+                    + "number of rows, columns and tokens.");
+        }
+        int rows = 6;
+        int columns = 6;
+        int tokens = 16;
+        if (parameters.length == 4) {
+            try {
+                rows = Integer.parseInt(parameters[1]);
+                columns = Integer.parseInt(parameters[2]);
+                tokens = Integer.parseInt(parameters[3]);
+            } catch (NumberFormatException e) {
+                throw new IllegalInputException("Error, the number of rows, columns and tokens have to be valid "
+                        + "integer numbers.");
+            }
+        }
+        // checked before the board is created, a huge board would not fit into memory
+        Board.checkSize(tokens, rows, columns);
+        // every binary digit of the highest token number is a property
+        int properties = Math.max(4, 32 - Integer.numberOfLeadingZeros(tokens - 1));
+        Board current = game.getBoard();
+        boolean torus;
+        if (parameters[0].equals("standard")) {
+            torus = false;
+        } else if (parameters[0].equals("torus")) {
+            torus = true;
+        } else {
+            throw new IllegalInputException("Error, illegal board type has been entered. Please choose standard "
+                    + "or torus.");
+        }
+        if ((torus ? current instanceof Torus : current instanceof Standard) && current.getRowNumber() == rows
+                && current.getColumnNumber() == columns && current.getTokenCount() == tokens
+                && current.getNumberOfTokenProperties() == properties) {
+            // same board as before --> reusing the current game
+            game.reset();
+        } else {
+            if (spectatorServer != null && tokens > Position.MAXIMUM_NUMBER_OF_TOKENS) {
+                throw new IllegalInputException("Error, games with spectators can have at most "
+                        + Position.MAXIMUM_NUMBER_OF_TOKENS + " tokens.");
+            }
+            Game newGame = torus ? new Game(2, new Torus(tokens, properties, rows, columns))
+                    : new Game(2, new Standard(tokens, properties, rows, columns));
+            // the readers of the events of the old game continue with the new one
+            newGame.setEventStream(game.getEventStream());
+            newGame.reset();
+            game = newGame;
+        }
+        journalCommand(describeGame());
+        Terminal.printLine("OK");
+    }
+
+    /**
+     * This method handles the "load" command: the game is put into the given
+     * position, e.g. a puzzle. If the position belongs to a board of another
+     * kind or size, the current game is replaced by a new one.
+     * 
+     * @param pCommand
+     *            the position in the format of {@link Position#format()}
+     * @throws IllegalInputException
+     *             if the position is not valid or not consistent (see
+     *             {@link Position#createGame()})
+     */
+    private void load(String pCommand) throws IllegalInputException {
+        Position position = Position.parse(pCommand);
+        // checks the position on a new game, so that the current one is kept if it is invalid
+        Game newGame = position.createGame();
+        Board current = game.getBoard();
+        if ((position.isTorus() ? current instanceof Torus : current instanceof Standard)
+                && current.getRowNumber() == position.getRowNumber()
+                && current.getColumnNumber() == position.getColumnNumber()
+                && current.getTokenCount() == position.getTokenCount()
+                && current.getNumberOfTokenProperties() == position.getNumberOfTokenProperties()) {
+            // same board as before --> reusing the current game
+            position.applyTo(game);
+        } else {
+            // the readers of the events of the old game continue with the new one
+            newGame.setEventStream(game.getEventStream());
+            position.applyTo(newGame);
+            game = newGame;
+        }
+        journalCommand("load " + position.format());
+        Terminal.printLine("OK");
+    }
+
+    /**
+     * This method handles the "spectate" command: spectators can connect to the
+     * given port and watch the game (see {@link SpectatorServer}). The port the
+     * server listens at is printed.
+     * 
+     * @param pCommand
+     *            String containing the port (integer number between 0 and
+     *            65535, 0 for any free port)
+     * @throws IllegalInputException
+     *             if the port is not valid or cannot be used, if spectating has
+     *             already been started or if the game has more than 64 tokens
+     */
+    private void spectate(String pCommand) throws IllegalInputException {
+        int port;
+        try {
+            port = Integer.parseInt(pCommand);
+        } catch (NumberFormatException e) {
+            throw new IllegalInputException("Error, " + pCommand + " is not a valid integer number.");
+        }
+        if (port < 0 || port > 65535) {
+            throw new IllegalInputException("Error, the port has to be between 0 and 65535.");
+        }
+        if (spectatorServer != null) {
+            throw new IllegalInputException("Error, spectators can already connect to port "
+                    + spectatorServer.getPort() + ".");
+        }
+        Position position = Position.of(game);
+        if (game.getEventStream() == null) {
+            game.setEventStream(new GameEventStream(SPECTATOR_EVENTS));
+        }
+        try {
+            spectatorServer = new SpectatorServer(game.getEventStream(), port);
+        } catch (IOException e) {
+            throw new IllegalInputException("Error, the port " + port + " cannot be used.");
+        }
+        spectatorServer.update(position);
+        Terminal.printLine("port " + spectatorServer.getPort());
+    }
+
+    /**
+     * This method handles the "print" command, printing the whole board.
+     */
+    private void print() {
+        game.getBoard().boardPrint();
     }
 
     /**
@@ -107,6 +617,15 @@ public class UserInterface {
         game.getBoard().tokenPrint();
     }
 
+    /**
+     * This method handles the "safe" command, printing all the available tokens
+     * that can be selected without giving the opponent the chance to win
+     * immediately.
+     */
+    private void safe() {
+        game.getBoard().safeTokenPrint();
+    }
+
     /**
      * This method handles the "select" command, selecting a token
      * 
@@ -130,6 +649,7 @@ public class UserInterface {
             try {
                 // selecting the token
                 game.select(token);
+                journalCommand("select " + token);
                 // command successfully executed
                 Terminal.printLine("OK");
             } catch (ObjectNotFoundException e) {
@@ -201,7 +721,7 @@ public class UserInterface {
         try {
             parameters = extractArguments(pCommand, 2);
         } catch (IllegalInputException e) {
-            game.resetMove();
+            resetMove();
             throw new IllegalInputException(e.getMessage());
         }
         int rowNumber = -1;
@@ -212,7 +732,7 @@ public class UserInterface {
         } catch (NumberFormatException e) {
             // place command fails: selection of token has to be undone, token
             // has to be selected again
-            game.resetMove();
+            resetMove();
             throw new IllegalInputException(
                     "Error, " + parameters[0] + " or " + parameters[1] + " are not valid integers.");
         }
@@ -220,9 +740,10 @@ public class UserInterface {
             game.place(rowNumber, columnNumber);
         } catch (IllegalInputException e) {
             // place command undo selection of token
-            game.resetMove();
+            resetMove();
             throw new IllegalInputException(e.getMessage());
         }
+        journalCommand("place " + rowNumber + ";" + columnNumber);
         if (game.getGameWon()) {
             // game has been won --> print who won
             game.printWin();
@@ -235,6 +756,247 @@ public class UserInterface {
         }
     }
 
+    /**
+     * This method takes back the selection of the token after a failed "place"
+     * command. The token is put back at the end of the bag, which changes the
+     * order of the bag, so this is written to the journal as well.
+     * 
+     * @throws IllegalInputException
+     *             if the journal cannot be written
+     */
+    private void resetMove() throws IllegalInputException {
+        if (game.isTokenSelected()) {
+            game.resetMove();
+            journalCommand(RESET_MOVE);
+        }
+    }
+
+    /**
+     * This method handles the "hint" command by searching for the best move of
+     * the player whose turn it is. It prints the move, its evaluation and the
+     * statistics of the search. If the position (or a symmetric one) is found
+     * in the cache with a search at least as long or a proven result, the
+     * cached result is printed instead.
+     * 
+     * @param pCommand
+     *            String containing the time the search may take in milliseconds
+     *            (integer number), or null for the default time
+     * @throws IllegalInputException
+     *             if the String does not contain a valid positive integer number
+     *             or if the game is already over
+     */
+    private void hint(String pCommand) throws IllegalInputException {
+        long timeBudget = parseTimeBudget(pCommand, hintTimeBudget);
+        SearchResult cached = positionCache == null ? null : positionCache.probe(game);
+        if (cached != null && (cached.getMillis() >= timeBudget
+                || Math.abs(cached.getScore()) > SearchResult.WIN_BOUND)) {
+            Terminal.printLine(cached.formatMove());
+            Terminal.printLine("evaluation " + cached.formatScore() + ", depth " + cached.getDepth() + ", cached");
+            return;
+        }
+        // searching on a copy, so that the moves tried are not published
+        Game copy = GamePool.acquireCopy(game);
+        SearchResult result;
+        try {
+            result = new Search(copy).search(timeBudget);
+        } finally {
+            GamePool.release(copy);
+        }
+        if (positionCache != null) {
+            positionCache.store(game, result, timeBudget);
+        }
+        Terminal.printLine(result.formatMove());
+        Terminal.printLine("evaluation " + result.formatScore() + ", depth " + result.getDepth() + ", nodes "
+                + result.getNodes() + ", nodes/sec " + result.getNodesPerSecond());
+    }
+
+    /**
+     * This method handles the "analyze" command by evaluating every legal move
+     * of the player whose turn it is in parallel. Every evaluation is printed as
+     * soon as it is known (and again whenever it is refined), in the format
+     * move: evaluation, depth, principal variation. At the end the best move is
+     * printed.
+     * 
+     * @param pCommand
+     *            String containing the time the analysis may take in
+     *            milliseconds (integer number), or null for the default time
+     * @throws IllegalInputException
+     *             if the String does not contain a valid positive integer number
+     *             or if the game is already over
+     */
+    private void analyze(String pCommand) throws IllegalInputException {
+        long timeBudget = parseTimeBudget(pCommand, analyzeTimeBudget);
+        PositionAnalyzer analyzer = new PositionAnalyzer(Runtime.getRuntime().availableProcessors());
+        SearchResult best = analyzer.analyze(game, timeBudget, new PositionAnalyzer.Listener() {
+            @Override
+            public void moveAnalyzed(SearchResult pResult) {
+                Terminal.printLine(pResult.formatMove() + ": " + pResult.formatScore() + ", depth "
+                        + pResult.getDepth() + ", pv " + pResult.formatPrincipalVariation());
+            }
+        });
+        if (best != null) {
+            Terminal.printLine("best " + best.formatMove());
+        }
+    }
+
+    /**
+     * This method handles the "computer" command: the given player is
+     * controlled by the computer from now on, it thinks while the user is
+     * thinking (see {@link ComputerPlayer}).
+     * 
+     * @param pCommand
+     *            String in the format player[;time] (integer numbers): the
+     *            number of the player (1 or 2, 0 for no computer player) and
+     *            the time in milliseconds the computer thinks about a move (by
+     *            default the time of the "hint" command)
+     * @throws IllegalInputException
+     *             if the String does not contain valid integer numbers, if the
+     *             player is not 0, 1 or 2 or if the time is not positive
+     */
+    private void computer(String pCommand) throws IllegalInputException {
+        String[] parameters = pCommand.trim().split(";");
+        if (parameters.length > 2 || !checkChar(pCommand, ';', parameters.length - 1)) {
+            throw new IllegalInputException("Error, this command requires 1 or 2 semicolon-separated "
+                    + "parameters to work, but you provided " + parameters.length + ".");
+        }
+        int player;
+        try {
+            player = Integer.parseInt(parameters[0].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalInputException("Error, " + parameters[0] + " is not a valid integer number.");
+        }
+        long timeBudget = parseTimeBudget(parameters.length == 2 ? parameters[1] : null, hintTimeBudget);
+        ComputerPlayer newPlayer = player == 0 ? null : new ComputerPlayer(player, timeBudget);
+        if (computerPlayer != null) {
+            computerPlayer.stop();
+        }
+        computerPlayer = newPlayer;
+        Terminal.printLine("OK");
+    }
+
+    /**
+     * This method handles the "cache" command: the results of the "hint"
+     * command are kept in the given file and used again, also by later runs of
+     * the program (see {@link PositionCache}). If another program writes to the
+     * file, it is only read.
+     * 
+     * @param pCommand
+     *            String in the format file[;megabytes]: the name of the file and
+     *            the size of a new file (integer number, 64 by default)
+     * @throws IllegalInputException
+     *             if the size is not a positive integer number or if the file
+     *             cannot be used
+     */
+    private void cache(String pCommand) throws IllegalInputException {
+        String[] parameters = pCommand.trim().split(";");
+        if (parameters.length > 2 || !checkChar(pCommand, ';', parameters.length - 1)) {
+            throw new IllegalInputException("Error, this command requires 1 or 2 semicolon-separated "
+                    + "parameters to work, but you provided " + parameters.length + ".");
+        }
+        int megabytes = DEFAULT_CACHE_MEGABYTES;
+        if (parameters.length == 2) {
+            try {
+                megabytes = Integer.parseInt(parameters[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalInputException("Error, " + parameters[1] + " is not a valid integer number.");
+            }
+            if (megabytes <= 0) {
+                throw new IllegalInputException("Error, the size of the cache has to be greater than zero.");
+            }
+        }
+        PositionCache opened;
+        try {
+            opened = new PositionCache(new File(parameters[0].trim()), megabytes, game);
+        } catch (IOException e) {
+            throw new IllegalInputException("Error, the cache cannot be used: " + e.getMessage() + ".");
+        }
+        if (positionCache != null) {
+            try {
+                positionCache.close();
+            } catch (IOException e) {
+                Terminal.printLine("Error, the cache could not be written completely.");
+            }
+        }
+        positionCache = opened;
+        Terminal.printLine("cache " + opened.getCapacity() + " entries" + (opened.isReadOnly() ? ", read-only" : ""));
+    }
+
+    /**
+     * This method handles the "perft" command by counting all sequences of moves
+     * of the given length from the current position and printing the counts and
+     * the speed.
+     * 
+     * @param pCommand
+     *            String in the format depth[;threads[;hash megabytes]] (integer
+     *            numbers), by default one thread and no hash table are used
+     * @throws IllegalInputException
+     *             if the String does not contain valid integer numbers, if the
+     *             depth is smaller than one, if the number of threads or the
+     *             size of the hash tables is out of range, if the game is
+     *             already over or if the memory runs out
+     */
+    private void perft(String pCommand) throws IllegalInputException {
+        String[] parameters = pCommand.trim().split(";");
+        if (parameters.length > 3 || !checkChar(pCommand, ';', parameters.length - 1)) {
+            throw new IllegalInputException("Error, this command requires between 1 and 3 semicolon-separated "
+                    + "parameters to work, but you provided " + parameters.length + ".");
+        }
+        int[] values = {0, 1, 0};
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                values[i] = Integer.parseInt(parameters[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalInputException("Error, " + pCommand + " does not consist of valid integers.");
+        }
+        Perft.checkParameters(values[1], values[2]);
+        Terminal.printLine(Perft.run(game, values[0], values[1], values[2]));
+    }
+
+    /**
+     * This method reads the optional time budget of a command.
+     * 
+     * @param pCommand
+     *            String containing the time in milliseconds (integer number), or
+     *            null for the default time
+     * @param pDefault
+     *            the default time in milliseconds
+     * @return the time budget in milliseconds
+     * @throws IllegalInputException
+     *             if the String does not contain a valid positive integer number
+     */
+    private long parseTimeBudget(String pCommand, long pDefault) throws IllegalInputException {
+        if (pCommand == null) {
+            return pDefault;
+        }
+        long timeBudget;
+        try {
+            timeBudget = Long.parseLong(pCommand.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalInputException("Error, " + pCommand + " is not a valid integer number.");
+        }
+        if (timeBudget <= 0) {
+            throw new IllegalInputException("Error, the time has to be greater than zero.");
+        }
+        return timeBudget;
+    }
+
+    /**
+     * This method changes the time the "hint" command searches if no time is
+     * given.
+     * 
+     * @param pMillis
+     *            the time budget in milliseconds, has to be greater than zero
+     * @throws IllegalInputException
+     *             if the time budget is not greater than zero
+     */
+    public void setHintTimeBudget(long pMillis) throws IllegalInputException {
+        if (pMillis <= 0) {
+            throw new IllegalInputException("Error, the time for the hint has to be greater than zero.");
+        }
+        hintTimeBudget = pMillis;
+    }
+
     /**
      * This method checks whether the given number of parameters equals the
      * required number